@@ -0,0 +1,65 @@
+package graph;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the latency of one single-source shortest paths computation (a full compute(origin)) on synthetic graphs
+ * of several sizes, average degrees and degree distributions. Origins cycle through a fixed random sequence so that
+ * every engine sees the same queries. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ComputeBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int nodes;
+
+    @Param({"4", "16"})
+    public int degree;
+
+    // "uniform" draws edge endpoints uniformly; "hubs" skews them toward a few hub airports
+    @Param({"uniform", "hubs"})
+    public String shape;
+
+    @Param({"Dijkstra", "ShortestPaths"})
+    public String engine;
+
+    private Graph graph;
+    private Dijkstra dijkstra;
+    private ShortestPaths shortestPaths;
+    private int[] origins;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildGraph() {
+        graph = new SyntheticData(nodes, shape.equals("hubs"), 2023).graph(degree);
+        dijkstra = new Dijkstra(graph.compile());
+        shortestPaths = new ShortestPaths();
+        Random rand = new Random(7);
+        origins = new int[1024];
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = rand.nextInt(nodes);
+        }
+    }
+
+    @Benchmark
+    public double compute() {
+        int origin = origins[next++ & (origins.length - 1)];
+        if (engine.equals("Dijkstra")) {
+            dijkstra.compute(origin);
+            return dijkstra.shortestPathLength(0);
+        }
+        shortestPaths.compute(graph.getNode(origin));
+        return shortestPaths.shortestPathLength(graph.getNode(0));
+    }
+}
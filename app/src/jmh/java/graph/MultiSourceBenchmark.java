@@ -0,0 +1,61 @@
+package graph;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the time to compute shortest path trees from a batch of hub origins: one Dijkstra run per origin, against
+ * one MultiSourceDijkstra batch with the scalar loop and with the Vector API. The origins are the busiest hubs of a
+ * synthetic graph skewed toward hub airports, as in the reports that use batches: SyntheticData's hubs are its
+ * lowest-numbered airports, and graph() numbers node i after airport i. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MultiSourceBenchmark {
+
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    @Param({"16", "64"})
+    public int sources;
+
+    @Param({"Dijkstra", "Batched", "Vector"})
+    public String engine;
+
+    private Dijkstra dijkstra;
+    private MultiSourceDijkstra batched;
+    private int[] hubs;
+
+    @Setup(Level.Trial)
+    public void buildGraph() {
+        CSRGraph g = new SyntheticData(nodes, true, 2023).graph(8).compile();
+        dijkstra = new Dijkstra(g);
+        batched = new MultiSourceDijkstra(g, engine.equals("Vector"));
+        hubs = new int[sources];
+        for (int i = 0; i < sources; i++) {
+            hubs[i] = i;
+        }
+    }
+
+    @Benchmark
+    public double computeBatch() {
+        if (engine.equals("Dijkstra")) {
+            double sum = 0;
+            for (int hub : hubs) {
+                dijkstra.compute(hub);
+                sum += dijkstra.shortestPathLength(0);
+            }
+            return sum;
+        }
+        batched.compute(hubs);
+        return batched.shortestPathLength(0, 0);
+    }
+}
@@ -0,0 +1,57 @@
+package graph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Measures how long each parser takes to turn a synthetic file into a Graph. The file is a scaled-up, generated
+ * version of db1-cropped.csv (or the same edges in basic format for the basic parsers), written once per trial. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    // any file type accepted by ShortestPaths.parseGraph, other than snapshot
+    @Param({"basic", "basic-parallel", "db1b", "db1b-mapped", "db1b-parallel"})
+    public String fileType;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        SyntheticData data = new SyntheticData(400, true, 2023);
+        boolean basic = fileType.startsWith("basic");
+        file = File.createTempFile("parse-bench", basic ? ".txt" : ".csv");
+        file.deleteOnExit();
+        if (basic) {
+            data.writeBasic(file, rows);
+        } else {
+            data.writeDB1B(file, rows);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Graph parse() throws FileNotFoundException {
+        return ShortestPaths.parseGraph(fileType, file.getPath());
+    }
+}
@@ -0,0 +1,89 @@
+package graph;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures point-to-point query latency: the time to find the shortest path, and its length, between one origin
+ * and one destination, on a hub-and-spoke synthetic graph. Run with the gc profiler (the default in build.gradle) to
+ * see the allocation rate per query. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    // "query" stops at the destination; "compute" builds the whole tree first, as ShortestPaths must
+    @Param({"query", "bidirectional", "astar", "alt", "ch", "compute", "ShortestPaths"})
+    public String engine;
+
+    private Graph graph;
+    private Dijkstra dijkstra;
+    private BidirectionalDijkstra bidirectional;
+    private AStar astar;
+    private LowerBound greatCircle;
+    private LowerBound landmarks;
+    private CHQuery ch;
+    private ShortestPaths shortestPaths;
+    private int[] origins;
+    private int[] destinations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildGraph() {
+        SyntheticData data = new SyntheticData(nodes, true, 2023);
+        graph = data.graph(8);
+        CSRGraph csr = graph.compile();
+        astar = new AStar(csr);
+        greatCircle = data.coordinates().greatCircleBound(csr);
+        landmarks = engine.equals("alt") ? Landmarks.build(csr, 16) : null;
+        ch = engine.equals("ch") ? new CHQuery(ContractionHierarchy.build(csr)) : null;
+        dijkstra = new Dijkstra(csr);
+        bidirectional = new BidirectionalDijkstra(csr);
+        shortestPaths = new ShortestPaths();
+        Random rand = new Random(7);
+        origins = new int[1024];
+        destinations = new int[1024];
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = rand.nextInt(nodes);
+            destinations[i] = rand.nextInt(nodes);
+        }
+    }
+
+    @Benchmark
+    public Object query() {
+        int i = next++ & (origins.length - 1);
+        if (engine.equals("query")) {
+            return dijkstra.query(origins[i], destinations[i]);
+        }
+        if (engine.equals("bidirectional")) {
+            return bidirectional.query(origins[i], destinations[i]);
+        }
+        if (engine.equals("astar")) {
+            return astar.query(origins[i], destinations[i], greatCircle);
+        }
+        if (engine.equals("alt")) {
+            return astar.query(origins[i], destinations[i], landmarks);
+        }
+        if (engine.equals("ch")) {
+            return ch.query(origins[i], destinations[i]);
+        }
+        if (engine.equals("compute")) {
+            dijkstra.compute(origins[i]);
+            return dijkstra.shortestPath(destinations[i]);
+        }
+        shortestPaths.compute(graph.getNode(origins[i]));
+        return shortestPaths.shortestPath(graph.getNode(destinations[i]));
+    }
+}
@@ -0,0 +1,184 @@
+package graph;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+/** Generates synthetic flight data shaped like the DB1BCoupon files that DB1BParser reads, so that the benchmarks can
+ * run at any scale without downloading BTS data. Airports get random coordinates inside the continental US, and each
+ * edge's distance is the rounded great-circle distance between its endpoints, as in the real data. Endpoints are
+ * either drawn uniformly or skewed toward a few hub airports, mimicking the hub-and-spoke structure of real networks.
+ * Everything is seeded, so the same arguments always produce the same data. */
+public final class SyntheticData {
+
+    // the header of the DB1BCoupon files in src/test/resources
+    static final String DB1B_HEADER = "\"ItinID\",\"MktID\",\"SeqNum\",\"Coupons\",\"Year\",\"OriginAirportID\","
+            + "\"OriginAirportSeqID\",\"OriginCityMarketID\",\"Quarter\",\"Origin\",\"OriginCountry\","
+            + "\"OriginStateFips\",\"OriginState\",\"OriginStateName\",\"OriginWac\",\"DestAirportID\","
+            + "\"DestAirportSeqID\",\"DestCityMarketID\",\"Dest\",\"DestCountry\",\"DestStateFips\",\"DestState\","
+            + "\"DestStateName\",\"DestWac\",\"Break\",\"CouponType\",\"TkCarrier\",\"OpCarrier\",\"RPCarrier\","
+            + "\"Passengers\",\"FareClass\",\"Distance\",\"DistanceGroup\",\"Gateway\",\"ItinGeoType\","
+            + "\"CouponGeoType\",";
+
+    private static final String[] CARRIERS = {"AA", "DL", "UA", "WN", "AS", "B6", "NK", "F9", "G4", "HA"};
+    private static final String[] FARE_CLASSES = {"X", "Y", "C", "D", "F", "G"};
+
+    private final String[] codes;
+    private final double[] lat;
+    private final double[] lon;
+    private final boolean hubs;
+    private final Random rand;
+
+    /**
+     * Constructor: create a generator over the given number of airports. If hubs is true, endpoints are skewed toward
+     * low-numbered airports; otherwise they are uniform.
+     */
+    public SyntheticData(int airports, boolean hubs, long seed) {
+        this.hubs = hubs;
+        rand = new Random(seed);
+        codes = new String[airports];
+        lat = new double[airports];
+        lon = new double[airports];
+        for (int i = 0; i < airports; i++) {
+            codes[i] = code(i);
+            lat[i] = 25 + 24 * rand.nextDouble();
+            lon[i] = -124 + 57 * rand.nextDouble();
+        }
+    }
+
+    /**
+     * Return the identifier of airport i: three letters (AAA, AAB, ...) for the first 17576 airports, then longer
+     * codes.
+     */
+    static String code(int i) {
+        if (i < 26 * 26 * 26) {
+            return "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+        }
+        return "X" + i;
+    }
+
+    /**
+     * Return the number of airports.
+     */
+    public int numAirports() {
+        return codes.length;
+    }
+
+    /**
+     * Return the code of airport i.
+     */
+    public String codeOf(int i) {
+        return codes[i];
+    }
+
+    /**
+     * Return the coordinates of every airport, keyed by code.
+     */
+    public AirportCoordinates coordinates() {
+        AirportCoordinates coords = new AirportCoordinates();
+        for (int i = 0; i < codes.length; i++) {
+            coords.put(codes[i], lat[i], lon[i]);
+        }
+        return coords;
+    }
+
+    /**
+     * Return the rounded great-circle distance in miles between airports a and b.
+     */
+    public double distance(int a, int b) {
+        return Math.max(1, Math.rint(AirportCoordinates.greatCircleMiles(lat[a], lon[a], lat[b], lon[b])));
+    }
+
+    /* Draw an airport: uniformly, or with a strong bias toward low indices (the hubs). */
+    private int airport() {
+        double u = rand.nextDouble();
+        return (int) (codes.length * (hubs ? u * u * u : u));
+    }
+
+    /* Draw a destination different from orig. */
+    private int destination(int orig) {
+        int dest = airport();
+        while (dest == orig && codes.length > 1) {
+            dest = airport();
+        }
+        return dest;
+    }
+
+    /**
+     * Write a DB1BCoupon-shaped CSV file with the given number of coupon rows.
+     */
+    public void writeDB1B(File f, int rows) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(f), 1 << 16))) {
+            out.println(DB1B_HEADER);
+            for (int r = 0; r < rows; r++) {
+                int o = airport();
+                int d = destination(o);
+                double miles = distance(o, d);
+                String carrier = CARRIERS[rand.nextInt(CARRIERS.length)];
+                long itin = 202310000000L + r;
+                out.print(itin + "," + (itin * 100 + 1) + "," + (1 + rand.nextInt(4)) + "," + (1 + rand.nextInt(6))
+                        + ",2023," + (10000 + o) + "," + (1000000 + o) + "," + (30000 + o) + "," + (1 + rand.nextInt(4))
+                        + ",\"" + codes[o] + "\",\"US\",\"12\",\"FL\",\"Florida\",33,");
+                out.print((10000 + d) + "," + (1000000 + d) + "," + (30000 + d) + ",\"" + codes[d]
+                        + "\",\"US\",\"48\",\"TX\",\"Texas\",74,\"\",\"A\",\"" + carrier + "\",\"" + carrier + "\",\""
+                        + carrier + "\",");
+                out.println((1 + rand.nextInt(3)) + ".00,\"" + FARE_CLASSES[rand.nextInt(FARE_CLASSES.length)] + "\","
+                        + (long) miles + ".00," + (1 + (int) (miles / 500)) + ",0.00,2,2,");
+            }
+        }
+    }
+
+    /**
+     * Write a file in BasicParser's "ORIG DEST DISTANCE" format with the given number of lines.
+     */
+    public void writeBasic(File f, int rows) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(f), 1 << 16))) {
+            for (int r = 0; r < rows; r++) {
+                int o = airport();
+                int d = destination(o);
+                out.println(codes[o] + " " + codes[d] + " " + (long) distance(o, d));
+            }
+        }
+    }
+
+    /**
+     * Build a graph over all airports in which each airport has about avgDegree out-edges. Every airport also has an
+     * edge to the next one, so that every node is reachable from every other.
+     */
+    public Graph graph(int avgDegree) {
+        Graph g = new Graph();
+        int n = codes.length;
+        for (int i = 0; i < n; i++) {
+            g.getNode(codes[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            int next = (i + 1) % n;
+            g.addEdge(g.getNode(i), g.getNode(next), distance(i, next));
+        }
+        long extra = (long) n * Math.max(0, avgDegree - 1);
+        for (long k = 0; k < extra; k++) {
+            int o = airport();
+            int d = destination(o);
+            g.addEdge(g.getNode(o), g.getNode(d), distance(o, d));
+        }
+        return g;
+    }
+
+    /** Main method: write a synthetic data file.
+     *  Usage: SyntheticData (db1b|basic) outputFile rows airports [hubs]
+     *  Pass "hubs" as the last argument to skew traffic toward hub airports. */
+    public static void main(String[] args) throws IOException {
+        int rows = Integer.parseInt(args[2]);
+        int airports = Integer.parseInt(args[3]);
+        boolean hubs = args.length > 4 && args[4].equals("hubs");
+        SyntheticData data = new SyntheticData(airports, hubs, 2023);
+        if (args[0].equals("db1b")) {
+            data.writeDB1B(new File(args[1]), rows);
+        } else {
+            data.writeBasic(new File(args[1]), rows);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package graph;
+
+import java.util.Arrays;
+
+/** Goal-directed point-to-point shortest paths (A* search) over an IndexedGraph. Like Dijkstra.query, but frontier
+ * nodes are ordered by their distance from the origin plus a LowerBound on their remaining distance to the
+ * destination, so the search expands toward the destination and settles far fewer nodes. With an admissible bound the
+ * result is a shortest path; if the bound is not also consistent, nodes may be expanded more than once. The search
+ * state lives in a SearchWorkspace and the cached bounds carry a stamp of the query that computed them, so starting a
+ * query is O(1) and the work is proportional to the nodes the search touches.
+ * Sample usage:
+ *   IndexedGraph g = graph.compile();
+ *   LowerBound h = AirportCoordinates.load(coordinatesFile).greatCircleBound(g);
+ *   PathResult r = new AStar(g).query(g.indexOf("ATL"), g.indexOf("LAX"), h);
+ *   */
+public class AStar {
+
+    private final IndexedGraph graph;
+
+    // ws.dist(v) is the length of the shortest known path from the origin to v, and ws.prev(v) the node before v;
+    // the heap holds frontier nodes keyed by dist + estimate
+    private final SearchWorkspace ws;
+    private final double[] estimate; // estimate[v] caches the lower bound from v to the destination
+    private final int[] estimateStamp; // estimate[v] is valid if estimateStamp[v] == queries
+    private int queries;
+
+    /**
+     * Constructor: create an engine for shortest path queries on g.
+     */
+    public AStar(IndexedGraph g) {
+        graph = g;
+        int n = g.numNodes();
+        ws = new SearchWorkspace(n);
+        estimate = new double[n];
+        estimateStamp = new int[n];
+    }
+
+    /**
+     * Find the shortest path from origin to destination, guided by the admissible lower bound h. Precondition: both
+     * nodes are in the graph.
+     */
+    public PathResult query(int origin, int destination, LowerBound h) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long relaxed = 0;
+        ws.reset();
+        if (queries == Integer.MAX_VALUE) {
+            // the stamps wrap around; clear them once
+            Arrays.fill(estimateStamp, 0);
+            queries = 0;
+        }
+        queries++;
+        IndexedHeap heap = ws.heap();
+
+        ws.set(origin, 0, -1);
+        heap.add(origin, estimate(origin, destination, h));
+        int settled = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            if (u == destination) {
+                break;
+            }
+            double du = ws.dist(u);
+            int end = graph.edgeEnd(u);
+            if (Metrics.ENABLED) {
+                relaxed += end - graph.edgeBegin(u);
+            }
+            for (int e = graph.edgeBegin(u); e < end; e++) {
+                int v = graph.target(e);
+                double dv = du + graph.weight(e);
+                if (dv < ws.dist(v)) {
+                    ws.set(v, dv, u);
+                    heap.addOrDecrease(v, dv + estimate(v, destination, h));
+                }
+            }
+        }
+        if (Metrics.ENABLED) {
+            // every node pushed was either popped or is still in the heap
+            Metrics.recordSearch(System.nanoTime() - start, settled, relaxed, settled + heap.size(), settled);
+        }
+        return new PathResult(graph, path(destination), ws.dist(destination), settled);
+    }
+
+    /* Return the lower bound from v to destination, computing it only the first time v is reached. */
+    private double estimate(int v, int destination, LowerBound h) {
+        if (estimateStamp[v] != queries) {
+            estimateStamp[v] = queries;
+            estimate[v] = h.estimate(v, destination);
+        }
+        return estimate[v];
+    }
+
+    /* Return the node ids along the shortest path found to destination, or null if it was not reached. */
+    private int[] path(int destination) {
+        if (ws.dist(destination) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int length = 1;
+        for (int v = destination; ws.prev(v) != -1; v = ws.prev(v)) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = destination, i = length - 1; i >= 0; v = ws.prev(v), i--) {
+            path[i] = v;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,146 @@
+package graph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Scanner;
+
+/** Latitude and longitude of airports, keyed by the same codes the graphs use as node ids, loaded from a local CSV
+ * file. The file must have a header row naming a code column (one of iata, iata_code, code, airport, locid), a
+ * latitude column (latitude, lat or latitude_deg) and a longitude column (longitude, lon, lng or longitude_deg), in
+ * decimal degrees; other columns are ignored, as are rows with a missing or malformed coordinate.
+ * DB1B rows also carry numeric OriginAirportID/DestAirportID columns, so a coordinates file keyed by BTS airport id
+ * could be joined on those instead; this class only joins on the code. */
+public class AirportCoordinates {
+
+    // mean radius of the earth in statute miles, the unit of DB1B distances
+    static final double EARTH_RADIUS_MILES = 3958.8;
+
+    // maps airport codes to {latitude, longitude} in degrees
+    private HashMap<String, double[]> coordinates;
+
+    /**
+     * Constructor: create an empty set of coordinates.
+     */
+    public AirportCoordinates() {
+        coordinates = new HashMap<String, double[]>();
+    }
+
+    /**
+     * Load airport coordinates from the CSV file f.
+     */
+    public static AirportCoordinates load(File f) throws FileNotFoundException {
+        AirportCoordinates result = new AirportCoordinates();
+        Scanner sc = new Scanner(f);
+        if (!sc.hasNextLine()) {
+            sc.close();
+            return result;
+        }
+        String[] headers = sc.nextLine().split(",");
+        int codeCol = column(headers, "iata", "iata_code", "code", "airport", "locid");
+        int latCol = column(headers, "latitude", "lat", "latitude_deg");
+        int lonCol = column(headers, "longitude", "lon", "lng", "longitude_deg");
+        if (codeCol < 0 || latCol < 0 || lonCol < 0) {
+            sc.close();
+            throw new IllegalArgumentException(
+                    "Coordinates header must name code, latitude and longitude columns: " + String.join(",", headers));
+        }
+        while (sc.hasNextLine()) {
+            String[] fields = sc.nextLine().split(",");
+            if (fields.length <= Math.max(codeCol, Math.max(latCol, lonCol))) {
+                continue;
+            }
+            try {
+                double lat = Double.parseDouble(unquote(fields[latCol]));
+                double lon = Double.parseDouble(unquote(fields[lonCol]));
+                result.put(unquote(fields[codeCol]), lat, lon);
+            } catch (NumberFormatException e) {
+                // skip rows without usable coordinates
+            }
+        }
+        sc.close();
+        return result;
+    }
+
+    /**
+     * Record the coordinates, in decimal degrees, of the airport with the given code.
+     */
+    public void put(String code, double latitude, double longitude) {
+        coordinates.put(code, new double[] {latitude, longitude});
+    }
+
+    /**
+     * Return true if coordinates are known for the airport with the given code.
+     */
+    public boolean contains(String code) {
+        return coordinates.containsKey(code);
+    }
+
+    /**
+     * Return the latitude in degrees of the airport with the given code, or NaN if it is unknown.
+     */
+    public double latitude(String code) {
+        double[] c = coordinates.get(code);
+        return c == null ? Double.NaN : c[0];
+    }
+
+    /**
+     * Return the longitude in degrees of the airport with the given code, or NaN if it is unknown.
+     */
+    public double longitude(String code) {
+        double[] c = coordinates.get(code);
+        return c == null ? Double.NaN : c[1];
+    }
+
+    /**
+     * Return a great-circle lower bound for the nodes of g, with coordinates looked up by node id. See
+     * GreatCircleBound.
+     */
+    public GreatCircleBound greatCircleBound(IndexedGraph g) {
+        return greatCircleBound(g, GreatCircleBound.DEFAULT_SLACK);
+    }
+
+    /**
+     * Return a great-circle lower bound for the nodes of g that scales every great-circle distance by slack (at most
+     * 1) to absorb rounding in the coordinates and distances.
+     */
+    public GreatCircleBound greatCircleBound(IndexedGraph g, double slack) {
+        int n = g.numNodes();
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int v = 0; v < n; v++) {
+            String id = g.idOf(v);
+            lat[v] = latitude(id);
+            lon[v] = longitude(id);
+        }
+        return new GreatCircleBound(lat, lon, slack);
+    }
+
+    /**
+     * Return the great-circle distance in miles between two points given in decimal degrees.
+     */
+    public static double greatCircleMiles(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1);
+        double p2 = Math.toRadians(lat2);
+        double sinDp = Math.sin((p2 - p1) / 2);
+        double sinDl = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double h = sinDp * sinDp + Math.cos(p1) * Math.cos(p2) * sinDl * sinDl;
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /* Return the index of the first header matching one of names, ignoring case and quotes, or -1. */
+    private static int column(String[] headers, String... names) {
+        for (String name : names) {
+            for (int i = 0; i < headers.length; i++) {
+                if (unquote(headers[i]).toLowerCase().equals(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String unquote(String s) {
+        return s.replace("\"", "").trim();
+    }
+}
@@ -0,0 +1,82 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Parses numbers directly from ASCII bytes in a ByteBuffer, so that parsers do not have to build a String for every
+ * numeric field they read. */
+final class AsciiNumbers {
+
+    // exact powers of ten; a long mantissa below 2^53 divided by one of these is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long MAX_EXACT = 1L << 53;
+
+    private AsciiNumbers() {
+    }
+
+    /**
+     * Parse the decimal number in bytes from (inclusive) to to (exclusive) of buf, ignoring surrounding double quotes.
+     * Plain decimals such as "985.00" or "-12.5" are parsed without allocating and give the same result as
+     * Double.parseDouble; anything else (exponents, very long mantissas) falls back to Double.parseDouble.
+     * Throws NumberFormatException if the bytes are not a number.
+     */
+    static double parseDouble(ByteBuffer buf, int from, int to) {
+        while (from < to && buf.get(from) == '"') {
+            from++;
+        }
+        while (to > from && buf.get(to - 1) == '"') {
+            to--;
+        }
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1; // -1 until the decimal point is seen
+        for (; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                if (mantissa >= MAX_EXACT) {
+                    return slowParse(buf, from, to);
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return slowParse(buf, from, to);
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return slowParse(buf, from, to);
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : (double) mantissa;
+        return negative ? -value : value;
+    }
+
+    /* Fall back to the JDK parser for input the fast path does not handle. */
+    private static double slowParse(ByteBuffer buf, int from, int to) {
+        return Double.parseDouble(decode(buf, from, to));
+    }
+
+    /**
+     * Decode bytes from (inclusive) to to (exclusive) of buf as a UTF-8 String.
+     */
+    static String decode(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -10,7 +10,9 @@ import java.io.FileNotFoundException;
  * information; each line must contain:
  *  ORIG DEST DISTANCE
  * separated by a single space. ORIG and DEST are parsed as Strings, and
- * DISTANCE is parsed as a double. Any content after DISTANCE is ignored. */
+ * DISTANCE is parsed as a double. Any content after DISTANCE is ignored. Blank lines are skipped.
+ * A line that does not have this form is counted as rejected in Metrics and stops the parse with
+ * an IllegalArgumentException, as in the parsers built on EdgeRowScanner. */
 public class BasicParser extends GraphParser {
 
     Scanner sc; // scanner to read the text file
@@ -31,18 +33,43 @@ public class BasicParser extends GraphParser {
     @Override
     public Graph parse() {
         Graph graph = new Graph();
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long lines = 0;
+        long rejected = 0;
+        long bytes = 0;
 
-        while (sc.hasNextLine()) {
-            String[] data = sc.nextLine().split(" ");
-            String origCode = data[0];
-            String destCode = data[1];
-            double distance = Double.parseDouble(data[2]);
+        try {
+            while (sc.hasNextLine()) {
+                String line = sc.nextLine();
+                lines++;
+                bytes += line.length() + 1;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] data = line.split(" ");
+                if (data.length < 3) {
+                    rejected++;
+                    throw new IllegalArgumentException("Row has too few fields: " + line);
+                }
+                double distance;
+                try {
+                    distance = Double.parseDouble(data[2]);
+                } catch (NumberFormatException e) {
+                    rejected++;
+                    throw e;
+                }
+                String origCode = data[0];
+                String destCode = data[1];
 
-            Node orig = graph.getNode(origCode);
-            Node dest = graph.getNode(destCode);
-            graph.addEdge(orig, dest, distance);
+                Node orig = graph.getNode(origCode);
+                Node dest = graph.getNode(destCode);
+                graph.addEdge(orig, dest, distance);
+            }
+        } finally {
+            if (Metrics.ENABLED) {
+                Metrics.recordParse(lines, rejected, bytes, System.nanoTime() - start);
+            }
         }
-
         return graph;
     }
 }
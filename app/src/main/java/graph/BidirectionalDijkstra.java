@@ -0,0 +1,122 @@
+package graph;
+
+/** Point-to-point shortest paths by bidirectional Dijkstra: a forward search from the origin over out-edges and a
+ * backward search from the destination over in-edges (the graph's transpose) take turns, always advancing the side
+ * whose frontier is closer, and stop once the two frontiers together are at least as long as the best path found
+ * where they meet. For long-haul pairs this settles far fewer nodes than a forward-only search. Each side keeps its
+ * state in a SearchWorkspace, so starting a query costs O(1) rather than O(n) and the work is proportional to the
+ * nodes the two searches touch.
+ * Sample usage:
+ *   IndexedGraph g = graph.compile();
+ *   BidirectionalDijkstra bd = new BidirectionalDijkstra(g);
+ *   PathResult r = bd.query(g.indexOf("YUL"), g.indexOf("YVR"));
+ *   */
+public class BidirectionalDijkstra {
+
+    private final IndexedGraph forward;
+    private final IndexedGraph backward;
+
+    // wsF.dist(v) is the length of the shortest known path from the origin to v, and wsF.prev(v) the node before v
+    private final SearchWorkspace wsF;
+    // wsB.dist(v) is the length of the shortest known path from v to the destination, and wsB.prev(v) the node after v
+    private final SearchWorkspace wsB;
+
+    /**
+     * Constructor: create an engine for shortest path queries on g. Uses g.transpose() for the backward search.
+     */
+    public BidirectionalDijkstra(IndexedGraph g) {
+        forward = g;
+        backward = g.transpose();
+        wsF = new SearchWorkspace(g.numNodes());
+        wsB = new SearchWorkspace(g.numNodes());
+    }
+
+    /**
+     * Find the shortest path from origin to destination. Precondition: both nodes are in the graph.
+     */
+    public PathResult query(int origin, int destination) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long relaxed = 0;
+        wsF.reset();
+        wsB.reset();
+        IndexedHeap heapF = wsF.heap();
+        IndexedHeap heapB = wsB.heap();
+
+        wsF.set(origin, 0, -1);
+        wsB.set(destination, 0, -1);
+        heapF.add(origin, 0);
+        heapB.add(destination, 0);
+        double best = origin == destination ? 0 : Double.POSITIVE_INFINITY;
+        int meet = origin == destination ? origin : -1;
+        int settled = 0;
+
+        while (!heapF.isEmpty() && !heapB.isEmpty() && heapF.peekKey() + heapB.peekKey() < best) {
+            settled++;
+            if (heapF.peekKey() <= heapB.peekKey()) {
+                int u = heapF.poll();
+                double du = wsF.dist(u);
+                int end = forward.edgeEnd(u);
+                if (Metrics.ENABLED) {
+                    relaxed += end - forward.edgeBegin(u);
+                }
+                for (int e = forward.edgeBegin(u); e < end; e++) {
+                    int v = forward.target(e);
+                    double dv = du + forward.weight(e);
+                    if (dv < wsF.dist(v)) {
+                        wsF.set(v, dv, u);
+                        heapF.addOrDecrease(v, dv);
+                    }
+                    if (dv + wsB.dist(v) < best) {
+                        best = dv + wsB.dist(v);
+                        meet = v;
+                    }
+                }
+            } else {
+                int u = heapB.poll();
+                double du = wsB.dist(u);
+                int end = backward.edgeEnd(u);
+                if (Metrics.ENABLED) {
+                    relaxed += end - backward.edgeBegin(u);
+                }
+                for (int e = backward.edgeBegin(u); e < end; e++) {
+                    int v = backward.target(e);
+                    double dv = du + backward.weight(e);
+                    if (dv < wsB.dist(v)) {
+                        wsB.set(v, dv, u);
+                        heapB.addOrDecrease(v, dv);
+                    }
+                    if (dv + wsF.dist(v) < best) {
+                        best = dv + wsF.dist(v);
+                        meet = v;
+                    }
+                }
+            }
+        }
+        if (Metrics.ENABLED) {
+            // every node pushed was either popped or is still in one of the heaps
+            long pushes = settled + heapF.size() + heapB.size();
+            Metrics.recordSearch(System.nanoTime() - start, settled, relaxed, pushes, settled);
+        }
+        return new PathResult(forward, meet == -1 ? null : path(meet), best, settled);
+    }
+
+    /* Join the forward path from the origin to meet with the backward path from meet to the destination. */
+    private int[] path(int meet) {
+        int toMeet = 0; // nodes from the origin to meet, inclusive
+        for (int v = meet; v != -1; v = wsF.prev(v)) {
+            toMeet++;
+        }
+        int fromMeet = 0; // nodes after meet up to the destination
+        for (int v = wsB.prev(meet); v != -1; v = wsB.prev(v)) {
+            fromMeet++;
+        }
+        int[] path = new int[toMeet + fromMeet];
+        for (int v = meet, i = toMeet - 1; v != -1; v = wsF.prev(v), i--) {
+            path[i] = v;
+        }
+        for (int v = wsB.prev(meet), i = toMeet; v != -1; v = wsB.prev(v), i++) {
+            path[i] = v;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,188 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/** Point-to-point shortest paths on a ContractionHierarchy. A forward search from the origin follows only edges to
+ * higher-ranked nodes and a backward search from the destination follows only edges from higher-ranked nodes; the
+ * shortest path is the best meeting point of the two. Each side stops once its frontier is at least as long as the
+ * best path found, and both searches stay within the few nodes above their start in the hierarchy, so a query
+ * settles a handful of nodes where Dijkstra settles thousands. Each side keeps its state in a SearchWorkspace, which
+ * starts a query in O(1), so the cost of a query is that handful of nodes rather than the size of the graph. Shortcuts
+ * on the path found are then unpacked into the original edges they stand for.
+ * Sample usage:
+ *   CHQuery ch = new CHQuery(ContractionHierarchy.build(g));
+ *   PathResult r = ch.query(g.indexOf("YUL"), g.indexOf("YVR"));
+ *   */
+public class CHQuery {
+
+    private final ContractionHierarchy ch;
+    private final IndexedGraph graph;
+
+    // wsF.dist(v) is the length of the shortest known upward path from the origin to v, and wsF.prev(v) the node
+    // before v on it
+    private final SearchWorkspace wsF;
+    // wsB.dist(v) is the length of the shortest known downward path from v to the destination, and wsB.prev(v) the
+    // node after v on it
+    private final SearchWorkspace wsB;
+
+    /**
+     * Constructor: create an engine for shortest path queries on the graph ch was built from.
+     */
+    public CHQuery(ContractionHierarchy ch) {
+        this.ch = ch;
+        graph = ch.getGraph();
+        wsF = new SearchWorkspace(graph.numNodes());
+        wsB = new SearchWorkspace(graph.numNodes());
+    }
+
+    /**
+     * Return the hierarchy this engine searches.
+     */
+    public ContractionHierarchy getHierarchy() {
+        return ch;
+    }
+
+    /**
+     * Find the shortest path from origin to destination. Precondition: both nodes are in the graph.
+     */
+    public PathResult query(int origin, int destination) {
+        wsF.reset();
+        wsB.reset();
+        IndexedHeap heapF = wsF.heap();
+        IndexedHeap heapB = wsB.heap();
+
+        wsF.set(origin, 0, -1);
+        wsB.set(destination, 0, -1);
+        heapF.add(origin, 0);
+        heapB.add(destination, 0);
+        double best = origin == destination ? 0 : Double.POSITIVE_INFINITY;
+        int meet = origin == destination ? origin : -1;
+        int settled = 0;
+
+        // unlike plain bidirectional Dijkstra, the two searches only meet near the top of the hierarchy, so neither
+        // side can stop until its own frontier has passed the best path
+        while (true) {
+            boolean forwardOpen = !heapF.isEmpty() && heapF.peekKey() < best;
+            boolean backwardOpen = !heapB.isEmpty() && heapB.peekKey() < best;
+            if (!forwardOpen && !backwardOpen) {
+                break;
+            }
+            settled++;
+            if (forwardOpen && (!backwardOpen || heapF.peekKey() <= heapB.peekKey())) {
+                int u = heapF.poll();
+                double du = wsF.dist(u);
+                for (int e = ch.upOffsets[u], end = ch.upOffsets[u + 1]; e < end; e++) {
+                    int v = ch.upTargets[e];
+                    double dv = du + ch.upWeights[e];
+                    if (dv < wsF.dist(v)) {
+                        wsF.set(v, dv, u);
+                        heapF.addOrDecrease(v, dv);
+                    }
+                    if (dv + wsB.dist(v) < best) {
+                        best = dv + wsB.dist(v);
+                        meet = v;
+                    }
+                }
+            } else {
+                int u = heapB.poll();
+                double du = wsB.dist(u);
+                for (int e = ch.downOffsets[u], end = ch.downOffsets[u + 1]; e < end; e++) {
+                    int v = ch.downSources[e];
+                    double dv = du + ch.downWeights[e];
+                    if (dv < wsB.dist(v)) {
+                        wsB.set(v, dv, u);
+                        heapB.addOrDecrease(v, dv);
+                    }
+                    if (dv + wsF.dist(v) < best) {
+                        best = dv + wsF.dist(v);
+                        meet = v;
+                    }
+                }
+            }
+        }
+        return new PathResult(graph, meet == -1 ? null : unpack(meet), best, settled);
+    }
+
+    /**
+     * Return the shortest path from origin to destination as a list of nodes of g, the graph the hierarchy was
+     * compiled from, in the form ShortestPaths.shortestPath returns it: the nodes of the path in order, or null if
+     * no path exists.
+     */
+    public LinkedList<Node> shortestPath(Graph g, Node origin, Node destination) {
+        PathResult r = query(graph.indexOf(origin.getId()), graph.indexOf(destination.getId()));
+        return r.exists() ? r.toNodes(g) : null;
+    }
+
+    /* Build the hierarchy path through meet and replace every shortcut on it by the original edges it stands for. */
+    private int[] unpack(int meet) {
+        IntList packed = new IntList();
+        for (int v = meet; v != -1; v = wsF.prev(v)) {
+            packed.add(v);
+        }
+        packed.reverse();
+        for (int v = wsB.prev(meet); v != -1; v = wsB.prev(v)) {
+            packed.add(v);
+        }
+
+        IntList path = new IntList();
+        path.add(packed.get(0));
+        IntList stack = new IntList(); // hierarchy edges still to unpack, as (from, to) pairs, last edge first
+        for (int i = 1; i < packed.size(); i++) {
+            stack.add(packed.get(i - 1));
+            stack.add(packed.get(i));
+            while (stack.size() > 0) {
+                int b = stack.pop();
+                int a = stack.pop();
+                int mid = ch.middle(a, b);
+                if (mid == -1) {
+                    path.add(b);
+                } else {
+                    // unpack a -> mid first, so push it last
+                    stack.add(mid);
+                    stack.add(b);
+                    stack.add(a);
+                    stack.add(mid);
+                }
+            }
+        }
+        return path.toArray();
+    }
+
+    /** A growable list of ints. */
+    private static class IntList {
+        private int[] items = new int[16];
+        private int size;
+
+        void add(int x) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2 * size);
+            }
+            items[size++] = x;
+        }
+
+        int get(int i) {
+            return items[i];
+        }
+
+        int pop() {
+            return items[--size];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int t = items[i];
+                items[i] = items[j];
+                items[j] = t;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
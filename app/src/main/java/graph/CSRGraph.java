@@ -0,0 +1,197 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/** An immutable graph in compressed-sparse-row form. Node v's out-edges occupy positions offsets[v] up to (but not
+ * including) offsets[v+1] of the targets and weights arrays, sorted by target. Compared with Graph, which keeps a
+ * HashMap of boxed weights per Node, this stores each edge in one int and one double and lets the shortest path
+ * engines scan adjacency without hashing or pointer chasing.
+ * Graph remains the mutable builder; create a CSRGraph with Graph.compile(). Compiling also builds the transpose
+ * (every edge reversed) from the Graph's reverse index, for searches that run backward from a destination. */
+public class CSRGraph implements IndexedGraph {
+
+    private final String[] ids; // ids[v] is the String identifier of node v
+    private final NodeDictionary index; // maps identifiers back to node ids, shared with the transpose
+
+    private final int[] offsets; // length numNodes()+1
+    private final int[] targets; // length numEdges()
+    private final double[] weights; // length numEdges()
+
+    private CSRGraph transpose; // this graph with every edge reversed, built on first use if not compiled with it
+
+    /**
+     * Constructor: wrap the given arrays. The arrays are not copied, so the caller must not modify them afterwards.
+     */
+    CSRGraph(String[] ids, int[] offsets, int[] targets, double[] weights) {
+        this(ids, new NodeDictionary(ids), offsets, targets, weights);
+    }
+
+    /* Constructor: wrap the given arrays, sharing an existing identifier index. */
+    private CSRGraph(String[] ids, NodeDictionary index, int[] offsets, int[] targets, double[] weights) {
+        this.ids = ids;
+        this.index = index;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Compile g into CSR form, together with its transpose. Node v of the result is g.getNode(v).
+     */
+    public static CSRGraph from(Graph g) {
+        int n = g.numNodes();
+        String[] ids = new String[n];
+        for (int v = 0; v < n; v++) {
+            ids[v] = g.getNode(v).getId();
+        }
+        NodeDictionary index = new NodeDictionary(ids);
+        CSRGraph forward = compileEdges(g, ids, index, false);
+        CSRGraph backward = compileEdges(g, ids, index, true);
+        forward.transpose = backward;
+        backward.transpose = forward;
+        return forward;
+    }
+
+    /* Build the CSR arrays of g's out-edges, or of its in-edges if reverse is true. */
+    private static CSRGraph compileEdges(Graph g, String[] ids, NodeDictionary index, boolean reverse) {
+        int n = ids.length;
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + edgesOf(g.getNode(v), reverse).size();
+        }
+
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        for (int v = 0; v < n; v++) {
+            int e = offsets[v];
+            for (Map.Entry<Node, Double> edge : edgesOf(g.getNode(v), reverse).entrySet()) {
+                targets[e] = edge.getKey().getIndex();
+                weights[e] = edge.getValue();
+                e++;
+            }
+            sortByTarget(targets, weights, offsets[v], offsets[v + 1]);
+        }
+        return new CSRGraph(ids, index, offsets, targets, weights);
+    }
+
+    private static Map<Node, Double> edgesOf(Node node, boolean reverse) {
+        return reverse ? node.getInNeighbors() : node.getNeighbors();
+    }
+
+    /**
+     * Return a CSRGraph with the same nodes as g and every edge of g reversed.
+     */
+    public static CSRGraph transposeOf(IndexedGraph g) {
+        int n = g.numNodes();
+        String[] ids = new String[n];
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            ids[v] = g.idOf(v);
+            for (int e = g.edgeBegin(v); e < g.edgeEnd(v); e++) {
+                offsets[g.target(e) + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        // visiting sources in increasing order leaves each reversed row sorted by target
+        for (int u = 0; u < n; u++) {
+            for (int e = g.edgeBegin(u); e < g.edgeEnd(u); e++) {
+                int slot = next[g.target(e)]++;
+                targets[slot] = u;
+                weights[slot] = g.weight(e);
+            }
+        }
+        return new CSRGraph(ids, offsets, targets, weights);
+    }
+
+    /**
+     * Return this graph with every edge reversed. The result shares this graph's node ids.
+     */
+    @Override
+    public synchronized CSRGraph transpose() {
+        if (transpose == null) {
+            CSRGraph t = transposeOf(this);
+            t.transpose = this;
+            transpose = t;
+        }
+        return transpose;
+    }
+
+    /**
+     * Return a checksum of g's node ids and edges, so that data precomputed for a graph (landmark tables, contraction
+     * hierarchies) can detect when it is loaded against a different graph.
+     */
+    static long fingerprint(IndexedGraph g) {
+        long h = 1;
+        for (int v = 0; v < g.numNodes(); v++) {
+            h = 31 * h + g.idOf(v).hashCode();
+            for (int e = g.edgeBegin(v); e < g.edgeEnd(v); e++) {
+                h = 31 * h + g.target(e);
+                h = 31 * h + Double.doubleToLongBits(g.weight(e));
+            }
+        }
+        return h;
+    }
+
+    /* Insertion sort targets[lo..hi) and the matching weights by target, so that the edge order of a compiled graph
+     * does not depend on HashMap iteration order. Out-degrees are small, so this is cheaper than a general sort. */
+    private static void sortByTarget(int[] targets, double[] weights, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int t = targets[i];
+            double w = weights[i];
+            int j = i - 1;
+            while (j >= lo && targets[j] > t) {
+                targets[j + 1] = targets[j];
+                weights[j + 1] = weights[j];
+                j--;
+            }
+            targets[j + 1] = t;
+            weights[j + 1] = w;
+        }
+    }
+
+    @Override
+    public int numNodes() {
+        return ids.length;
+    }
+
+    @Override
+    public int numEdges() {
+        return targets.length;
+    }
+
+    @Override
+    public String idOf(int v) {
+        return ids[v];
+    }
+
+    @Override
+    public int indexOf(String id) {
+        return index.indexOf(id);
+    }
+
+    @Override
+    public int edgeBegin(int v) {
+        return offsets[v];
+    }
+
+    @Override
+    public int edgeEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    @Override
+    public int target(int e) {
+        return targets[e];
+    }
+
+    @Override
+    public double weight(int e) {
+        return weights[e];
+    }
+}
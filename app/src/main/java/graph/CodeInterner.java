@@ -0,0 +1,117 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Interns short byte strings, such as airport codes read straight from a mapped file, into dense int ids 0, 1, 2,
+ * ... in order of first appearance. Looking up a code that has been seen before compares bytes in place and does not
+ * allocate; a String is created only once per distinct code. */
+final class CodeInterner {
+
+    private int[] table; // open-addressing table of id+1, 0 for an empty slot; length is a power of two
+    private int[] hashes; // hashes[id] is the hash of code id
+    private byte[][] codes; // codes[id] is the bytes of code id
+    private String[] names; // names[id] is code id as a String
+    private int size;
+
+    /**
+     * Constructor: create an empty interner.
+     */
+    CodeInterner() {
+        table = new int[64];
+        hashes = new int[16];
+        codes = new byte[16][];
+        names = new String[16];
+    }
+
+    /**
+     * Return the number of distinct codes interned so far.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return code id as a String.
+     */
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Return the id of the code in bytes from (inclusive) to to (exclusive) of buf, assigning the next id if the
+     * code has not been seen before.
+     */
+    int intern(ByteBuffer buf, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + buf.get(i);
+        }
+        int mask = table.length - 1;
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return add(buf, from, to, h, slot);
+            }
+            int id = entry - 1;
+            if (hashes[id] == h && sameBytes(codes[id], buf, from, to)) {
+                return id;
+            }
+        }
+    }
+
+    /* Store a new code in the given empty slot and return its id. */
+    private int add(ByteBuffer buf, int from, int to, int h, int slot) {
+        if (size == codes.length) {
+            int capacity = 2 * size;
+            hashes = Arrays.copyOf(hashes, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        byte[] code = new byte[to - from];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = buf.get(from + i);
+        }
+        int id = size++;
+        hashes[id] = h;
+        codes[id] = code;
+        names[id] = new String(code, StandardCharsets.UTF_8);
+        table[slot] = id + 1;
+        if (2 * size > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /* Double the table and reinsert every id. */
+    private void rehash() {
+        table = new int[2 * table.length];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    /* Spread the bits of h so that codes differing only in their last byte land in different slots. */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean sameBytes(byte[] code, ByteBuffer buf, int from, int to) {
+        if (code.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < code.length; i++) {
+            if (code[i] != buf.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,319 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/** Resource-constrained shortest paths over an IndexedGraph, for itinerary questions that are not just shortest
+ * miles: paths with at most maxHops segments, paths that use only the edges of an edge filter (such as the edges a
+ * carrier set flies, from EdgeAggregates.carrierEdges), and the Pareto front of distance against number of hops.
+ * The search is Martins' multi-criteria Dijkstra over labels (distance, hops, node, predecessor label). Labels are
+ * taken from one heap in lexicographic (distance, hops) order, so every label settled at a node has a smaller
+ * distance than the ones after it, and a label is kept only if it has fewer hops than every label settled at its
+ * node before it: dominance pruning is one int comparison against the fewest hops seen at the node, and the labels
+ * settled at a node are exactly its Pareto front, at most maxHops + 1 of them. Labels that are dominated when created
+ * are never stored; those dominated by the time they leave the heap are skipped.
+ * Labels live in parallel primitive arrays indexed by label number, which grow by doubling up to the label limit
+ * (setMaxLabels); a search that would need more labels throws IllegalStateException instead of exhausting the heap.
+ * Edge weights must be non-negative.
+ * Sample usage:
+ *   ConstrainedPaths cp = new ConstrainedPaths(graph.compile());
+ *   cp.setMaxHops(2);
+ *   cp.setEdgeFilter(aggregates.carrierEdges(csr, false, "AA", "DL"));
+ *   cp.compute(origin);
+ *   double d = cp.shortestPathLength(v); // shortest with at most 2 hops on AA or DL
+ *   List<PathResult> front = cp.front(v); // shortest path for each number of hops that improves on fewer
+ *   */
+public class ConstrainedPaths {
+
+    /** The default label limit. Each label takes 28 bytes, so this is under 500 MB of label storage. */
+    public static final int DEFAULT_MAX_LABELS = 1 << 24;
+
+    private final IndexedGraph graph;
+    private int maxHops = Integer.MAX_VALUE;
+    private BitSet edgeFilter; // the edges paths may use, or null for every edge
+    private int maxLabels = DEFAULT_MAX_LABELS;
+
+    // label l is a path to labelNode[l] of length labelDist[l] with labelHops[l] edges, whose last edge leaves the
+    // node of label labelPrev[l] (-1 for the origin's label)
+    private double[] labelDist = new double[1024];
+    private int[] labelHops = new int[1024];
+    private int[] labelNode = new int[1024];
+    private int[] labelPrev = new int[1024];
+    private int[] labelNext = new int[1024]; // the next label settled at the same node, or -1
+    private int numLabels;
+
+    private int[] heap = new int[1024]; // binary heap of label numbers in (distance, hops) order
+    private int heapSize;
+
+    private final int[] fewestHops; // fewest hops of any label settled at v, or Integer.MAX_VALUE
+    private final int[] firstLabel; // the first (shortest) label settled at v, or -1
+    private final int[] lastLabel; // the last (fewest hops) label settled at v, or -1
+    private final int[] frontSize; // the number of labels settled at v
+    private int origin = -1;
+    private int settled;
+
+    /**
+     * Constructor: create an engine for g with no constraints.
+     */
+    public ConstrainedPaths(IndexedGraph g) {
+        graph = g;
+        int n = g.numNodes();
+        fewestHops = new int[n];
+        firstLabel = new int[n];
+        lastLabel = new int[n];
+        frontSize = new int[n];
+    }
+
+    /**
+     * Return the graph this engine searches.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return the largest number of edges a path may have.
+     */
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    /**
+     * Allow later calls to compute to find only paths of at most maxHops edges; Integer.MAX_VALUE (the default)
+     * removes the limit. Throws IllegalArgumentException if maxHops is negative.
+     */
+    public void setMaxHops(int maxHops) {
+        if (maxHops < 0) {
+            throw new IllegalArgumentException("maxHops must not be negative: " + maxHops);
+        }
+        this.maxHops = maxHops;
+    }
+
+    /**
+     * Return the edge filter, or null if paths may use every edge.
+     */
+    public BitSet getEdgeFilter() {
+        return edgeFilter;
+    }
+
+    /**
+     * Allow later calls to compute to use only the edges e with edges.get(e) true, where e numbers the edges of the
+     * graph as edgeBegin and edgeEnd do; null (the default) allows every edge. The set is not copied.
+     */
+    public void setEdgeFilter(BitSet edges) {
+        edgeFilter = edges;
+    }
+
+    /**
+     * Return the largest number of labels a search may create.
+     */
+    public int getMaxLabels() {
+        return maxLabels;
+    }
+
+    /**
+     * Set the largest number of labels a later search may create. Throws IllegalArgumentException unless
+     * maxLabels > 0.
+     */
+    public void setMaxLabels(int maxLabels) {
+        if (maxLabels < 1) {
+            throw new IllegalArgumentException("maxLabels must be positive: " + maxLabels);
+        }
+        this.maxLabels = maxLabels;
+    }
+
+    /**
+     * Return the origin of the most recent call to compute, or -1 if compute has not been called.
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Return the number of labels the most recent search created.
+     */
+    public int numLabels() {
+        return numLabels;
+    }
+
+    /**
+     * Compute the Pareto front of distance against hops, under the current constraints, from origin to every node.
+     * Throws IllegalStateException if the search needs more than getMaxLabels() labels. Precondition:
+     * 0 <= origin < getGraph().numNodes().
+     */
+    public void compute(int origin) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long relaxed = 0;
+        long pops = 0;
+        Arrays.fill(fewestHops, Integer.MAX_VALUE);
+        Arrays.fill(firstLabel, -1);
+        Arrays.fill(lastLabel, -1);
+        Arrays.fill(frontSize, 0);
+        numLabels = 0;
+        heapSize = 0;
+        settled = 0;
+        this.origin = origin;
+
+        push(newLabel(origin, 0, 0, -1));
+        while (heapSize > 0) {
+            int l = pop();
+            pops++;
+            int u = labelNode[l];
+            int hops = labelHops[l];
+            if (hops >= fewestHops[u]) {
+                continue; // dominated by a label settled at u with no larger distance
+            }
+            settle(l, u);
+            if (hops == maxHops) {
+                continue;
+            }
+            double du = labelDist[l];
+            for (int e = graph.edgeBegin(u), end = graph.edgeEnd(u); e < end; e++) {
+                if (edgeFilter != null && !edgeFilter.get(e)) {
+                    continue;
+                }
+                if (Metrics.ENABLED) {
+                    relaxed++;
+                }
+                int v = graph.target(e);
+                if (hops + 1 < fewestHops[v]) {
+                    push(newLabel(v, du + graph.weight(e), hops + 1, l));
+                }
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.recordSearch(System.nanoTime() - start, settled, relaxed, numLabels, pops);
+        }
+    }
+
+    /* Append label l to the front of node u. */
+    private void settle(int l, int u) {
+        fewestHops[u] = labelHops[l];
+        labelNext[l] = -1;
+        if (lastLabel[u] == -1) {
+            firstLabel[u] = l;
+        } else {
+            labelNext[lastLabel[u]] = l;
+        }
+        lastLabel[u] = l;
+        frontSize[u]++;
+        settled++;
+    }
+
+    /* Store a new label and return its number, growing the label arrays up to the label limit. */
+    private int newLabel(int node, double dist, int hops, int prev) {
+        if (numLabels >= maxLabels) {
+            throw new IllegalStateException("search from " + graph.idOf(origin) + " needs more than " + maxLabels
+                    + " labels; lower maxHops or raise the label limit");
+        }
+        if (numLabels == labelDist.length) {
+            int capacity = (int) Math.min(2L * numLabels, maxLabels);
+            labelDist = Arrays.copyOf(labelDist, capacity);
+            labelHops = Arrays.copyOf(labelHops, capacity);
+            labelNode = Arrays.copyOf(labelNode, capacity);
+            labelPrev = Arrays.copyOf(labelPrev, capacity);
+            labelNext = Arrays.copyOf(labelNext, capacity);
+        }
+        int l = numLabels++;
+        labelNode[l] = node;
+        labelDist[l] = dist;
+        labelHops[l] = hops;
+        labelPrev[l] = prev;
+        return l;
+    }
+
+    /* Return true if label a comes before label b in (distance, hops) order. */
+    private boolean before(int a, int b) {
+        return labelDist[a] < labelDist[b] || labelDist[a] == labelDist[b] && labelHops[a] < labelHops[b];
+    }
+
+    private void push(int l) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heapSize);
+        }
+        int i = heapSize++;
+        while (i > 0 && before(l, heap[(i - 1) / 2])) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = l;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int l = heap[--heapSize];
+        int i = 0;
+        for (int c = 1; c < heapSize; c = 2 * i + 1) {
+            if (c + 1 < heapSize && before(heap[c + 1], heap[c])) {
+                c++;
+            }
+            if (!before(heap[c], l)) {
+                break;
+            }
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = l;
+        return top;
+    }
+
+    /**
+     * Returns the length of the shortest path from the origin to destination that meets the constraints, or
+     * Double.POSITIVE_INFINITY if there is none. Precondition: compute(origin) has been called.
+     */
+    public double shortestPathLength(int destination) {
+        int l = firstLabel[destination];
+        return l == -1 ? Double.POSITIVE_INFINITY : labelDist[l];
+    }
+
+    /**
+     * Returns the node ids along the shortest path from the origin to destination that meets the constraints,
+     * including both, or null if there is none. Precondition: compute(origin) has been called.
+     */
+    public int[] shortestPath(int destination) {
+        int l = firstLabel[destination];
+        return l == -1 ? null : pathOf(l);
+    }
+
+    /**
+     * Returns the fewest edges of any path from the origin to destination that meets the constraints, or -1 if
+     * there is none. Precondition: compute(origin) has been called.
+     */
+    public int minHops(int destination) {
+        int l = lastLabel[destination];
+        return l == -1 ? -1 : labelHops[l];
+    }
+
+    /**
+     * Return the number of paths on the Pareto front of destination. Precondition: compute(origin) has been called.
+     */
+    public int frontSize(int destination) {
+        return frontSize[destination];
+    }
+
+    /**
+     * Return the Pareto front of destination: for each number of hops h such that the shortest path with at most h
+     * edges is shorter than any with fewer, that path, in increasing order of length and decreasing order of hops.
+     * The list is empty if destination is unreachable under the constraints. Each result's getSettled() is the
+     * number of labels the search settled. Precondition: compute(origin) has been called.
+     */
+    public List<PathResult> front(int destination) {
+        List<PathResult> results = new ArrayList<PathResult>(frontSize[destination]);
+        for (int l = firstLabel[destination]; l != -1; l = labelNext[l]) {
+            results.add(new PathResult(graph, pathOf(l), labelDist[l], settled));
+        }
+        return results;
+    }
+
+    /* Return the node ids along the path of label l, from the origin to its node. */
+    private int[] pathOf(int l) {
+        int[] path = new int[labelHops[l] + 1];
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = labelNode[l];
+            l = labelPrev[l];
+        }
+        return path;
+    }
+}
@@ -0,0 +1,533 @@
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** A contraction hierarchy over an IndexedGraph: preprocessed data that answers point-to-point queries by searching
+ * only "upward" edges. Nodes are contracted one at a time in order of increasing importance; contracting v removes it
+ * from the remaining graph and, for every pair of neighbors u -> v -> w whose shortest connection runs through v, adds
+ * a shortcut edge u -> w with the combined weight. A node's rank is its position in that order. Every shortest path
+ * then has a version that first climbs to higher ranks and then descends, so a query only needs a forward search over
+ * edges to higher-ranked nodes and a backward search over edges from higher-ranked nodes (see CHQuery).
+ * Nodes are ordered by edge difference (shortcuts added minus edges removed) plus the number of already contracted
+ * neighbors, with lazy updates: a node's priority is recomputed when it reaches the front of the queue. Whether a
+ * shortcut is needed is decided by a local witness search that is capped at WITNESS_SETTLE_LIMIT settled nodes
+ * (ESTIMATE_SETTLE_LIMIT when only estimating a priority); when the cap is hit the shortcut is added anyway, which
+ * is always safe.
+ * The hierarchy only changes when the graph does, so build it once per dataset and save it next to the graph with
+ * write; loadOrBuild does this automatically.
+ * Sample usage:
+ *   ContractionHierarchy ch = ContractionHierarchy.loadOrBuild(g, graphFile);
+ *   PathResult r = new CHQuery(ch).query(g.indexOf("ATL"), g.indexOf("LAX"));
+ *   */
+public class ContractionHierarchy {
+
+    static final int MAGIC = 0x48434747; // written big-endian by DataOutputStream, so the file starts with "HCGG"
+    static final int VERSION = 1;
+
+    // maximum number of nodes a witness search settles before giving up and keeping the shortcut
+    static final int WITNESS_SETTLE_LIMIT = 500;
+    // the same limit for the searches that only estimate how many shortcuts contracting a node would add
+    static final int ESTIMATE_SETTLE_LIMIT = 40;
+
+    private final IndexedGraph graph;
+    private final int[] rank; // rank[v] is the position of v in the contraction order
+
+    // upward edges: for each node u, the edges u -> v with rank[v] > rank[u], in CSR form
+    final int[] upOffsets;
+    final int[] upTargets;
+    final double[] upWeights;
+    final int[] upMiddle; // the node a shortcut bypasses, or -1 for an original edge
+
+    // downward edges: for each node v, the edges u -> v with rank[u] > rank[v], stored at v, in CSR form
+    final int[] downOffsets;
+    final int[] downSources;
+    final double[] downWeights;
+    final int[] downMiddle;
+
+    /* Constructor: wrap the arrays of a built or loaded hierarchy. */
+    private ContractionHierarchy(IndexedGraph graph, int[] rank, int[] upOffsets, int[] upTargets,
+                                 double[] upWeights, int[] upMiddle, int[] downOffsets, int[] downSources,
+                                 double[] downWeights, int[] downMiddle) {
+        this.graph = graph;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddle = upMiddle;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddle = downMiddle;
+    }
+
+    /**
+     * Contract every node of g and return the resulting hierarchy.
+     */
+    public static ContractionHierarchy build(IndexedGraph g) {
+        return new Builder(g).build();
+    }
+
+    /**
+     * Compile g and contract every node of the result. Node ids of the hierarchy are those of g.compile().
+     */
+    public static ContractionHierarchy build(Graph g) {
+        return build(g.compile());
+    }
+
+    /**
+     * Return the graph this hierarchy was built from.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return the rank of node v: its position in the contraction order.
+     */
+    public int rank(int v) {
+        return rank[v];
+    }
+
+    /**
+     * Return the number of shortcut edges the hierarchy added to the graph.
+     */
+    public int numShortcuts() {
+        int shortcuts = 0;
+        for (int mid : upMiddle) {
+            if (mid != -1) {
+                shortcuts++;
+            }
+        }
+        for (int mid : downMiddle) {
+            if (mid != -1) {
+                shortcuts++;
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Return the middle node of the edge from a to b among the hierarchy's edges, or -1 if it is an original edge.
+     * Precondition: the hierarchy has an edge from a to b.
+     */
+    int middle(int a, int b) {
+        if (rank[a] < rank[b]) {
+            for (int e = upOffsets[a]; e < upOffsets[a + 1]; e++) {
+                if (upTargets[e] == b) {
+                    return upMiddle[e];
+                }
+            }
+        } else {
+            for (int e = downOffsets[b]; e < downOffsets[b + 1]; e++) {
+                if (downSources[e] == a) {
+                    return downMiddle[e];
+                }
+            }
+        }
+        throw new IllegalStateException("no hierarchy edge from " + a + " to " + b);
+    }
+
+    /**
+     * Save the hierarchy to f. The file records a fingerprint of the graph so that read can reject a hierarchy
+     * built for a different graph.
+     */
+    public void write(File f) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.numNodes());
+            out.writeLong(CSRGraph.fingerprint(graph));
+            writeInts(out, rank);
+            writeInts(out, upOffsets);
+            writeInts(out, upTargets);
+            writeDoubles(out, upWeights);
+            writeInts(out, upMiddle);
+            writeInts(out, downOffsets);
+            writeInts(out, downSources);
+            writeDoubles(out, downWeights);
+            writeInts(out, downMiddle);
+        }
+    }
+
+    /**
+     * Load a hierarchy for g from f. Throws IOException if f is not a hierarchy file or was built for a different
+     * graph.
+     */
+    public static ContractionHierarchy read(File f, IndexedGraph g) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(f + " is not a contraction hierarchy file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported contraction hierarchy version " + version + " in " + f);
+            }
+            if (in.readInt() != g.numNodes() || in.readLong() != CSRGraph.fingerprint(g)) {
+                throw new IOException("contraction hierarchy in " + f + " was built for a different graph");
+            }
+            int[] rank = readInts(in);
+            int[] upOffsets = readInts(in);
+            int[] upTargets = readInts(in);
+            double[] upWeights = readDoubles(in);
+            int[] upMiddle = readInts(in);
+            int[] downOffsets = readInts(in);
+            int[] downSources = readInts(in);
+            double[] downWeights = readDoubles(in);
+            int[] downMiddle = readInts(in);
+            return new ContractionHierarchy(g, rank, upOffsets, upTargets, upWeights, upMiddle, downOffsets,
+                    downSources, downWeights, downMiddle);
+        }
+    }
+
+    /**
+     * Return the file that the hierarchy for the graph stored in graphFile is kept in: graphFile's name with ".ch"
+     * appended, in the same directory.
+     */
+    public static File fileFor(File graphFile) {
+        return new File(graphFile.getPath() + ".ch");
+    }
+
+    /**
+     * Load the hierarchy saved next to graphFile if it exists and matches g; otherwise build it and save it there for
+     * next time.
+     */
+    public static ContractionHierarchy loadOrBuild(IndexedGraph g, File graphFile) throws IOException {
+        File f = fileFor(graphFile);
+        if (f.exists()) {
+            try {
+                return read(f, g);
+            } catch (IOException e) {
+                // stale or corrupt hierarchy: rebuild it below
+            }
+        }
+        ContractionHierarchy built = build(g);
+        built.write(f);
+        return built;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+        out.writeInt(a.length);
+        for (int x : a) {
+            out.writeInt(x);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] a) throws IOException {
+        out.writeInt(a.length);
+        for (double x : a) {
+            out.writeDouble(x);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] a = new int[in.readInt()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readInt();
+        }
+        return a;
+    }
+
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] a = new double[in.readInt()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readDouble();
+        }
+        return a;
+    }
+
+    /** Contracts the nodes of a graph. The remaining graph is kept as growable per-node edge lists, from which
+     * each node is removed as it is contracted. */
+    private static class Builder {
+        private final IndexedGraph graph;
+        private final int n;
+
+        // out-edges and in-edges of each node in the remaining graph, with the middle node of each shortcut
+        private final int[][] outTo;
+        private final double[][] outWeight;
+        private final int[][] outMid;
+        private final int[] outSize;
+        private final int[][] inFrom;
+        private final double[][] inWeight;
+        private final int[][] inMid;
+        private final int[] inSize;
+
+        private final int[] contractedNeighbors; // number of neighbors contracted so far, for the node priority
+        private final int[] rank;
+
+        // state of the witness searches
+        private final double[] witnessDist;
+        private final int[] touched;
+        private int numTouched;
+        private final IndexedHeap witnessHeap;
+
+        Builder(IndexedGraph g) {
+            graph = g;
+            n = g.numNodes();
+            outTo = new int[n][];
+            outWeight = new double[n][];
+            outMid = new int[n][];
+            outSize = new int[n];
+            inFrom = new int[n][];
+            inWeight = new double[n][];
+            inMid = new int[n][];
+            inSize = new int[n];
+            for (int v = 0; v < n; v++) {
+                int degree = Math.max(2, g.edgeEnd(v) - g.edgeBegin(v));
+                outTo[v] = new int[degree];
+                outWeight[v] = new double[degree];
+                outMid[v] = new int[degree];
+                inFrom[v] = new int[2];
+                inWeight[v] = new double[2];
+                inMid[v] = new int[2];
+            }
+            contractedNeighbors = new int[n];
+            rank = new int[n];
+            witnessDist = new double[n];
+            Arrays.fill(witnessDist, Double.POSITIVE_INFINITY);
+            touched = new int[n];
+            witnessHeap = new IndexedHeap(n);
+
+            for (int u = 0; u < n; u++) {
+                for (int e = g.edgeBegin(u); e < g.edgeEnd(u); e++) {
+                    if (g.target(e) != u) {
+                        addOrImprove(u, g.target(e), g.weight(e), -1);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy build() {
+            IndexedHeap queue = new IndexedHeap(n);
+            for (int v = 0; v < n; v++) {
+                queue.add(v, priority(v));
+            }
+            int[][] upTo = new int[n][];
+            double[][] upW = new double[n][];
+            int[][] upM = new int[n][];
+            int[][] downFrom = new int[n][];
+            double[][] downW = new double[n][];
+            int[][] downM = new int[n][];
+
+            int order = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                // lazy update: if v's priority has grown past the next candidate, put it back
+                double p = priority(v);
+                if (!queue.isEmpty() && p > queue.peekKey()) {
+                    queue.add(v, p);
+                    continue;
+                }
+                contract(v, true);
+
+                // v's remaining edges all lead to nodes that will be ranked higher
+                upTo[v] = Arrays.copyOf(outTo[v], outSize[v]);
+                upW[v] = Arrays.copyOf(outWeight[v], outSize[v]);
+                upM[v] = Arrays.copyOf(outMid[v], outSize[v]);
+                downFrom[v] = Arrays.copyOf(inFrom[v], inSize[v]);
+                downW[v] = Arrays.copyOf(inWeight[v], inSize[v]);
+                downM[v] = Arrays.copyOf(inMid[v], inSize[v]);
+
+                rank[v] = order++;
+                // the neighbors' priorities change now that v is gone; they are re-evaluated when they reach the
+                // front of the queue rather than here, which keeps hub-heavy graphs from recomputing them thousands
+                // of times
+                for (int x : upTo[v]) {
+                    contractedNeighbors[x]++;
+                }
+                for (int x : downFrom[v]) {
+                    contractedNeighbors[x]++;
+                }
+                // drop v from its neighbors' lists so later searches do not scan it, and free v's own lists; the
+                // frozen copies above are all that is needed
+                for (int x : upTo[v]) {
+                    removeIn(x, v);
+                }
+                for (int x : downFrom[v]) {
+                    removeOut(x, v);
+                }
+                outTo[v] = inFrom[v] = null;
+                outWeight[v] = inWeight[v] = null;
+                outMid[v] = inMid[v] = null;
+            }
+
+            int[] upOffsets = new int[n + 1];
+            int[] downOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] = upOffsets[v] + upTo[v].length;
+                downOffsets[v + 1] = downOffsets[v] + downFrom[v].length;
+            }
+            int[] upTargets = new int[upOffsets[n]];
+            double[] upWeights = new double[upOffsets[n]];
+            int[] upMiddle = new int[upOffsets[n]];
+            int[] downSources = new int[downOffsets[n]];
+            double[] downWeights = new double[downOffsets[n]];
+            int[] downMiddle = new int[downOffsets[n]];
+            for (int v = 0; v < n; v++) {
+                System.arraycopy(upTo[v], 0, upTargets, upOffsets[v], upTo[v].length);
+                System.arraycopy(upW[v], 0, upWeights, upOffsets[v], upW[v].length);
+                System.arraycopy(upM[v], 0, upMiddle, upOffsets[v], upM[v].length);
+                System.arraycopy(downFrom[v], 0, downSources, downOffsets[v], downFrom[v].length);
+                System.arraycopy(downW[v], 0, downWeights, downOffsets[v], downW[v].length);
+                System.arraycopy(downM[v], 0, downMiddle, downOffsets[v], downM[v].length);
+            }
+            return new ContractionHierarchy(graph, rank, upOffsets, upTargets, upWeights, upMiddle, downOffsets,
+                    downSources, downWeights, downMiddle);
+        }
+
+        /* The contraction priority of v: lower is contracted earlier. */
+        private double priority(int v) {
+            return contract(v, false) - outSize[v] - inSize[v] + contractedNeighbors[v];
+        }
+
+        /* Find the shortcuts needed to contract v and return how many there are. If apply is true, add them to the
+         * remaining graph. */
+        private int contract(int v, boolean apply) {
+            int shortcuts = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                int u = inFrom[v][i];
+                double toV = inWeight[v][i];
+                double maxDist = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < outSize[v]; j++) {
+                    int w = outTo[v][j];
+                    if (w != u) {
+                        maxDist = Math.max(maxDist, toV + outWeight[v][j]);
+                    }
+                }
+                if (maxDist == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+                witnessSearch(u, v, maxDist, apply ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+                for (int j = 0; j < outSize[v]; j++) {
+                    int w = outTo[v][j];
+                    if (w == u) {
+                        continue;
+                    }
+                    double via = toV + outWeight[v][j];
+                    if (witnessDist[w] > via) {
+                        shortcuts++;
+                        if (apply) {
+                            addOrImprove(u, w, via, v);
+                        }
+                    }
+                }
+                resetWitness();
+            }
+            return shortcuts;
+        }
+
+        /* Dijkstra from source in the remaining graph without avoid, stopping beyond maxDist or after
+         * settleLimit nodes. Leaves the distances found in witnessDist. */
+        private void witnessSearch(int source, int avoid, double maxDist, int settleLimit) {
+            witnessHeap.clear();
+            touch(source, 0);
+            witnessHeap.add(source, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty()) {
+                int u = witnessHeap.poll();
+                double du = witnessDist[u];
+                if (du > maxDist || ++settled > settleLimit) {
+                    break;
+                }
+                for (int i = 0; i < outSize[u]; i++) {
+                    int x = outTo[u][i];
+                    if (x == avoid) {
+                        continue;
+                    }
+                    double dx = du + outWeight[u][i];
+                    if (dx < witnessDist[x]) {
+                        touch(x, dx);
+                        witnessHeap.addOrDecrease(x, dx);
+                    }
+                }
+            }
+        }
+
+        private void touch(int v, double dist) {
+            if (witnessDist[v] == Double.POSITIVE_INFINITY) {
+                touched[numTouched++] = v;
+            }
+            witnessDist[v] = dist;
+        }
+
+        private void resetWitness() {
+            for (int i = 0; i < numTouched; i++) {
+                witnessDist[touched[i]] = Double.POSITIVE_INFINITY;
+            }
+            numTouched = 0;
+        }
+
+        /* Remove the in-edge from u of w, if any, by moving the last in-edge of w into its place. */
+        private void removeIn(int w, int u) {
+            for (int i = 0; i < inSize[w]; i++) {
+                if (inFrom[w][i] == u) {
+                    int last = --inSize[w];
+                    inFrom[w][i] = inFrom[w][last];
+                    inWeight[w][i] = inWeight[w][last];
+                    inMid[w][i] = inMid[w][last];
+                    return;
+                }
+            }
+        }
+
+        /* Remove the out-edge to w of u, if any, by moving the last out-edge of u into its place. */
+        private void removeOut(int u, int w) {
+            for (int i = 0; i < outSize[u]; i++) {
+                if (outTo[u][i] == w) {
+                    int last = --outSize[u];
+                    outTo[u][i] = outTo[u][last];
+                    outWeight[u][i] = outWeight[u][last];
+                    outMid[u][i] = outMid[u][last];
+                    return;
+                }
+            }
+        }
+
+        /* Add the edge u -> w with the given weight and middle node to the remaining graph, or lower the weight of
+         * the existing u -> w edge if this one is shorter. */
+        private void addOrImprove(int u, int w, double weight, int mid) {
+            for (int i = 0; i < outSize[u]; i++) {
+                if (outTo[u][i] == w) {
+                    if (weight < outWeight[u][i]) {
+                        outWeight[u][i] = weight;
+                        outMid[u][i] = mid;
+                        for (int j = 0; j < inSize[w]; j++) {
+                            if (inFrom[w][j] == u) {
+                                inWeight[w][j] = weight;
+                                inMid[w][j] = mid;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            if (outSize[u] == outTo[u].length) {
+                int capacity = 2 * outSize[u];
+                outTo[u] = Arrays.copyOf(outTo[u], capacity);
+                outWeight[u] = Arrays.copyOf(outWeight[u], capacity);
+                outMid[u] = Arrays.copyOf(outMid[u], capacity);
+            }
+            outTo[u][outSize[u]] = w;
+            outWeight[u][outSize[u]] = weight;
+            outMid[u][outSize[u]] = mid;
+            outSize[u]++;
+            if (inSize[w] == inFrom[w].length) {
+                int capacity = 2 * inSize[w];
+                inFrom[w] = Arrays.copyOf(inFrom[w], capacity);
+                inWeight[w] = Arrays.copyOf(inWeight[w], capacity);
+                inMid[w] = Arrays.copyOf(inMid[w], capacity);
+            }
+            inFrom[w][inSize[w]] = u;
+            inWeight[w][inSize[w]] = weight;
+            inMid[w][inSize[w]] = mid;
+            inSize[w]++;
+        }
+    }
+}
@@ -6,6 +6,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ListIterator;
 
+/** Parser for DB1B coupon CSV files: the header line names the columns, and each following row adds an edge from
+ * its Origin to its Dest airport weighted by its Distance. Blank lines are skipped. A row that is too short to have
+ * those columns or whose Distance is not a number is counted as rejected in Metrics and stops the parse with an
+ * IllegalArgumentException, as in MappedDB1BParser.
+ * Created with aggregation on, the parser also totals the Passengers, Coupons, TkCarrier and OpCarrier columns of
+ * every coupon into an EdgeAggregates, like MappedDB1BParser; columns the file lacks are left out of the totals. */
 public class DB1BParser extends GraphParser {
 
     private Scanner sc; // a scanner reading the CSV file
@@ -15,11 +21,25 @@ public class DB1BParser extends GraphParser {
 
     private Graph graph;
 
+    private final boolean aggregate;
+    private EdgeAggregates aggregates;
+
+    private int lastColumn; // the largest of the origin, dest and distance column indices
+
     /**
      * Constructor: create parser.
      */
     public DB1BParser() {
+        this(false);
+    }
+
+    /**
+     * Constructor: create a parser that, if aggregate is true, also totals the coupons of each edge (see
+     * getAggregates).
+     */
+    public DB1BParser(boolean aggregate) {
         graph = new Graph();
+        this.aggregate = aggregate;
     }
 
     /**
@@ -38,8 +58,30 @@ public class DB1BParser extends GraphParser {
     @Override
     public Graph parse() {
         graph = new Graph();
-        while (sc.hasNextLine()) {
-            parseFlight(sc.nextLine().split(","));
+        aggregates = aggregate ? new EdgeAggregates() : null;
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long lines = 0;
+        long rejected = 0;
+        long bytes = 0;
+        try {
+            while (sc.hasNextLine()) {
+                String line = sc.nextLine();
+                lines++;
+                bytes += line.length() + 1;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    parseFlight(line.split(","));
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    throw e;
+                }
+            }
+        } finally {
+            if (Metrics.ENABLED) {
+                Metrics.recordParse(lines, rejected, bytes, System.nanoTime() - start);
+            }
         }
         return graph;
     }
@@ -47,8 +89,13 @@ public class DB1BParser extends GraphParser {
     /* Parse a line of the DB1B CSV file and construct a Flight object (edge)
      * representing the data given in that line.  If the origin or destination
      * airport is not a node in the graph, add it to the graph. Add this Flight
-     * to the list of departures from the origin. */
+     * to the list of departures from the origin. Throws IllegalArgumentException,
+     * adding nothing, if the line is malformed. */
     private void parseFlight(String[] fields) {
+        if (fields.length <= lastColumn) {
+            throw new IllegalArgumentException("Row has too few fields: " + String.join(",", fields));
+        }
+        double miles = Double.parseDouble(fields[fieldKey.get("distance")]);
         String origCode = fields[fieldKey.get("origin")].replace("\"", "");
         ;
         String destCode = fields[fieldKey.get("dest")].replace("\"", "");
@@ -59,8 +106,41 @@ public class DB1BParser extends GraphParser {
         Node orig = graph.getNode(origCode);
         Node dest = graph.getNode(destCode);
 
-        double miles = Double.parseDouble(fields[fieldKey.get("distance")]);
         graph.addEdge(orig, dest, miles);
+        if (aggregate) {
+            int e = aggregates.add(orig.getIndex(), dest.getIndex(), miles, number(fields, "passengers"),
+                    (int) number(fields, "coupons"));
+            String carrier = field(fields, "tkcarrier");
+            if (!carrier.isEmpty()) {
+                aggregates.addCarrier(e, carrier, false);
+            }
+            carrier = field(fields, "opcarrier");
+            if (!carrier.isEmpty()) {
+                aggregates.addCarrier(e, carrier, true);
+            }
+        }
+    }
+
+    /* Return the named field of a row without quotes, or "" if the file or the row lacks it. */
+    private String field(String[] fields, String name) {
+        Integer col = fieldKey.get(name);
+        return col == null || col >= fields.length ? "" : fields[col].replace("\"", "");
+    }
+
+    /* Return the named numeric field of a row, or 0 if it is absent or not a number. */
+    private double number(String[] fields, String name) {
+        try {
+            return Double.parseDouble(field(fields, name));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Return the per-edge coupon totals of the last parse, or null if this parser was created without aggregation.
+     */
+    public EdgeAggregates getAggregates() {
+        return aggregates;
     }
 
     /* create fieldKey from the header line of the csv file.
@@ -72,6 +152,7 @@ public class DB1BParser extends GraphParser {
             fieldKey.put(headers[i].replace("\"", "").toLowerCase(), i);
             //System.out.println(headers[i] + ": " + i);
         }
+        lastColumn = Math.max(fieldKey.get("origin"), Math.max(fieldKey.get("dest"), fieldKey.get("distance")));
     }
 
     /** Main method: open a csv file and parse a graph.
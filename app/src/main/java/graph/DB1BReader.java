@@ -0,0 +1,409 @@
+package graph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/** Reads the rows of a DB1B CSV file that match a set of simple predicates, and only the columns asked for. The file
+ * is scanned through memory-mapped windows like MappedDB1BParser; each row's fields are located byte by byte, and
+ * every predicate is tested on the raw bytes of its field as soon as the field is found, so a row that fails is
+ * abandoned at its first failing field without decoding anything. Matching rows are handed to a RowHandler as a Row
+ * that holds only the byte ranges of the projected columns; a value becomes a String or double only when the handler
+ * asks for it. Column names are matched like DB1BParser's headers: quotes removed and case ignored. Predicates on
+ * the same column must all hold. Values are compared without their surrounding double quotes.
+ * Example usage:
+ *     DB1BReader r = new DB1BReader(file);
+ *     r.select("Origin", "Dest", "Passengers");
+ *     r.whereEquals("TkCarrier", "AA");
+ *     r.whereIn("Quarter", "1", "2");
+ *     r.whereBetween("Distance", 500, 1500);
+ *     r.read(row -> total += row.getDouble(2)); */
+public class DB1BReader {
+
+    // largest window mapped at once; windows always end on a line boundary
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    /** Receives the rows that match. */
+    public interface RowHandler {
+        /**
+         * Called once per matching row, in file order. The row object is reused, so it is only valid during the
+         * call.
+         */
+        void row(Row row);
+    }
+
+    private final FileChannel channel;
+    private final long dataStart; // file position of the first line after the header
+    private final HashMap<String, Integer> fieldKey = new HashMap<String, Integer>(); // normalized name -> column
+    private final List<String> headers = new ArrayList<String>();
+
+    private int[] projection = new int[0]; // projection[k] is the column of the k-th selected column
+    private final List<Predicate> predicates = new ArrayList<Predicate>();
+
+    /**
+     * Constructor: open the given file and read its header line.
+     */
+    public DB1BReader(File f) throws FileNotFoundException {
+        channel = new RandomAccessFile(f, "r").getChannel();
+        try {
+            String[] names = FileChunks.firstLine(channel).split(",");
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].replace("\"", "");
+                headers.add(name);
+                fieldKey.put(name.toLowerCase(), i);
+            }
+            dataStart = FileChunks.nextLineStart(channel, 0);
+        } catch (IOException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Return the names of the file's columns, in order, without quotes.
+     */
+    public List<String> getHeaders() {
+        return Collections.unmodifiableList(headers);
+    }
+
+    /**
+     * Project rows onto the given columns: Row index k refers to columns[k]. Replaces any earlier selection. Throws
+     * IllegalArgumentException if the file has no such column or a column is selected twice.
+     */
+    public void select(String... columns) {
+        int[] cols = new int[columns.length];
+        for (int k = 0; k < columns.length; k++) {
+            cols[k] = column(columns[k]);
+            for (int j = 0; j < k; j++) {
+                if (cols[j] == cols[k]) {
+                    throw new IllegalArgumentException("column selected twice: " + columns[k]);
+                }
+            }
+        }
+        projection = cols;
+    }
+
+    /**
+     * Keep only rows whose value in column is exactly value.
+     */
+    public void whereEquals(String column, String value) {
+        whereIn(column, value);
+    }
+
+    /**
+     * Keep only rows whose value in column is one of values.
+     */
+    public void whereIn(String column, String... values) {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        predicates.add(new ValueSet(column(column), bytes));
+    }
+
+    /**
+     * Keep only rows whose value in column is a number between min and max, inclusive.
+     */
+    public void whereBetween(String column, double min, double max) {
+        predicates.add(new Range(column(column), min, max));
+    }
+
+    /**
+     * Remove every predicate, so that all rows match again.
+     */
+    public void clearPredicates() {
+        predicates.clear();
+    }
+
+    /**
+     * Scan the file and pass every matching row to handler. Returns the number of matching rows. Throws
+     * NumberFormatException if a handler reads a non-numeric value with getDouble.
+     */
+    public long read(RowHandler handler) {
+        Scan scan = new Scan(projection, predicates, handler);
+        try {
+            long[] windows = FileChunks.split(channel, dataStart, WINDOW_SIZE);
+            for (int w = 0; w + 1 < windows.length; w++) {
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, windows[w], windows[w + 1] - windows[w]);
+                scan.scan(buf);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return scan.matched;
+    }
+
+    /**
+     * Build a graph from the Origin, Dest and Distance columns of the matching rows, like DB1BParser does from all
+     * rows. The selection is left as it was.
+     */
+    public Graph readGraph() {
+        int[] selected = projection;
+        select("Origin", "Dest", "Distance");
+        GraphBuilder builder = new GraphBuilder();
+        try {
+            read(builder);
+        } finally {
+            projection = selected;
+        }
+        return builder.graph;
+    }
+
+    /**
+     * Close the file.
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* Return the index of the named column, or throw IllegalArgumentException. */
+    private int column(String name) {
+        Integer col = fieldKey.get(name.replace("\"", "").toLowerCase());
+        if (col == null) {
+            throw new IllegalArgumentException("no column " + name + " in " + headers);
+        }
+        return col;
+    }
+
+    /** A matching row, seen through the byte ranges of its projected columns. */
+    public static final class Row {
+        private final int[] from; // from[k] is where projected column k starts in buf, without quotes, or -1
+        private final int[] to;
+        private ByteBuffer buf;
+
+        Row(int columns) {
+            from = new int[columns];
+            to = new int[columns];
+        }
+
+        /**
+         * Return the number of projected columns.
+         */
+        public int size() {
+            return from.length;
+        }
+
+        /**
+         * Return true if the row has no value for projected column k: the row is too short or the field is empty.
+         */
+        public boolean isEmpty(int k) {
+            return from[k] < 0 || from[k] == to[k];
+        }
+
+        /**
+         * Return the value of projected column k without quotes, or null if the row is too short to have it.
+         */
+        public String getString(int k) {
+            return from[k] < 0 ? null : AsciiNumbers.decode(buf, from[k], to[k]);
+        }
+
+        /**
+         * Return the value of projected column k parsed as a number. Throws NumberFormatException if it is not one.
+         */
+        public double getDouble(int k) {
+            if (from[k] < 0) {
+                throw new NumberFormatException("row has no column " + k);
+            }
+            return AsciiNumbers.parseDouble(buf, from[k], to[k]);
+        }
+    }
+
+    /** Adds the edge of each row projected onto Origin, Dest and Distance to a graph, looking airport codes up
+     * straight from the row's bytes. */
+    private static final class GraphBuilder implements RowHandler {
+        private final Graph graph = new Graph();
+
+        @Override
+        public void row(Row row) {
+            int orig = graph.indexOf(row.buf, row.from[0], row.to[0]);
+            int dest = graph.indexOf(row.buf, row.from[1], row.to[1]);
+            graph.addEdge(orig, dest, row.getDouble(2));
+        }
+    }
+
+    /** A test on the raw, unquoted bytes of one column. */
+    private abstract static class Predicate {
+        final int column;
+
+        Predicate(int column) {
+            this.column = column;
+        }
+
+        abstract boolean test(ByteBuffer buf, int from, int to);
+    }
+
+    /** Matches fields whose bytes equal one of a few values. */
+    private static final class ValueSet extends Predicate {
+        private final byte[][] values;
+
+        ValueSet(int column, byte[][] values) {
+            super(column);
+            this.values = values;
+        }
+
+        @Override
+        boolean test(ByteBuffer buf, int from, int to) {
+            for (byte[] value : values) {
+                if (value.length == to - from && sameBytes(value, buf, from)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean sameBytes(byte[] value, ByteBuffer buf, int from) {
+            for (int i = 0; i < value.length; i++) {
+                if (value[i] != buf.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Matches fields holding a number in [min, max]. */
+    private static final class Range extends Predicate {
+        private final double min;
+        private final double max;
+
+        Range(int column, double min, double max) {
+            super(column);
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        boolean test(ByteBuffer buf, int from, int to) {
+            if (from == to) {
+                return false;
+            }
+            double x;
+            try {
+                x = AsciiNumbers.parseDouble(buf, from, to);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            return x >= min && x <= max;
+        }
+    }
+
+    /** The state of one read: what to look at in each column, and the reused Row. */
+    private static final class Scan {
+        private final Predicate[][] tests; // tests[col] are the predicates on column col, or null
+        private final int[] slot; // slot[col] is the projected index of column col, or -1
+        private final int lastCol; // the last column anything needs
+        private final int lastTestCol; // the last column with a predicate, or -1
+        private final Row row;
+        private final RowHandler handler;
+        long matched;
+
+        Scan(int[] projection, List<Predicate> predicates, RowHandler handler) {
+            int last = -1;
+            int lastTest = -1;
+            for (int col : projection) {
+                last = Math.max(last, col);
+            }
+            for (Predicate p : predicates) {
+                lastTest = Math.max(lastTest, p.column);
+            }
+            last = Math.max(last, lastTest);
+            tests = new Predicate[last + 1][];
+            slot = new int[last + 1];
+            Arrays.fill(slot, -1);
+            for (int k = 0; k < projection.length; k++) {
+                slot[projection[k]] = k;
+            }
+            for (Predicate p : predicates) {
+                Predicate[] old = tests[p.column];
+                Predicate[] grown = old == null ? new Predicate[1] : Arrays.copyOf(old, old.length + 1);
+                grown[grown.length - 1] = p;
+                tests[p.column] = grown;
+            }
+            lastCol = last;
+            lastTestCol = lastTest;
+            row = new Row(projection.length);
+            this.handler = handler;
+        }
+
+        /* Scan every row of buf. */
+        void scan(ByteBuffer buf) {
+            row.buf = buf;
+            int limit = buf.limit();
+            int pos = 0;
+            while (pos < limit) {
+                Arrays.fill(row.from, -1);
+                Arrays.fill(row.to, -1);
+                boolean ok = true;
+                int field = 0;
+                int start = pos;
+                int i = pos;
+                while (true) {
+                    byte b = i < limit ? buf.get(i) : (byte) '\n';
+                    if (b == ',' || b == '\n') {
+                        if (field <= lastCol) {
+                            int from = start;
+                            int end = i;
+                            if (b == '\n' && end > from && buf.get(end - 1) == '\r') {
+                                end--;
+                            }
+                            while (from < end && buf.get(from) == '"') {
+                                from++;
+                            }
+                            while (end > from && buf.get(end - 1) == '"') {
+                                end--;
+                            }
+                            Predicate[] ps = tests[field];
+                            if (ps != null) {
+                                for (int t = 0; ok && t < ps.length; t++) {
+                                    ok = ps[t].test(buf, from, end);
+                                }
+                            }
+                            if (slot[field] >= 0) {
+                                row.from[slot[field]] = from;
+                                row.to[slot[field]] = end;
+                            }
+                        }
+                        field++;
+                        start = i + 1;
+                        if (b == '\n') {
+                            break;
+                        }
+                        if (!ok || field > lastCol) {
+                            // the row has failed, or nothing further on this line is needed
+                            while (i < limit && buf.get(i) != '\n') {
+                                i++;
+                            }
+                            break;
+                        }
+                    }
+                    i++;
+                }
+                boolean blank = i == pos || (i == pos + 1 && buf.get(pos) == '\r');
+                // a row too short to have every tested column fails
+                if (ok && !blank && field > lastTestCol) {
+                    matched++;
+                    handler.row(row);
+                }
+                pos = i + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Parallel single-source shortest paths over an IndexedGraph with Meyer and Sanders' delta-stepping algorithm.
+ * Tentative distances are kept in buckets of width delta: bucket i holds the nodes whose distance lies in
+ * [i * delta, (i+1) * delta). Buckets are emptied in increasing order. The nodes of the current bucket relax their
+ * light edges (weight <= delta) in parallel, which may put nodes back into the same bucket, until it stays empty; then
+ * every node that passed through the bucket relaxes its heavy edges once, in parallel. Threads lower distances with a
+ * lock-free compare-and-set on the raw bits of the doubles (which, for non-negative doubles, order like the doubles
+ * themselves), and collect the nodes they improved in per-thread lists that are filed into buckets between phases.
+ * delta is the tuning knob: a small delta approaches Dijkstra (little wasted work, little parallelism), a large one
+ * approaches Bellman-Ford (much parallelism, many re-relaxations). Phases with few nodes run on the calling thread.
+ * Predecessors are not tracked during the parallel search; the first call that needs them rebuilds the tree from the
+ * final distances with ShortestPathTree.fromDistances.
+ * Edge weights must be non-negative. An engine is not thread-safe itself; close() shuts down its threads.
+ * Sample usage:
+ *   DeltaStepping ds = new DeltaStepping(graph.compile());
+ *   ds.compute(origin);
+ *   double d = ds.shortestPathLength(v);
+ *   ds.close();
+ *   */
+public class DeltaStepping implements AutoCloseable {
+
+    // frontiers with fewer nodes than this are relaxed on the calling thread
+    private static final int PARALLEL_THRESHOLD = 256;
+    // number of frontier nodes a worker claims at a time
+    private static final int GRAIN = 64;
+
+    private static final long INF_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+
+    private final IndexedGraph graph;
+    private final int threads;
+    private final ForkJoinPool pool; // null if threads == 1
+    private double delta;
+
+    private final AtomicLongArray dist; // raw bits of the tentative distance of each node
+    private final long[] queuedIn; // queuedIn[v] is the bucket v is waiting in, or -1
+    private final int[] phaseMark; // phaseMark[v] == phase if v passed through the current bucket
+    private int phase;
+    private final int[] frontier; // the nodes being relaxed
+    private final int[] passed; // every node that passed through the current bucket
+    private final IntList[] improved; // improved[t] are the nodes worker t lowered in the current step
+    private final TreeMap<Long, IntList> buckets = new TreeMap<Long, IntList>();
+
+    private ShortestPathTree tree; // the results of the last compute, null until first needed
+    private int origin = -1;
+
+    /**
+     * Constructor: create an engine for g that uses one thread per available processor and a delta of the mean edge
+     * weight.
+     */
+    public DeltaStepping(IndexedGraph g) {
+        this(g, meanWeight(g), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor: create an engine for g with the given bucket width and number of threads.
+     * Precondition: g is not modified while the engine is in use.
+     */
+    public DeltaStepping(IndexedGraph g, double delta, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        setDelta(delta);
+        graph = g;
+        this.threads = threads;
+        pool = threads == 1 ? null : new ForkJoinPool(threads);
+        int n = g.numNodes();
+        dist = new AtomicLongArray(n);
+        queuedIn = new long[n];
+        phaseMark = new int[n];
+        frontier = new int[n];
+        passed = new int[n];
+        improved = new IntList[threads];
+        for (int t = 0; t < threads; t++) {
+            improved[t] = new IntList();
+        }
+    }
+
+    /* Return the mean weight of g's edges, or 1 if it has none or they are all 0. */
+    private static double meanWeight(IndexedGraph g) {
+        double sum = 0;
+        for (int e = 0; e < g.numEdges(); e++) {
+            sum += g.weight(e);
+        }
+        return sum > 0 ? sum / g.numEdges() : 1;
+    }
+
+    /**
+     * Return the graph this engine searches.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return the bucket width.
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * Set the bucket width used by later calls to compute. Throws IllegalArgumentException unless delta > 0.
+     */
+    public void setDelta(double delta) {
+        if (!(delta > 0)) {
+            throw new IllegalArgumentException("delta must be positive: " + delta);
+        }
+        this.delta = delta;
+    }
+
+    /**
+     * Return the origin of the most recent call to compute, or -1 if compute has not been called.
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Compute the shortest path to all nodes from origin. Precondition: 0 <= origin < getGraph().numNodes().
+     */
+    public void compute(int origin) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long settled = 0;
+        long pushes = 0;
+        long pops = 0;
+        int n = graph.numNodes();
+        for (int v = 0; v < n; v++) {
+            dist.set(v, INF_BITS);
+        }
+        Arrays.fill(queuedIn, -1);
+        buckets.clear();
+        tree = null;
+        this.origin = origin;
+
+        dist.set(origin, Double.doubleToRawLongBits(0));
+        file(origin);
+        pushes++;
+        while (!buckets.isEmpty()) {
+            long i = buckets.firstKey();
+            nextPhase();
+            int numPassed = 0;
+            IntList waiting;
+            while ((waiting = buckets.remove(i)) != null) {
+                // nodes that have since moved to a lower bucket are skipped; each remaining node is taken once
+                int size = 0;
+                for (int k = 0; k < waiting.size; k++) {
+                    int v = waiting.items[k];
+                    if (queuedIn[v] == i) {
+                        queuedIn[v] = -1;
+                        frontier[size++] = v;
+                        if (phaseMark[v] != phase) {
+                            phaseMark[v] = phase;
+                            passed[numPassed++] = v;
+                        }
+                    }
+                }
+                pops += size;
+                relax(frontier, size, true);
+                pushes += fileImproved();
+            }
+            settled += numPassed;
+            relax(passed, numPassed, false);
+            pushes += fileImproved();
+        }
+        if (Metrics.ENABLED) {
+            long relaxed = 0;
+            for (IntList out : improved) {
+                relaxed += out.relaxed;
+                out.relaxed = 0;
+            }
+            Metrics.recordSearch(System.nanoTime() - start, settled, relaxed, pushes, pops);
+        }
+    }
+
+    /* Relax the light edges (if light is true) or heavy edges of nodes[0 .. size), in parallel if there are enough
+     * of them, recording the improved nodes in the improved lists. */
+    private void relax(int[] nodes, int size, boolean light) {
+        if (size < PARALLEL_THRESHOLD || pool == null) {
+            relaxRange(nodes, 0, size, light, improved[0]);
+            return;
+        }
+        AtomicInteger next = new AtomicInteger(); // the first node no worker has claimed
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < threads; t++) {
+            IntList out = improved[t];
+            workers.add(() -> {
+                for (int k = next.getAndAdd(GRAIN); k < size; k = next.getAndAdd(GRAIN)) {
+                    relaxRange(nodes, k, Math.min(size, k + GRAIN), light, out);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> worker : pool.invokeAll(workers)) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while computing shortest paths", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /* Relax the light or heavy edges of nodes[from .. to), adding each node whose distance drops to out. */
+    private void relaxRange(int[] nodes, int from, int to, boolean light, IntList out) {
+        long relaxed = 0;
+        for (int k = from; k < to; k++) {
+            int u = nodes[k];
+            double du = Double.longBitsToDouble(dist.get(u));
+            for (int e = graph.edgeBegin(u), end = graph.edgeEnd(u); e < end; e++) {
+                double w = graph.weight(e);
+                if ((w <= delta) == light) {
+                    if (Metrics.ENABLED) {
+                        relaxed++;
+                    }
+                    int v = graph.target(e);
+                    if (lower(v, du + w)) {
+                        out.add(v);
+                    }
+                }
+            }
+        }
+        out.relaxed += relaxed;
+    }
+
+    /* Lower the distance of v to d if d is smaller, atomically. Returns true if it was lowered. */
+    private boolean lower(int v, double d) {
+        long bits = Double.doubleToRawLongBits(d);
+        for (long cur = dist.get(v); bits < cur; cur = dist.get(v)) {
+            if (dist.compareAndSet(v, cur, bits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* File every improved node into the bucket of its distance and empty the improved lists. Returns the number of
+     * nodes filed. */
+    private long fileImproved() {
+        long filed = 0;
+        for (IntList out : improved) {
+            for (int k = 0; k < out.size; k++) {
+                if (file(out.items[k])) {
+                    filed++;
+                }
+            }
+            out.size = 0;
+        }
+        return filed;
+    }
+
+    /* Put v into the bucket of its current distance, unless it is already waiting there. */
+    private boolean file(int v) {
+        long b = (long) (Double.longBitsToDouble(dist.get(v)) / delta);
+        if (queuedIn[v] == b) {
+            return false;
+        }
+        queuedIn[v] = b;
+        IntList bucket = buckets.get(b);
+        if (bucket == null) {
+            bucket = new IntList();
+            buckets.put(b, bucket);
+        }
+        bucket.add(v);
+        return true;
+    }
+
+    private void nextPhase() {
+        if (phase == Integer.MAX_VALUE) {
+            Arrays.fill(phaseMark, 0);
+            phase = 0;
+        }
+        phase++;
+    }
+
+    /**
+     * Returns the length of the shortest path from the origin to destination. If no path exists, return
+     * Double.POSITIVE_INFINITY. Precondition: compute(origin) has been called.
+     */
+    public double shortestPathLength(int destination) {
+        return Double.longBitsToDouble(dist.get(destination));
+    }
+
+    /**
+     * Return the node before destination on a shortest path from the origin, or -1 if destination is the origin or
+     * is unreachable. Precondition: compute(origin) has been called.
+     */
+    public int previous(int destination) {
+        return tree().previous(destination);
+    }
+
+    /**
+     * Returns the node ids along a shortest path from the origin to destination, including both. If no path to it
+     * exists, return null. Precondition: compute(origin) has been called.
+     */
+    public int[] shortestPath(int destination) {
+        return tree().shortestPath(destination);
+    }
+
+    /**
+     * Return the results of the most recent call to compute, which stay valid after this engine runs other searches.
+     * Precondition: compute(origin) has been called.
+     */
+    public ShortestPathTree tree() {
+        if (tree == null) {
+            int n = graph.numNodes();
+            double[] d = new double[n];
+            for (int v = 0; v < n; v++) {
+                d[v] = shortestPathLength(v);
+            }
+            tree = ShortestPathTree.fromDistances(graph, origin, d);
+        }
+        return tree;
+    }
+
+    /**
+     * Shut down this engine's threads. It must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /** A growable list of node ids, reused from one step to the next. */
+    private static final class IntList {
+        int[] items = new int[16];
+        int size;
+        long relaxed; // edges relaxed by the worker that owns this list, for Metrics
+
+        void add(int v) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2 * size);
+            }
+            items[size++] = v;
+        }
+    }
+}
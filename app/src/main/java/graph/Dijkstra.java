@@ -0,0 +1,167 @@
+package graph;
+
+/** Dijkstra's single-source shortest paths over an IndexedGraph. Unlike ShortestPaths, all search state lives in a
+ * SearchWorkspace: primitive arrays indexed by node id (dist, prev) and an IndexedHeap with decreaseKey, all
+ * allocated once and reused by every call to compute, so relaxing an edge never allocates and starting a search
+ * does not clear the arrays.
+ * Sample usage:
+ *   IndexedGraph g = graph.compile();
+ *   Dijkstra d = new Dijkstra(g);
+ *   d.compute(g.indexOf("A"));
+ *   int b = g.indexOf("B");
+ *   int[] abPath = d.shortestPath(b);
+ *   double abPathLength = d.shortestPathLength(b);
+ * For a single origin-destination pair, query(a, b) stops as soon as b is settled instead of computing the whole
+ * shortest path tree.
+ *   */
+public class Dijkstra {
+
+    private final IndexedGraph graph;
+
+    // ws.dist(v) is the length of the shortest known path from the origin to v, and ws.prev(v) the node before v
+    // on that path
+    private final SearchWorkspace ws;
+
+    private int origin = -1;
+
+    /**
+     * Constructor: create an engine for shortest path queries on g.
+     */
+    public Dijkstra(IndexedGraph g) {
+        this(g, new SearchWorkspace(g.numNodes()));
+    }
+
+    /**
+     * Constructor: create an engine for shortest path queries on g that keeps its search state in ws.
+     * Precondition: ws.capacity() >= g.numNodes(), and ws is not used by any other engine at the same time.
+     */
+    public Dijkstra(IndexedGraph g, SearchWorkspace ws) {
+        if (ws.capacity() < g.numNodes()) {
+            throw new IllegalArgumentException("workspace for " + ws.capacity() + " nodes is too small for a graph with "
+                    + g.numNodes() + " nodes");
+        }
+        graph = g;
+        this.ws = ws;
+    }
+
+    /**
+     * Return the graph this engine searches.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return the origin of the most recent call to compute, or -1 if compute has not been called.
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Compute the shortest path to all nodes from origin. Precondition: 0 <= origin < getGraph().numNodes().
+     */
+    public void compute(int origin) {
+        search(origin, -1);
+        this.origin = origin;
+    }
+
+    /**
+     * Find the shortest path from origin to destination, stopping as soon as destination is settled. Returns the
+     * path and its length. This overwrites the results of any earlier call to compute, so afterwards getOrigin()
+     * returns -1 until compute is called again. Precondition: both nodes are in the graph.
+     */
+    public PathResult query(int origin, int destination) {
+        int settled = search(origin, destination);
+        this.origin = -1;
+        return new PathResult(graph, shortestPath(destination), ws.dist(destination), settled);
+    }
+
+    /* Run Dijkstra's algorithm from origin until the heap is empty or destination (if not -1) is settled. Returns
+     * the number of nodes settled. */
+    private int search(int origin, int destination) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long relaxed = 0;
+        ws.reset();
+        IndexedHeap heap = ws.heap();
+        ws.set(origin, 0, -1);
+        heap.add(origin, 0);
+        int settled = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            if (u == destination) {
+                break;
+            }
+            double du = ws.dist(u);
+            int end = graph.edgeEnd(u);
+            if (Metrics.ENABLED) {
+                relaxed += end - graph.edgeBegin(u);
+            }
+            for (int e = graph.edgeBegin(u); e < end; e++) {
+                int v = graph.target(e);
+                double dv = du + graph.weight(e);
+                if (dv < ws.dist(v)) {
+                    ws.set(v, dv, u);
+                    heap.addOrDecrease(v, dv);
+                }
+            }
+        }
+        if (Metrics.ENABLED) {
+            // every node pushed was either popped or is still in the heap
+            Metrics.recordSearch(System.nanoTime() - start, settled, relaxed, settled + heap.size(), settled);
+        }
+        return settled;
+    }
+
+    /**
+     * Returns the length of the shortest path from the origin to destination. If no path exists, return
+     * Double.POSITIVE_INFINITY. Precondition: compute(origin) has been called.
+     */
+    public double shortestPathLength(int destination) {
+        return ws.dist(destination);
+    }
+
+    /**
+     * Return the node before destination on the shortest path from the origin, or -1 if destination is the origin or
+     * is unreachable. Precondition: compute(origin) has been called.
+     */
+    public int previous(int destination) {
+        return ws.prev(destination);
+    }
+
+    /**
+     * Return a copy of the results of the most recent call to compute, which stays valid after this engine runs
+     * other searches. Precondition: compute(origin) has been called.
+     */
+    public ShortestPathTree tree() {
+        int n = graph.numNodes();
+        double[] dist = new double[n];
+        int[] prev = new int[n];
+        for (int v = 0; v < n; v++) {
+            dist[v] = ws.dist(v);
+            prev[v] = ws.prev(v);
+        }
+        return new ShortestPathTree(origin, dist, prev);
+    }
+
+    /**
+     * Returns the node ids along the shortest path from origin to destination, including both. If origin and
+     * destination are the same node, it is included only once. If no path to it exists, return null.
+     * Precondition: compute(origin) has been called.
+     */
+    public int[] shortestPath(int destination) {
+        if (ws.dist(destination) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int length = 1;
+        for (int v = destination; ws.prev(v) != -1; v = ws.prev(v)) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = destination, i = length - 1; i >= 0; v = ws.prev(v), i--) {
+            path[i] = v;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,177 @@
+package graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** The shortest path lengths from a list of source nodes to a list of target nodes, as computed by ManyToMany. Entry
+ * (i, j) is the distance from sources[i] to targets[j], or Double.POSITIVE_INFINITY if targets[j] is unreachable.
+ * Entries are stored row by row in one flat double[] when the matrix fits on the heap, and otherwise in a
+ * memory-mapped file of little-endian doubles in the same order, mapped in segments of whole rows so that no single
+ * mapping exceeds the 2 GB buffer limit. */
+public class DistanceMatrix {
+
+    // largest number of bytes mapped by one segment of a file-backed matrix
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final int[] sources;
+    private final int[] targets;
+
+    private final double[] values; // values[i * targets.length + j] is entry (i, j), or null if file-backed
+    private final DoubleBuffer[] segments; // segment s holds rows s * rowsPerSegment and up, or null if on the heap
+    private final MappedByteBuffer[] mappings; // the mappings under segments, for force()
+    private final int rowsPerSegment;
+    private final File file;
+
+    /* Constructor: wrap heap storage. */
+    private DistanceMatrix(int[] sources, int[] targets, double[] values) {
+        this.sources = sources;
+        this.targets = targets;
+        this.values = values;
+        segments = null;
+        mappings = null;
+        rowsPerSegment = 0;
+        file = null;
+    }
+
+    /* Constructor: wrap file-backed storage. */
+    private DistanceMatrix(int[] sources, int[] targets, File file, MappedByteBuffer[] mappings, int rowsPerSegment) {
+        this.sources = sources;
+        this.targets = targets;
+        this.file = file;
+        this.mappings = mappings;
+        this.rowsPerSegment = rowsPerSegment;
+        values = null;
+        segments = new DoubleBuffer[mappings.length];
+        for (int s = 0; s < mappings.length; s++) {
+            segments[s] = mappings[s].order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Create a matrix for the given sources and targets, stored on the heap. Throws IllegalArgumentException if it
+     * has more entries than a Java array can hold.
+     */
+    static DistanceMatrix onHeap(int[] sources, int[] targets) {
+        long cells = (long) sources.length * targets.length;
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("a " + sources.length + " x " + targets.length
+                    + " matrix is too large for the heap");
+        }
+        return new DistanceMatrix(sources, targets, new double[(int) cells]);
+    }
+
+    /**
+     * Create a matrix for the given sources and targets, stored in the file f, which is created or truncated.
+     */
+    static DistanceMatrix inFile(int[] sources, int[] targets, File f) throws IOException {
+        long rowBytes = 8L * targets.length;
+        if (rowBytes > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("rows of " + targets.length + " targets are too large to map");
+        }
+        int rowsPerSegment = (int) Math.max(1, SEGMENT_SIZE / Math.max(1, rowBytes));
+        int numSegments = (sources.length + rowsPerSegment - 1) / rowsPerSegment;
+        MappedByteBuffer[] mappings = new MappedByteBuffer[numSegments];
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw"); FileChannel ch = raf.getChannel()) {
+            ch.truncate(0);
+            for (int s = 0; s < numSegments; s++) {
+                int rows = Math.min(rowsPerSegment, sources.length - s * rowsPerSegment);
+                mappings[s] = ch.map(FileChannel.MapMode.READ_WRITE, s * rowsPerSegment * rowBytes, rows * rowBytes);
+            }
+        }
+        return new DistanceMatrix(sources, targets, f, mappings, rowsPerSegment);
+    }
+
+    /**
+     * Return true if this matrix fits on the heap alongside what the JVM is already using, with room to spare.
+     */
+    static boolean fitsOnHeap(int numSources, int numTargets) {
+        long cells = (long) numSources * numTargets;
+        if (cells > Integer.MAX_VALUE - 8) {
+            return false;
+        }
+        Runtime rt = Runtime.getRuntime();
+        long available = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+        return 8 * cells <= available / 2;
+    }
+
+    /**
+     * Return the number of rows, one per source.
+     */
+    public int numSources() {
+        return sources.length;
+    }
+
+    /**
+     * Return the number of columns, one per target.
+     */
+    public int numTargets() {
+        return targets.length;
+    }
+
+    /**
+     * Return the node id of the source of row i.
+     */
+    public int source(int i) {
+        return sources[i];
+    }
+
+    /**
+     * Return the node id of the target of column j.
+     */
+    public int target(int j) {
+        return targets[j];
+    }
+
+    /**
+     * Return the length of the shortest path from source(i) to target(j), or Double.POSITIVE_INFINITY if there is
+     * none.
+     */
+    public double get(int i, int j) {
+        if (values != null) {
+            return values[i * targets.length + j];
+        }
+        return segments[i / rowsPerSegment].get((i % rowsPerSegment) * targets.length + j);
+    }
+
+    /**
+     * Set entry (i, j). Rows may be written by different threads at the same time, as long as each row is written by
+     * only one.
+     */
+    void set(int i, int j, double d) {
+        if (values != null) {
+            values[i * targets.length + j] = d;
+        } else {
+            segments[i / rowsPerSegment].put((i % rowsPerSegment) * targets.length + j, d);
+        }
+    }
+
+    /**
+     * Return true if this matrix is stored in a memory-mapped file rather than on the heap.
+     */
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    /**
+     * Return the file this matrix is stored in, or null if it is on the heap.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Write any changes to a file-backed matrix through to the file. Does nothing for a matrix on the heap.
+     */
+    public void force() {
+        if (mappings != null) {
+            for (MappedByteBuffer m : mappings) {
+                m.force();
+            }
+        }
+    }
+}
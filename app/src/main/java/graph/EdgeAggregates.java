@@ -0,0 +1,235 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** Per-edge totals over every DB1B coupon of an orig -> dest pair, which Node.addNeighbor otherwise collapses into
+ * the distance of the last coupon: the number of coupons, the sum of their Passengers and of their itineraries'
+ * Coupons, the smallest and largest Distance, and the number of coupons sold by each ticketing carrier (TkCarrier) and
+ * flown by each operating carrier (OpCarrier). Edges are numbered 0, 1, 2, ... in order of first appearance and every
+ * total is kept in a primitive array indexed by edge number, so adding a coupon updates a few array slots and never
+ * creates an object; carrier counts live in hash maps keyed by the packed (edge, carrier) pair. Nodes are the dense
+ * indices of the Graph the coupons were parsed into (see Node.getIndex). carrierEdges() turns the carrier counts into
+ * an edge filter for ConstrainedPaths. Built by MappedDB1BParser and DB1BParser when created with aggregation on.
+ * Example usage:
+ *     MappedDB1BParser p = new MappedDB1BParser(true);
+ *     p.open(file);
+ *     Graph g = p.parse();
+ *     EdgeAggregates agg = p.getAggregates();
+ *     int e = agg.find(g.getNode("ATL"), g.getNode("LAX"));
+ *     double passengers = agg.passengers(e); */
+public class EdgeAggregates {
+
+    private final LongIntHashMap edgeIds = new LongIntHashMap(1024); // packed (orig, dest) -> edge number
+    private int[] origs = new int[1024];
+    private int[] dests = new int[1024];
+    private int[] coupons = new int[1024];
+    private double[] passengers = new double[1024];
+    private int[] itineraryCoupons = new int[1024];
+    private double[] minDistance = new double[1024];
+    private double[] maxDistance = new double[1024];
+    private int size;
+
+    // ticketing and operating carriers share one numbering
+    private final CodeInterner carriers = new CodeInterner();
+    private final LongIntHashMap carrierCoupons = new LongIntHashMap(1024); // packed (edge, carrier) -> coupons
+    private final LongIntHashMap operatingCoupons = new LongIntHashMap(1024); // packed (edge, carrier) -> coupons
+
+    /**
+     * Record one coupon from orig to dest and return the number of its edge. passengers is the coupon's Passengers
+     * value and itineraryCoupons its Coupons value (the number of segments of the whole itinerary), 0 if absent. Its
+     * carriers are recorded separately with addCarrier.
+     */
+    int add(int orig, int dest, double distance, double passengers, int itineraryCoupons) {
+        long key = LongIntHashMap.pair(orig, dest);
+        int e = edgeIds.get(key, -1);
+        if (e == -1) {
+            e = newEdge(key, orig, dest, distance);
+        }
+        coupons[e]++;
+        this.passengers[e] += passengers;
+        this.itineraryCoupons[e] += itineraryCoupons;
+        minDistance[e] = Math.min(minDistance[e], distance);
+        maxDistance[e] = Math.max(maxDistance[e], distance);
+        return e;
+    }
+
+    /**
+     * Record that a coupon of edge e was sold (or, if operating is true, flown) by the carrier whose code is the bytes
+     * from (inclusive) to to (exclusive) of buf, without quotes.
+     */
+    void addCarrier(int e, ByteBuffer buf, int from, int to, boolean operating) {
+        int c = carriers.intern(buf, from, to);
+        (operating ? operatingCoupons : carrierCoupons).add(LongIntHashMap.pair(e, c), 1);
+    }
+
+    /**
+     * Same as addCarrier(e, buf, from, to, operating), for a carrier code held in a String.
+     */
+    void addCarrier(int e, String code, boolean operating) {
+        byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        addCarrier(e, ByteBuffer.wrap(bytes), 0, bytes.length, operating);
+    }
+
+    /* Number a new edge and make room for its totals. */
+    private int newEdge(long key, int orig, int dest, double distance) {
+        if (size == origs.length) {
+            int capacity = 2 * size;
+            origs = Arrays.copyOf(origs, capacity);
+            dests = Arrays.copyOf(dests, capacity);
+            coupons = Arrays.copyOf(coupons, capacity);
+            passengers = Arrays.copyOf(passengers, capacity);
+            itineraryCoupons = Arrays.copyOf(itineraryCoupons, capacity);
+            minDistance = Arrays.copyOf(minDistance, capacity);
+            maxDistance = Arrays.copyOf(maxDistance, capacity);
+        }
+        int e = size++;
+        edgeIds.put(key, e);
+        origs[e] = orig;
+        dests[e] = dest;
+        minDistance[e] = distance;
+        maxDistance[e] = distance;
+        return e;
+    }
+
+    /**
+     * Return the number of distinct edges seen.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the number of the edge from the node with index orig to the node with index dest, or -1 if no coupon
+     * was seen for it.
+     */
+    public int find(int orig, int dest) {
+        return edgeIds.get(LongIntHashMap.pair(orig, dest), -1);
+    }
+
+    /**
+     * Return the number of the edge from orig to dest, or -1 if no coupon was seen for it.
+     */
+    public int find(Node orig, Node dest) {
+        return find(orig.getIndex(), dest.getIndex());
+    }
+
+    /**
+     * Return the index of the origin node of edge e.
+     */
+    public int orig(int e) {
+        return origs[e];
+    }
+
+    /**
+     * Return the index of the destination node of edge e.
+     */
+    public int dest(int e) {
+        return dests[e];
+    }
+
+    /**
+     * Return the number of coupons for edge e.
+     */
+    public int coupons(int e) {
+        return coupons[e];
+    }
+
+    /**
+     * Return the sum of the Passengers column over the coupons for edge e, or 0 if the file has no such column.
+     */
+    public double passengers(int e) {
+        return passengers[e];
+    }
+
+    /**
+     * Return the sum of the Coupons column over the coupons for edge e, or 0 if the file has no such column. Divided
+     * by coupons(e), it is the mean number of segments of the itineraries that fly this edge.
+     */
+    public int itineraryCoupons(int e) {
+        return itineraryCoupons[e];
+    }
+
+    /**
+     * Return the smallest Distance of any coupon for edge e.
+     */
+    public double minDistance(int e) {
+        return minDistance[e];
+    }
+
+    /**
+     * Return the largest Distance of any coupon for edge e.
+     */
+    public double maxDistance(int e) {
+        return maxDistance[e];
+    }
+
+    /**
+     * Return the number of distinct carriers seen.
+     */
+    public int numCarriers() {
+        return carriers.size();
+    }
+
+    /**
+     * Return the code of carrier c, 0 <= c < numCarriers(). Carriers are numbered in order of first appearance.
+     */
+    public String carrier(int c) {
+        return carriers.name(c);
+    }
+
+    /**
+     * Return the number of the carrier with the given code, or -1 if it was never seen.
+     */
+    public int carrierIndex(String code) {
+        for (int c = 0; c < carriers.size(); c++) {
+            if (carriers.name(c).equals(code)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of coupons for edge e sold by carrier c.
+     */
+    public int carrierCoupons(int e, int c) {
+        return carrierCoupons.get(LongIntHashMap.pair(e, c), 0);
+    }
+
+    /**
+     * Return the number of coupons for edge e flown by operating carrier c.
+     */
+    public int operatingCoupons(int e, int c) {
+        return operatingCoupons.get(LongIntHashMap.pair(e, c), 0);
+    }
+
+    /**
+     * Return the edges of g that at least one coupon was sold on by one of the given carriers, or flown on by one of
+     * them if operating is true, as a set of edge indices of g (edgeBegin(v) <= e < edgeEnd(v)). Unknown codes match
+     * nothing. Precondition: node v of g is the node with index v of the parsed Graph, as for Graph.compile() or
+     * MappedDB1BParser.parseOffHeap().
+     */
+    public BitSet carrierEdges(IndexedGraph g, boolean operating, String... codes) {
+        int[] cs = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            cs[i] = carrierIndex(codes[i]);
+        }
+        LongIntHashMap counts = operating ? operatingCoupons : carrierCoupons;
+        BitSet edges = new BitSet(g.numEdges());
+        for (int v = 0; v < g.numNodes(); v++) {
+            for (int i = g.edgeBegin(v); i < g.edgeEnd(v); i++) {
+                int e = find(v, g.target(i));
+                for (int c : cs) {
+                    if (e >= 0 && c >= 0 && counts.get(LongIntHashMap.pair(e, c), 0) > 0) {
+                        edges.set(i);
+                        break;
+                    }
+                }
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,215 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Scans delimited text rows in a ByteBuffer for the three fields that make up an edge: origin code, destination
+ * code and distance. Fields are located byte by byte and only up to the last column that is needed; the codes are
+ * handed to a Sink as byte ranges with surrounding double quotes removed and the distance is parsed without building
+ * a String. A scanner can also be asked for extra columns, whose byte ranges are written into an array supplied by
+ * the caller before the Sink is called, so that one scanner can still be shared by several threads. Rows are
+ * separated by '\n' (an optional preceding '\r' is ignored) and blank rows are skipped. */
+final class EdgeRowScanner {
+
+    /** Receives the edges found by an EdgeRowScanner. */
+    interface Sink {
+        /**
+         * Called once per row with the byte ranges of the origin and destination codes in buf and the parsed distance.
+         */
+        void edge(ByteBuffer buf, int origFrom, int origTo, int destFrom, int destTo, double distance);
+    }
+
+    private final byte separator;
+    private final int origCol;
+    private final int destCol;
+    private final int distCol;
+    private final int[] extraCols; // further columns whose ranges are reported, -1 for a column that is absent
+    private final int lastCol;
+
+    /**
+     * Constructor: scan rows whose fields are separated by separator, taking the origin, destination and distance
+     * from the given zero-based columns.
+     */
+    EdgeRowScanner(char separator, int origCol, int destCol, int distCol) {
+        this(separator, origCol, destCol, distCol, new int[0]);
+    }
+
+    /**
+     * Constructor: like the four-argument constructor, but also report the byte ranges of the zero-based columns in
+     * extraCols (see scanRow). An entry of -1 stands for a column the input does not have.
+     */
+    EdgeRowScanner(char separator, int origCol, int destCol, int distCol, int[] extraCols) {
+        this.separator = (byte) separator;
+        this.origCol = origCol;
+        this.destCol = destCol;
+        this.distCol = distCol;
+        this.extraCols = extraCols.clone();
+        int last = Math.max(origCol, Math.max(destCol, distCol));
+        for (int col : extraCols) {
+            last = Math.max(last, col);
+        }
+        lastCol = last;
+    }
+
+    /**
+     * Return a scanner for BasicParser's format: "ORIG DEST DISTANCE", separated by single spaces.
+     */
+    static EdgeRowScanner basic() {
+        return new EdgeRowScanner(' ', 0, 1, 2);
+    }
+
+    /**
+     * Return a scanner for DB1B rows, resolving the origin, dest and distance column indices from the CSV header
+     * line with the same normalization as DB1BParser: quotes removed and names lowercased.
+     */
+    static EdgeRowScanner db1b(String headerLine) {
+        return db1b(headerLine, new String[0]);
+    }
+
+    /**
+     * Return a scanner for DB1B rows like db1b(headerLine) that also reports the columns named in extraNames, in that
+     * order. Names are matched the same way, ignoring quotes and case; a name the header lacks is reported as absent.
+     */
+    static EdgeRowScanner db1b(String headerLine, String... extraNames) {
+        int origCol = -1, destCol = -1, distCol = -1;
+        int[] extraCols = new int[extraNames.length];
+        Arrays.fill(extraCols, -1);
+        String[] headers = headerLine.split(",");
+        for (int i = 0; i < headers.length; i++) {
+            String name = headers[i].replace("\"", "").toLowerCase();
+            if (name.equals("origin")) {
+                origCol = i;
+            } else if (name.equals("dest")) {
+                destCol = i;
+            } else if (name.equals("distance")) {
+                distCol = i;
+            }
+            for (int k = 0; k < extraNames.length; k++) {
+                if (name.equals(extraNames[k].toLowerCase())) {
+                    extraCols[k] = i;
+                }
+            }
+        }
+        if (origCol < 0 || destCol < 0 || distCol < 0) {
+            throw new IllegalArgumentException(
+                    "DB1B header must contain Origin, Dest and Distance columns: " + headerLine);
+        }
+        return new EdgeRowScanner(',', origCol, destCol, distCol, extraCols);
+    }
+
+    /**
+     * Return the number of extra columns this scanner reports.
+     */
+    int numExtraColumns() {
+        return extraCols.length;
+    }
+
+    /**
+     * Scan every row from position 0 to the limit of buf.
+     */
+    void scan(ByteBuffer buf, Sink sink) {
+        scan(buf, sink, null);
+    }
+
+    /**
+     * Scan every row from position 0 to the limit of buf, reporting the extra columns of each row in extraRanges
+     * (see scanRow).
+     */
+    void scan(ByteBuffer buf, Sink sink, int[] extraRanges) {
+        int pos = 0;
+        while (pos < buf.limit()) {
+            pos = scanRow(buf, pos, sink, extraRanges);
+        }
+    }
+
+    /**
+     * Scan the row starting at position pos of buf, passing its edge to sink unless the row is blank. Returns the
+     * position of the next row. Throws IllegalArgumentException if the row is missing a needed field or its distance
+     * is not a number.
+     */
+    int scanRow(ByteBuffer buf, int pos, Sink sink) {
+        return scanRow(buf, pos, sink, null);
+    }
+
+    /**
+     * Scan one row like scanRow(buf, pos, sink). Before sink is called, extraRanges[2k] and extraRanges[2k+1] are set
+     * to the start (inclusive) and end (exclusive) in buf of extra column k, or both to -1 if the row or the input
+     * lacks that column. extraRanges may be null if the extra columns are not wanted.
+     */
+    int scanRow(ByteBuffer buf, int pos, Sink sink, int[] extraRanges) {
+        if (extraRanges != null) {
+            Arrays.fill(extraRanges, 0, 2 * extraCols.length, -1);
+        }
+        int limit = buf.limit();
+        int origStart = -1, origEnd = -1, destStart = -1, destEnd = -1, distStart = -1, distEnd = -1;
+        int field = 0;
+        int start = pos;
+        int i = pos;
+        while (true) {
+            byte b = i < limit ? buf.get(i) : (byte) '\n';
+            if (b == separator || b == '\n') {
+                int end = i;
+                if (b == '\n' && end > start && buf.get(end - 1) == '\r') {
+                    end--;
+                }
+                if (field == origCol) {
+                    origStart = start;
+                    origEnd = end;
+                }
+                if (field == destCol) {
+                    destStart = start;
+                    destEnd = end;
+                }
+                if (field == distCol) {
+                    distStart = start;
+                    distEnd = end;
+                }
+                if (extraRanges != null) {
+                    for (int k = 0; k < extraCols.length; k++) {
+                        if (field == extraCols[k]) {
+                            extraRanges[2 * k] = start;
+                            extraRanges[2 * k + 1] = end;
+                        }
+                    }
+                }
+                field++;
+                start = i + 1;
+                if (b == '\n') {
+                    break;
+                }
+                if (field > lastCol) {
+                    // nothing further on this line is needed
+                    while (i < limit && buf.get(i) != '\n') {
+                        i++;
+                    }
+                    break;
+                }
+            }
+            i++;
+        }
+        int next = i + 1;
+        if (i == pos || (i == pos + 1 && buf.get(pos) == '\r')) {
+            return next;
+        }
+        if (origStart < 0 || destStart < 0 || distStart < 0) {
+            throw new IllegalArgumentException("Row has too few fields: "
+                    + AsciiNumbers.decode(buf, pos, Math.min(i, limit)));
+        }
+
+        double distance = AsciiNumbers.parseDouble(buf, distStart, distEnd);
+        while (origStart < origEnd && buf.get(origStart) == '"') {
+            origStart++;
+        }
+        while (origEnd > origStart && buf.get(origEnd - 1) == '"') {
+            origEnd--;
+        }
+        while (destStart < destEnd && buf.get(destStart) == '"') {
+            destStart++;
+        }
+        while (destEnd > destStart && buf.get(destEnd - 1) == '"') {
+            destEnd--;
+        }
+        sink.edge(buf, origStart, origEnd, destStart, destEnd, distance);
+        return next;
+    }
+}
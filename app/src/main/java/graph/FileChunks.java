@@ -0,0 +1,89 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/** Helpers for reading a text file through a FileChannel in pieces that start and end on line boundaries, so that
+ * each piece can be memory-mapped and scanned on its own. */
+final class FileChunks {
+
+    // bytes read at a time while looking for the end of a line
+    private static final int PROBE_SIZE = 64 * 1024;
+
+    private FileChunks() {
+    }
+
+    /**
+     * Close ch after failure, a failure to open or read it, adding any error from closing to failure as suppressed.
+     */
+    static void closeAfter(FileChannel ch, Exception failure) {
+        try {
+            ch.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Split the bytes of ch from position start to the end of the file into consecutive chunks of about chunkSize
+     * bytes each. Every chunk except possibly the last ends just after a '\n'. Returns the chunk boundaries b, so that
+     * chunk i covers positions b[i] (inclusive) to b[i+1] (exclusive); b[0] == start and the last entry is the file
+     * size.
+     */
+    static long[] split(FileChannel ch, long start, long chunkSize) throws IOException {
+        long size = ch.size();
+        ArrayList<Long> bounds = new ArrayList<Long>();
+        bounds.add(start);
+        long pos = start;
+        while (pos < size) {
+            long next = pos + chunkSize >= size ? size : nextLineStart(ch, pos + chunkSize - 1);
+            bounds.add(next);
+            pos = next;
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Return the position just after the first '\n' at or after from, or the file size if there is none.
+     */
+    static long nextLineStart(FileChannel ch, long from) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long pos = from;
+        while (true) {
+            probe.clear();
+            int n = ch.read(probe, pos);
+            if (n <= 0) {
+                return ch.size();
+            }
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+    }
+
+    /**
+     * Return the first line of the file, without its line terminator, decoded as UTF-8.
+     */
+    static String firstLine(FileChannel ch) throws IOException {
+        long end = nextLineStart(ch, 0);
+        ByteBuffer line = ByteBuffer.allocate((int) end);
+        while (line.hasRemaining() && ch.read(line, line.position()) > 0) {
+            // keep reading until the whole line is in the buffer
+        }
+        int length = line.position();
+        while (length > 0 && (line.get(length - 1) == '\n' || line.get(length - 1) == '\r')) {
+            length--;
+        }
+        return new String(line.array(), 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -1,61 +1,197 @@
 package graph;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
  /* Author: Kieran Rapo
  * Date: 12/06/2023
  * Description: A graph class representing a graph in adjacency-list style format. The
  * Graph stores a mapping from unique String node identifiers to respective
- * Node objects. Edges are stored in each Node's neighbors, accessible by its
- * getNeighbors field. */
+ * Node objects; identifiers are numbered by a NodeDictionary, which packs short codes such as airport codes into
+ * long keys, so that finding a node costs one probe of a primitive table. Edges are stored in each Node's
+ * neighbors, accessible by its getNeighbors field, and mirrored in the reverse index of the node they point to,
+ * accessible by its getInNeighbors field. Every node also gets a dense index (0, 1, 2, ... in order of
+ * creation) so that the graph can be compiled into the array-based CSRGraph used by the
+ * shortest path engines, and the parsers add nodes and edges by these indices rather than by String. A version
+ * counter changes on every change made through the Graph, so that results derived from an earlier state (such as
+ * cached shortest path trees) can tell they are stale, and EdgeListeners are told of every edge that is added,
+ * reweighted or removed, so that such results can be repaired instead. */
 
 public class Graph {
 
-    // maps node ids to nodes:
-    private HashMap<String, Node> nodes;
+    /** Receives the changes made to a Graph's edges. */
+    public interface EdgeListener {
+        /**
+         * Called after the edge from orig to dest changed weight from oldWeight to newWeight. An edge that did not
+         * exist before has oldWeight Double.POSITIVE_INFINITY, and an edge that was removed has newWeight
+         * Double.POSITIVE_INFINITY.
+         */
+        void edgeChanged(Node orig, Node dest, double oldWeight, double newWeight);
+    }
+
+    // numbers node ids: the node with id s is byIndex.get(ids.indexOf(s)):
+    private NodeDictionary ids;
+
+    // nodes in order of creation, so that byIndex.get(i).getIndex() == i:
+    private ArrayList<Node> byIndex;
+
+    // incremented whenever a node is added or an edge changes:
+    private long version;
+
+    // told of every edge change:
+    private List<EdgeListener> listeners;
 
     /**
      * Constructor: create an empty graph
      */
     public Graph() {
-        nodes = new HashMap<String, Node>();
+        ids = new NodeDictionary(1024);
+        byIndex = new ArrayList<Node>();
+        listeners = new ArrayList<EdgeListener>();
     }
 
     /**
      * Return the node with id s. If no such node exists already, create and return it.
      */
     public Node getNode(String s) {
-        if (nodes.containsKey(s)) {
-            return nodes.get(s);
+        int i = ids.add(s);
+        return i < byIndex.size() ? byIndex.get(i) : newNode(s);
+    }
+
+    /**
+     * Return the dense index of the node with id s, or -1 if there is no such node.
+     */
+    public int indexOf(String s) {
+        return ids.indexOf(s);
+    }
+
+    /**
+     * Return the dense index of the node whose id is the bytes from (inclusive) to to (exclusive) of buf, creating
+     * the node if it does not exist yet. Looking up an existing short ASCII id allocates nothing. Used by the parsers
+     * that read ids straight from their input buffers.
+     */
+    int indexOf(ByteBuffer buf, int from, int to) {
+        int i = ids.add(buf, from, to);
+        if (i == byIndex.size()) {
+            newNode(ids.name(i));
         }
-        Node n = new Node(s);
-        nodes.put(s, n);
+        return i;
+    }
+
+    /* Create the node for id s, which the dictionary has just numbered byIndex.size(). */
+    private Node newNode(String s) {
+        Node n = new Node(s, byIndex.size());
+        byIndex.add(n);
+        version++;
         return n;
     }
 
+    /**
+     * Return the node with dense index i. Precondition: 0 <= i < numNodes().
+     */
+    public Node getNode(int i) {
+        return byIndex.get(i);
+    }
+
+    /**
+     * Return the number of nodes in the graph.
+     */
+    public int numNodes() {
+        return byIndex.size();
+    }
+
     /**
      * Return a read-only view on the map from node ids to nodes. This is read-only to avoid modification by client code
      * that could create nodes with duplicate id's. Node creation should be done exclusively with getNode.
      */
     public Map<String, Node> getNodes() {
-        return Collections.unmodifiableMap(nodes);
+        return new NodeMap();
     }
 
     /**
-     * Add an edge to the graph. If an edge from orig to dest exists already, overwrite it.
+     * Add an edge to the graph. If an edge from orig to dest exists already, overwrite it, which is how an edge is
+     * reweighted. The edge is also recorded in dest's reverse index (see Node.getInNeighbors), which backward searches
+     * use.
      */
     public void addEdge(Node orig, Node dest, double distance) {
+        // the previous weight is only looked up when someone is listening, so that parsing pays nothing for it
+        Double old = listeners.isEmpty() ? null : orig.getNeighbors().get(dest);
         orig.addNeighbor(dest, distance);
+        dest.addInNeighbor(orig, distance);
+        version++;
+        for (EdgeListener l : listeners) {
+            l.edgeChanged(orig, dest, old == null ? Double.POSITIVE_INFINITY : old, distance);
+        }
+    }
+
+    /**
+     * Add an edge from the node with index orig to the node with index dest, like addEdge(getNode(orig),
+     * getNode(dest), distance). Precondition: both nodes exist.
+     */
+    public void addEdge(int orig, int dest, double distance) {
+        addEdge(byIndex.get(orig), byIndex.get(dest), distance);
+    }
+
+    /**
+     * Remove the edge from orig to dest, from both orig's neighbors and dest's reverse index. Returns false if there
+     * was no such edge.
+     */
+    public boolean removeEdge(Node orig, Node dest) {
+        Double old = orig.getNeighbors().get(dest);
+        if (old == null) {
+            return false;
+        }
+        orig.removeNeighbor(dest);
+        dest.removeInNeighbor(orig);
+        version++;
+        for (EdgeListener l : listeners) {
+            l.edgeChanged(orig, dest, old, Double.POSITIVE_INFINITY);
+        }
+        return true;
+    }
+
+    /**
+     * Start telling l of every edge change made through this graph.
+     */
+    public void addEdgeListener(EdgeListener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * Stop telling l of edge changes.
+     */
+    public void removeEdgeListener(EdgeListener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * Return a counter that changes whenever a node is added or an edge is added, reweighted or removed through this
+     * graph. Edges changed directly with Node.addNeighbor or Node.removeNeighbor are not counted.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Compile the current contents of this graph into an immutable CSRGraph. Node i of the result is getNode(i). Later
+     * changes to this graph are not reflected in the result.
+     */
+    public CSRGraph compile() {
+        return CSRGraph.from(this);
     }
 
     /**
      * Print a report of the graph's statistics, including number of nodes, number of edges, and average degree.
      */
     public void report() {
-        int numNodes = nodes.size();
+        int numNodes = byIndex.size();
         int numEdges = 0;
-        for (Node n : nodes.values()) {
+        for (Node n : byIndex) {
             numEdges += n.getNeighbors().size();
         }
 
@@ -66,4 +202,50 @@ public class Graph {
                 ((double) numEdges) / ((double) numNodes));
     }
 
+    /** The read-only view returned by getNodes: lookups go through the dictionary, and iteration is in index
+     * order. */
+    private class NodeMap extends AbstractMap<String, Node> {
+        @Override
+        public Node get(Object key) {
+            int i = key instanceof String ? ids.indexOf((String) key) : -1;
+            return i < 0 ? null : byIndex.get(i);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && ids.indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return byIndex.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Node>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Node>>() {
+                @Override
+                public Iterator<Map.Entry<String, Node>> iterator() {
+                    Iterator<Node> it = byIndex.iterator();
+                    return new Iterator<Map.Entry<String, Node>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Node> next() {
+                            Node n = it.next();
+                            return new AbstractMap.SimpleImmutableEntry<String, Node>(n.getId(), n);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return byIndex.size();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,354 @@
+package graph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/** A graph stored in a compact binary snapshot file and served straight from memory-mapped buffers. Loading a
+ * snapshot maps the file and reads its header; nothing is parsed or copied onto the heap, so a process can answer
+ * queries milliseconds after starting instead of re-ingesting the text or CSV file it was built from.
+ *
+ * File layout (version 1, little-endian, every section 8-byte aligned):
+ *     header:    int magic "GSNP", int version, int numNodes, int numEdges, int tableSize, int 0, long idBytes
+ *     weights:   double[numEdges]     edge weights, in CSR order
+ *     offsets:   int[numNodes + 1]    CSR row offsets
+ *     targets:   int[numEdges]        edge targets, in CSR order
+ *     idStarts:  int[numNodes + 1]    node v's identifier is bytes idStarts[v] .. idStarts[v+1] of the ids section
+ *     table:     int[tableSize]       open-addressing hash table of node id + 1 (0 = empty), keyed by String.hashCode
+ *     ids:       byte[idBytes]        UTF-8 node identifiers
+ * Example usage:
+ *     GraphSnapshot.write(graph.compile(), new File("db1b.gsnp"));
+ *     IndexedGraph g = GraphSnapshot.load(new File("db1b.gsnp")); */
+public class GraphSnapshot implements IndexedGraph {
+
+    static final int MAGIC = 0x504E5347; // "GSNP" read as a little-endian int
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private final int numNodes;
+    private final int numEdges;
+    private final DoubleBuffer weights;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer idStarts;
+    private final IntBuffer table;
+    private final ByteBuffer ids;
+
+    private CSRGraph transpose; // built on the heap the first time a backward search needs it
+
+    /* Constructor: wrap the sections of a mapped snapshot. */
+    private GraphSnapshot(int numNodes, int numEdges, DoubleBuffer weights, IntBuffer offsets, IntBuffer targets,
+                          IntBuffer idStarts, IntBuffer table, ByteBuffer ids) {
+        this.numNodes = numNodes;
+        this.numEdges = numEdges;
+        this.weights = weights;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.idStarts = idStarts;
+        this.table = table;
+        this.ids = ids;
+    }
+
+    /**
+     * Write g to the snapshot file f, replacing any existing file.
+     */
+    public static void write(IndexedGraph g, File f) throws IOException {
+        int n = g.numNodes();
+        int m = g.numEdges();
+        byte[][] idBytes = new byte[n][];
+        long totalIdBytes = 0;
+        for (int v = 0; v < n; v++) {
+            idBytes[v] = g.idOf(v).getBytes(StandardCharsets.UTF_8);
+            totalIdBytes += idBytes[v].length;
+        }
+        if (totalIdBytes > Integer.MAX_VALUE) {
+            throw new IOException("node identifiers too large for a snapshot: " + totalIdBytes + " bytes");
+        }
+        int tableSize = Integer.highestOneBit(Math.max(2, 2 * n) - 1) << 1;
+        int[] table = new int[tableSize];
+        for (int v = 0; v < n; v++) {
+            int slot = slot(g.idOf(v).hashCode(), tableSize);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = v + 1;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw"); FileChannel ch = raf.getChannel()) {
+            ch.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(tableSize).putInt(0).putLong(totalIdBytes);
+            header.flip();
+            writeFully(ch, header);
+
+            SectionWriter out = new SectionWriter(ch);
+            for (int e = 0; e < m; e++) {
+                out.putDouble(g.weight(e));
+            }
+            for (int v = 0; v < n; v++) {
+                out.putInt(g.edgeBegin(v));
+            }
+            out.putInt(n == 0 ? 0 : g.edgeEnd(n - 1));
+            for (int e = 0; e < m; e++) {
+                out.putInt(g.target(e));
+            }
+            out.align();
+            int start = 0;
+            for (int v = 0; v < n; v++) {
+                out.putInt(start);
+                start += idBytes[v].length;
+            }
+            out.putInt(start);
+            out.align();
+            for (int slot = 0; slot < tableSize; slot++) {
+                out.putInt(table[slot]);
+            }
+            out.align();
+            for (int v = 0; v < n; v++) {
+                out.putBytes(idBytes[v]);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Map the snapshot file f and return a graph that reads from it. Throws IOException if f is not a snapshot or
+     * has an unsupported version.
+     */
+    public static GraphSnapshot load(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel ch = raf.getChannel()) {
+            if (ch.size() < HEADER_SIZE) {
+                throw new IOException(f + " is not a graph snapshot");
+            }
+            ByteBuffer header = map(ch, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(f + " is not a graph snapshot");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("unsupported snapshot version " + header.getInt(4) + " in " + f);
+            }
+            int n = header.getInt(8);
+            int m = header.getInt(12);
+            int tableSize = header.getInt(16);
+            long idBytes = header.getLong(24);
+
+            long pos = HEADER_SIZE;
+            DoubleBuffer weights = map(ch, pos, 8L * m).asDoubleBuffer();
+            pos += 8L * m;
+            IntBuffer offsets = map(ch, pos, 4L * (n + 1)).asIntBuffer();
+            pos += 4L * (n + 1);
+            IntBuffer targets = map(ch, pos, 4L * m).asIntBuffer();
+            pos = align(pos + 4L * m);
+            IntBuffer idStarts = map(ch, pos, 4L * (n + 1)).asIntBuffer();
+            pos = align(pos + 4L * (n + 1));
+            IntBuffer table = map(ch, pos, 4L * tableSize).asIntBuffer();
+            pos = align(pos + 4L * tableSize);
+            ByteBuffer ids = map(ch, pos, idBytes);
+            if (pos + idBytes > ch.size()) {
+                throw new IOException("truncated graph snapshot " + f);
+            }
+            return new GraphSnapshot(n, m, weights, offsets, targets, idStarts, table, ids);
+        }
+    }
+
+    /**
+     * Build a mutable Graph with the same nodes, in the same order, and edges as this snapshot.
+     */
+    public Graph toGraph() {
+        Graph g = new Graph();
+        for (int v = 0; v < numNodes; v++) {
+            g.getNode(idOf(v));
+        }
+        for (int v = 0; v < numNodes; v++) {
+            Node orig = g.getNode(v);
+            for (int e = edgeBegin(v); e < edgeEnd(v); e++) {
+                g.addEdge(orig, g.getNode(target(e)), weight(e));
+            }
+        }
+        return g;
+    }
+
+    @Override
+    public int numNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public String idOf(int v) {
+        int start = idStarts.get(v);
+        byte[] bytes = new byte[idStarts.get(v + 1) - start];
+        ids.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int indexOf(String id) {
+        int tableSize = table.limit();
+        if (tableSize == 0) {
+            return -1;
+        }
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        for (int slot = slot(id.hashCode(), tableSize); ; slot = (slot + 1) & (tableSize - 1)) {
+            int entry = table.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (idEquals(entry - 1, bytes)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Return this graph with every edge reversed. The snapshot stores only out-edges, so the transpose is built on
+     * the heap on first use and then kept.
+     */
+    @Override
+    public synchronized IndexedGraph transpose() {
+        if (transpose == null) {
+            transpose = CSRGraph.transposeOf(this);
+        }
+        return transpose;
+    }
+
+    @Override
+    public int edgeBegin(int v) {
+        return offsets.get(v);
+    }
+
+    @Override
+    public int edgeEnd(int v) {
+        return offsets.get(v + 1);
+    }
+
+    @Override
+    public int target(int e) {
+        return targets.get(e);
+    }
+
+    @Override
+    public double weight(int e) {
+        return weights.get(e);
+    }
+
+    /* Return true if the identifier of node v is exactly the given bytes. */
+    private boolean idEquals(int v, byte[] bytes) {
+        int start = idStarts.get(v);
+        if (idStarts.get(v + 1) - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (ids.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slot(int hash, int tableSize) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (tableSize - 1);
+    }
+
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    /* Map size bytes of ch starting at pos, read-only and little-endian. */
+    private static ByteBuffer map(FileChannel ch, long pos, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("snapshot section of " + size + " bytes is too large to map");
+        }
+        return ch.map(FileChannel.MapMode.READ_ONLY, pos, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    /** Writes primitive values to a channel through a fixed buffer, padding sections to 8-byte boundaries. */
+    private static class SectionWriter {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long written = HEADER_SIZE;
+
+        SectionWriter(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        void putInt(int x) throws IOException {
+            ensure(4);
+            buf.putInt(x);
+            written += 4;
+        }
+
+        void putDouble(double x) throws IOException {
+            ensure(8);
+            buf.putDouble(x);
+            written += 8;
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (byte b : bytes) {
+                ensure(1);
+                buf.put(b);
+            }
+            written += bytes.length;
+        }
+
+        /* Pad with zero bytes up to the next 8-byte boundary. */
+        void align() throws IOException {
+            while ((written & 7) != 0) {
+                ensure(1);
+                buf.put((byte) 0);
+                written++;
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            writeFully(ch, buf);
+            buf.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /** Main method: parse a graph and save it as a snapshot.
+     *  Usage: GraphSnapshot fileType inputFile snapshotFile
+     *  where fileType is any type accepted by ShortestPaths.parseGraph. */
+    public static void main(String[] args) {
+        Graph g;
+        try {
+            g = ShortestPaths.parseGraph(args[0], args[1]);
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open file " + args[1]);
+            return;
+        }
+        try {
+            write(g.compile(), new File(args[2]));
+        } catch (IOException e) {
+            System.out.println("Could not write snapshot " + args[2] + ": " + e.getMessage());
+            return;
+        }
+        g.report();
+    }
+}
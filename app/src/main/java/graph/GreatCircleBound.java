@@ -0,0 +1,48 @@
+package graph;
+
+/** A LowerBound for flight networks whose edge weights are flight miles: the great-circle distance between two
+ * airports is never longer than any route between them. Coordinates are held per node id; a node without coordinates
+ * gets the trivial bound 0, which keeps the bound admissible. To absorb differences between coordinate sources and
+ * the rounding of DB1B distances to whole miles, every distance is scaled by a slack factor and then reduced by half a
+ * mile; both adjustments keep the bound consistent. */
+public class GreatCircleBound implements LowerBound {
+
+    // coordinate sources differ slightly from the ones BTS used, so bounds are shrunk by 1% by default
+    static final double DEFAULT_SLACK = 0.99;
+
+    // DB1B distances are rounded to whole miles, so a route may be up to half a mile shorter than its true length
+    static final double ROUNDING_MILES = 0.5;
+
+    private final double[] lat; // latitude of each node in radians, NaN if unknown
+    private final double[] lon; // longitude of each node in radians
+    private final double[] cosLat; // cosine of each node's latitude
+    private final double scale; // slack times the diameter of the earth
+
+    /**
+     * Constructor: create a bound from per-node coordinates in decimal degrees (NaN where unknown). Every
+     * great-circle distance is multiplied by slack, which must be at most 1 for the bound to stay admissible.
+     */
+    public GreatCircleBound(double[] latDegrees, double[] lonDegrees, double slack) {
+        int n = latDegrees.length;
+        lat = new double[n];
+        lon = new double[n];
+        cosLat = new double[n];
+        for (int v = 0; v < n; v++) {
+            lat[v] = Math.toRadians(latDegrees[v]);
+            lon[v] = Math.toRadians(lonDegrees[v]);
+            cosLat[v] = Math.cos(lat[v]);
+        }
+        scale = slack * 2 * AirportCoordinates.EARTH_RADIUS_MILES;
+    }
+
+    @Override
+    public double estimate(int v, int target) {
+        if (Double.isNaN(lat[v]) || Double.isNaN(lat[target]) || Double.isNaN(lon[v]) || Double.isNaN(lon[target])) {
+            return 0;
+        }
+        double sinDp = Math.sin((lat[target] - lat[v]) / 2);
+        double sinDl = Math.sin((lon[target] - lon[v]) / 2);
+        double h = sinDp * sinDp + cosLat[v] * cosLat[target] * sinDl * sinDl;
+        return Math.max(0, scale * Math.asin(Math.min(1, Math.sqrt(h))) - ROUNDING_MILES);
+    }
+}
@@ -0,0 +1,74 @@
+package graph;
+
+/** Read-only view of a directed, weighted graph whose nodes are addressed by dense int ids 0 .. numNodes()-1. The
+ * out-edges of each node are numbered contiguously: the out-edges of v are the edges e with
+ * edgeBegin(v) <= e < edgeEnd(v). The array-based shortest path engines run over this interface so that they do not
+ * depend on how the adjacency is stored.
+ * Example usage:
+ *     IndexedGraph g = graph.compile();
+ *     for (int e = g.edgeBegin(v); e < g.edgeEnd(v); e++) {
+ *         int w = g.target(e);
+ *         double len = g.weight(e);
+ *     } */
+public interface IndexedGraph {
+
+    /**
+     * Return the number of nodes in the graph.
+     */
+    int numNodes();
+
+    /**
+     * Return the number of edges in the graph.
+     */
+    int numEdges();
+
+    /**
+     * Return the String identifier of node v. Precondition: 0 <= v < numNodes().
+     */
+    String idOf(int v);
+
+    /**
+     * Return the int id of the node with identifier id, or -1 if there is no such node.
+     */
+    int indexOf(String id);
+
+    /**
+     * Return the index of the first out-edge of node v.
+     */
+    int edgeBegin(int v);
+
+    /**
+     * Return one past the index of the last out-edge of node v.
+     */
+    int edgeEnd(int v);
+
+    /**
+     * Return the node that edge e points to.
+     */
+    int target(int e);
+
+    /**
+     * Return the weight of edge e.
+     */
+    double weight(int e);
+
+    /**
+     * Return a graph with the same nodes and every edge reversed, so that the out-edges of v in the result are the
+     * in-edges of v here. Implementations that can should build this once and return the same object each time; the
+     * default builds a new CSRGraph on every call.
+     */
+    default IndexedGraph transpose() {
+        return CSRGraph.transposeOf(this);
+    }
+
+    /**
+     * Print a report of the graph's statistics, including number of nodes, number of edges, and average degree.
+     */
+    default void report() {
+        System.out.println("Graph has: ");
+        System.out.println(numNodes() + " nodes.");
+        System.out.println(numEdges() + " edges.");
+        System.out.println("Average degree " +
+                ((double) numEdges()) / ((double) numNodes()));
+    }
+}
@@ -0,0 +1,164 @@
+package graph;
+
+import java.util.NoSuchElementException;
+
+/** A binary min-heap over the int items 0 .. capacity-1 with double priorities and a real decreaseKey. Items and
+ * priorities live in primitive arrays that are allocated once, so adding, polling and decreasing keys never allocate.
+ * Each item's heap position is kept in pos; an item is in the heap exactly when heap[pos[item]] == item for a
+ * position below size, so clear() is O(1) and stale positions from earlier uses are never mistaken for live ones. */
+public class IndexedHeap {
+
+    private final int[] heap; // heap[i] is the item at heap position i
+    private final int[] pos; // pos[item] is the heap position of item, if it is in the heap
+    private final double[] keys; // keys[item] is the priority of item, if it is in the heap
+    private int size;
+
+    /**
+     * Constructor: create an empty heap that can hold the items 0 .. capacity-1.
+     */
+    public IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        keys = new double[capacity];
+    }
+
+    /**
+     * Return the number of items in the heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return true if the heap has no items.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all items from the heap in constant time.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Return true if item is in the heap.
+     */
+    public boolean contains(int item) {
+        int p = pos[item];
+        return p < size && heap[p] == item;
+    }
+
+    /**
+     * Return the priority of item. Precondition: item is in the heap.
+     */
+    public double key(int item) {
+        return keys[item];
+    }
+
+    /**
+     * Add item with the given priority. Precondition: item is not in the heap.
+     */
+    public void add(int item, double key) {
+        heap[size] = item;
+        pos[item] = size;
+        keys[item] = key;
+        size++;
+        bubbleUp(size - 1);
+    }
+
+    /**
+     * Lower the priority of item to key. Precondition: item is in the heap and key <= key(item).
+     */
+    public void decreaseKey(int item, double key) {
+        keys[item] = key;
+        bubbleUp(pos[item]);
+    }
+
+    /**
+     * Add item with the given priority if it is not in the heap; otherwise lower its priority to key if that is
+     * smaller than its current priority.
+     */
+    public void addOrDecrease(int item, double key) {
+        if (!contains(item)) {
+            add(item, key);
+        } else if (key < keys[item]) {
+            decreaseKey(item, key);
+        }
+    }
+
+    /**
+     * Return the item with the smallest priority without removing it.
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException("heap is empty");
+        }
+        return heap[0];
+    }
+
+    /**
+     * Return the smallest priority in the heap. Precondition: the heap is not empty.
+     */
+    public double peekKey() {
+        return keys[peek()];
+    }
+
+    /**
+     * Remove and return the item with the smallest priority.
+     */
+    public int poll() {
+        int top = peek();
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            bubbleDown(0);
+        }
+        return top;
+    }
+
+    /* Move the item at heap position i up until its parent's priority is no larger. */
+    private void bubbleUp(int i) {
+        int item = heap[i];
+        double key = keys[item];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) {
+                break;
+            }
+            heap[i] = p;
+            pos[p] = i;
+            i = parent;
+        }
+        heap[i] = item;
+        pos[item] = i;
+    }
+
+    /* Move the item at heap position i down until neither child has a smaller priority. */
+    private void bubbleDown(int i) {
+        int item = heap[i];
+        double key = keys[item];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            int c = heap[child];
+            if (keys[c] >= key) {
+                break;
+            }
+            heap[i] = c;
+            pos[c] = i;
+            i = child;
+        }
+        heap[i] = item;
+        pos[item] = i;
+    }
+}
@@ -0,0 +1,298 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/** Yen's k shortest loopless paths from an origin to a destination over an IndexedGraph, for alternates and
+ * disruption planning. Each path after the first is found by spur searches: for every node of the previous path, a
+ * point-to-point Dijkstra search from that node to the destination that may not use the nodes of the path's root
+ * (the part before the spur node) or the edges out of the spur node taken by earlier paths with the same root. The
+ * shortest candidate not yet returned is the next path. As in Lawler's refinement, spur searches start at the node
+ * where the previous path left the path it was derived from, since every earlier spur node was searched already.
+ * Paths are enumerated lazily: paths(origin, destination) returns an iterator that runs the spur searches for a path
+ * only when it is asked for, so a caller who stops after 3 paths does not pay for 50.
+ * Every spur search runs in the same SearchWorkspace, which resets in O(1), and exclusions are bits in a node mask and
+ * an edge mask that the search tests, set before each spur search and cleared bit by bit after it; the graph itself is
+ * never modified. An engine is not thread-safe; its iterators may be interleaved on one thread.
+ * Sample usage:
+ *   KShortestPaths ksp = new KShortestPaths(graph.compile());
+ *   List<PathResult> alternates = ksp.topK(g.indexOf("YUL"), g.indexOf("YVR"), 3);
+ *   Iterator<PathResult> it = ksp.paths(origin, destination); // as many as needed
+ *   */
+public class KShortestPaths {
+
+    private final IndexedGraph graph;
+    private final SearchWorkspace ws;
+
+    private final BitSet bannedNodes; // nodes the current spur search may not visit
+    private final BitSet bannedEdges; // edges the current spur search may not use
+    private int[] banned = new int[16]; // the set bits of both masks, nodes as ~v and edges as e, to clear them
+    private int numBanned;
+
+    /**
+     * Constructor: create an engine for g with its own workspace.
+     */
+    public KShortestPaths(IndexedGraph g) {
+        this(g, new SearchWorkspace(g.numNodes()));
+    }
+
+    /**
+     * Constructor: create an engine for g that runs its spur searches in ws, for example one lent by a pool.
+     * Precondition: ws.capacity() >= g.numNodes(), and ws is not used by any other engine at the same time.
+     */
+    public KShortestPaths(IndexedGraph g, SearchWorkspace ws) {
+        if (ws.capacity() < g.numNodes()) {
+            throw new IllegalArgumentException("workspace for " + ws.capacity()
+                    + " nodes is too small for a graph with " + g.numNodes() + " nodes");
+        }
+        graph = g;
+        this.ws = ws;
+        bannedNodes = new BitSet(g.numNodes());
+        bannedEdges = new BitSet(g.numEdges());
+    }
+
+    /**
+     * Return the graph this engine searches.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return an iterator over the loopless paths from origin to destination in increasing order of length. Each
+     * result's getSettled() is the number of nodes the searches that produced it settled. If destination is
+     * unreachable the iterator is empty; if origin == destination it returns the one-node path only.
+     * Precondition: both nodes are in the graph.
+     */
+    public Iterator<PathResult> paths(int origin, int destination) {
+        return new PathIterator(origin, destination);
+    }
+
+    /**
+     * Return the k shortest loopless paths from origin to destination, in increasing order of length, or all of them
+     * if there are fewer than k. Precondition: both nodes are in the graph and k >= 0.
+     */
+    public List<PathResult> topK(int origin, int destination, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        List<PathResult> results = new ArrayList<PathResult>(Math.min(k, 16));
+        Iterator<PathResult> it = paths(origin, destination);
+        while (results.size() < k && it.hasNext()) {
+            results.add(it.next());
+        }
+        return results;
+    }
+
+    /* Run Dijkstra's algorithm from source until destination is settled, skipping banned nodes and edges. Returns the
+     * number of nodes settled; ws then holds the path to destination, if there is one. */
+    private int search(int source, int destination) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long relaxed = 0;
+        ws.reset();
+        IndexedHeap heap = ws.heap();
+        ws.set(source, 0, -1);
+        heap.add(source, 0);
+        int settled = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            if (u == destination) {
+                break;
+            }
+            double du = ws.dist(u);
+            for (int e = graph.edgeBegin(u), end = graph.edgeEnd(u); e < end; e++) {
+                int v = graph.target(e);
+                if (bannedEdges.get(e) || bannedNodes.get(v)) {
+                    continue;
+                }
+                if (Metrics.ENABLED) {
+                    relaxed++;
+                }
+                double dv = du + graph.weight(e);
+                if (dv < ws.dist(v)) {
+                    ws.set(v, dv, u);
+                    heap.addOrDecrease(v, dv);
+                }
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.recordSearch(System.nanoTime() - start, settled, relaxed, settled + heap.size(), settled);
+        }
+        return settled;
+    }
+
+    private void banNode(int v) {
+        if (!bannedNodes.get(v)) {
+            bannedNodes.set(v);
+            remember(~v);
+        }
+    }
+
+    /* Ban every edge from u to v. */
+    private void banEdges(int u, int v) {
+        for (int e = graph.edgeBegin(u); e < graph.edgeEnd(u); e++) {
+            if (graph.target(e) == v && !bannedEdges.get(e)) {
+                bannedEdges.set(e);
+                remember(e);
+            }
+        }
+    }
+
+    private void remember(int bit) {
+        if (numBanned == banned.length) {
+            banned = Arrays.copyOf(banned, 2 * numBanned);
+        }
+        banned[numBanned++] = bit;
+    }
+
+    /* Clear every bit set since the last call, in time proportional to their number. */
+    private void clearBans() {
+        for (int i = 0; i < numBanned; i++) {
+            if (banned[i] < 0) {
+                bannedNodes.clear(~banned[i]);
+            } else {
+                bannedEdges.clear(banned[i]);
+            }
+        }
+        numBanned = 0;
+    }
+
+    /** A loopless path found by a spur search, with the prefix sums of its edge weights. */
+    private static final class Candidate implements Comparable<Candidate> {
+        final int[] path;
+        final double[] prefix; // prefix[i] is the length of path[0 .. i]
+        final int deviation; // the index of the spur node at which this path left the path it came from
+
+        Candidate(int[] path, double[] prefix, int deviation) {
+            this.path = path;
+            this.prefix = prefix;
+            this.deviation = deviation;
+        }
+
+        double length() {
+            return prefix[prefix.length - 1];
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int c = Double.compare(length(), other.length());
+            return c != 0 ? c : Integer.compare(path.length, other.path.length);
+        }
+
+        @Override
+        public boolean equals(Object ob) {
+            return ob instanceof Candidate && Arrays.equals(path, ((Candidate) ob).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(path);
+        }
+    }
+
+    /** Yen's algorithm, one path per call to next. The spur searches of a returned path run only when the path after
+     * it is asked for. */
+    private final class PathIterator implements Iterator<PathResult> {
+        private final int origin;
+        private final int destination;
+        private final List<Candidate> accepted = new ArrayList<Candidate>(); // paths returned so far
+        private final PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>();
+        private final HashSet<Candidate> seen = new HashSet<Candidate>(); // every path accepted or queued
+        private boolean started;
+        private Candidate pending; // the last path returned, if its spur searches have not run yet
+        private int settled; // nodes settled since the previous path was returned
+
+        PathIterator(int origin, int destination) {
+            this.origin = origin;
+            this.destination = destination;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!started) {
+                started = true;
+                settled += search(origin, destination);
+                if (ws.dist(destination) != Double.POSITIVE_INFINITY) {
+                    offer(null, 0);
+                }
+            } else if (pending != null) {
+                spurFrom(pending);
+                pending = null;
+            }
+            return !candidates.isEmpty();
+        }
+
+        @Override
+        public PathResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Candidate next = candidates.poll();
+            accepted.add(next);
+            pending = next;
+            PathResult result = new PathResult(graph, next.path, next.length(), settled);
+            settled = 0;
+            return result;
+        }
+
+        /* Run the spur searches of an accepted path, queueing every new path they find. */
+        private void spurFrom(Candidate p) {
+            for (int i = p.deviation; i + 1 < p.path.length; i++) {
+                for (int j = 0; j < i; j++) {
+                    banNode(p.path[j]);
+                }
+                for (Candidate q : accepted) {
+                    if (q.path.length > i + 1 && samePrefix(q.path, p.path, i)) {
+                        banEdges(q.path[i], q.path[i + 1]);
+                    }
+                }
+                settled += search(p.path[i], destination);
+                clearBans();
+                if (ws.dist(destination) != Double.POSITIVE_INFINITY) {
+                    offer(p, i);
+                }
+            }
+        }
+
+        /* Queue the path made of p's first i nodes followed by the path from p.path[i] to the destination in ws, or
+         * the path to the destination in ws alone if p is null. */
+        private void offer(Candidate p, int i) {
+            int spurLength = 1;
+            for (int v = destination; ws.prev(v) != -1; v = ws.prev(v)) {
+                spurLength++;
+            }
+            int[] path = new int[i + spurLength];
+            double[] prefix = new double[path.length];
+            if (p != null) {
+                System.arraycopy(p.path, 0, path, 0, i);
+                System.arraycopy(p.prefix, 0, prefix, 0, i + 1);
+            }
+            double root = prefix[i];
+            for (int v = destination, k = path.length - 1; k >= i; v = ws.prev(v), k--) {
+                path[k] = v;
+                prefix[k] = root + ws.dist(v);
+            }
+            Candidate c = new Candidate(path, prefix, i);
+            if (seen.add(c)) {
+                candidates.add(c);
+            }
+        }
+    }
+
+    /* Return true if a and b agree on their nodes 0 .. i. */
+    private static boolean samePrefix(int[] a, int[] b, int i) {
+        for (int j = 0; j <= i; j++) {
+            if (a[j] != b[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,235 @@
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Landmark lower bounds for ALT search (A*, Landmarks, Triangle inequality). A small set of landmark nodes is chosen
+ * and the shortest distances from every landmark to every node, and from every node to every landmark, are
+ * precomputed. By the triangle inequality, for any landmark L
+ *     d(v, t) >= d(L, t) - d(L, v)   and   d(v, t) >= d(v, L) - d(t, L),
+ * so the largest of these differences is an admissible and consistent bound that AStar can use for any destination.
+ * Landmarks are chosen by farthest-point selection: each new landmark is the node farthest from the ones already
+ * chosen, which spreads them around the edge of the network where they give the tightest bounds.
+ * Building takes two full shortest path computations per landmark, so tables should be built once per dataset and
+ * saved next to the graph with write; loadOrBuild does this automatically.
+ * Sample usage:
+ *   Landmarks alt = Landmarks.loadOrBuild(g, graphFile, 16);
+ *   PathResult r = new AStar(g).query(origin, destination, alt);
+ *   */
+public class Landmarks implements LowerBound {
+
+    static final int MAGIC = 0x544C4147; // written big-endian by DataOutputStream, so the file starts with "TLAG"
+    static final int VERSION = 1;
+
+    private final int[] landmarks;
+    private final double[] from; // from[v * k + i] is the distance from landmark i to node v
+    private final double[] to; // to[v * k + i] is the distance from node v to landmark i
+
+    /* Constructor: wrap precomputed tables. */
+    private Landmarks(int[] landmarks, double[] from, double[] to) {
+        this.landmarks = landmarks;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Choose k landmarks of g by farthest-point selection and precompute their distance tables. If g has fewer than k
+     * nodes, every node becomes a landmark.
+     */
+    public static Landmarks build(IndexedGraph g, int k) {
+        int n = g.numNodes();
+        k = Math.min(k, n);
+        int[] chosen = new int[k];
+        double[] from = new double[n * k];
+        double[] to = new double[n * k];
+        Dijkstra forward = new Dijkstra(g);
+        Dijkstra backward = new Dijkstra(g.transpose());
+
+        // closest[v] is the smallest distance between v and any chosen landmark, in either direction
+        double[] closest = new double[n];
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+        int next = highestDegreeNode(g);
+        for (int i = 0; i < k; i++) {
+            chosen[i] = next;
+            forward.compute(next);
+            backward.compute(next);
+            for (int v = 0; v < n; v++) {
+                from[v * k + i] = forward.shortestPathLength(v);
+                to[v * k + i] = backward.shortestPathLength(v);
+                closest[v] = Math.min(closest[v], Math.min(from[v * k + i], to[v * k + i]));
+            }
+            // the next landmark is the node farthest from all chosen ones; unreached nodes count as farthest
+            next = -1;
+            for (int v = 0; v < n; v++) {
+                if (closest[v] > 0 && (next == -1 || closest[v] > closest[next])) {
+                    next = v;
+                }
+            }
+            if (next == -1) {
+                // every node is already a landmark
+                return new Landmarks(Arrays.copyOf(chosen, i + 1), compact(from, n, k, i + 1),
+                        compact(to, n, k, i + 1));
+            }
+        }
+        return new Landmarks(chosen, from, to);
+    }
+
+    /* Start from the node with the most out-edges, which in a flight network is a well-connected hub. */
+    private static int highestDegreeNode(IndexedGraph g) {
+        int best = 0;
+        for (int v = 1; v < g.numNodes(); v++) {
+            if (g.edgeEnd(v) - g.edgeBegin(v) > g.edgeEnd(best) - g.edgeBegin(best)) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /* Keep only the first used columns of a node-major table with k columns per node. */
+    private static double[] compact(double[] table, int n, int k, int used) {
+        double[] result = new double[n * used];
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(table, v * k, result, v * used, used);
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of landmarks.
+     */
+    public int size() {
+        return landmarks.length;
+    }
+
+    /**
+     * Return the node id of landmark i.
+     */
+    public int landmark(int i) {
+        return landmarks[i];
+    }
+
+    /**
+     * Return the largest landmark lower bound on the distance from v to target. Returns Double.POSITIVE_INFINITY if
+     * the tables prove that v cannot reach target.
+     */
+    @Override
+    public double estimate(int v, int target) {
+        int k = landmarks.length;
+        int vi = v * k;
+        int ti = target * k;
+        double best = 0;
+        for (int i = 0; i < k; i++) {
+            double lt = from[ti + i];
+            double lv = from[vi + i];
+            double vl = to[vi + i];
+            double tl = to[ti + i];
+            if (lt != Double.POSITIVE_INFINITY && lv != Double.POSITIVE_INFINITY) {
+                best = Math.max(best, lt - lv);
+            } else if (lt == Double.POSITIVE_INFINITY && lv != Double.POSITIVE_INFINITY) {
+                return Double.POSITIVE_INFINITY; // L reaches v but not target, so v cannot reach target
+            }
+            if (vl != Double.POSITIVE_INFINITY && tl != Double.POSITIVE_INFINITY) {
+                best = Math.max(best, vl - tl);
+            } else if (vl == Double.POSITIVE_INFINITY && tl != Double.POSITIVE_INFINITY) {
+                return Double.POSITIVE_INFINITY; // target reaches L but v does not, so v cannot reach target
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Save the landmark tables to f. The file records the graph's node and edge counts so that read can reject
+     * tables built for a different graph.
+     */
+    public void write(File f, IndexedGraph g) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(g.numNodes());
+            out.writeInt(g.numEdges());
+            out.writeLong(CSRGraph.fingerprint(g));
+            out.writeInt(landmarks.length);
+            for (int l : landmarks) {
+                out.writeInt(l);
+            }
+            for (double d : from) {
+                out.writeDouble(d);
+            }
+            for (double d : to) {
+                out.writeDouble(d);
+            }
+        }
+    }
+
+    /**
+     * Load landmark tables for g from f. Throws IOException if f is not a landmark file or was built for a graph
+     * with different nodes or edges.
+     */
+    public static Landmarks read(File f, IndexedGraph g) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(f + " is not a landmark file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported landmark file version " + version + " in " + f);
+            }
+            int n = in.readInt();
+            int m = in.readInt();
+            long fingerprint = in.readLong();
+            if (n != g.numNodes() || m != g.numEdges() || fingerprint != CSRGraph.fingerprint(g)) {
+                throw new IOException("landmarks in " + f + " were built for a different graph");
+            }
+            int k = in.readInt();
+            int[] landmarks = new int[k];
+            for (int i = 0; i < k; i++) {
+                landmarks[i] = in.readInt();
+            }
+            double[] from = new double[n * k];
+            double[] to = new double[n * k];
+            for (int i = 0; i < from.length; i++) {
+                from[i] = in.readDouble();
+            }
+            for (int i = 0; i < to.length; i++) {
+                to[i] = in.readDouble();
+            }
+            return new Landmarks(landmarks, from, to);
+        }
+    }
+
+    /**
+     * Return the file that landmark tables for the graph stored in graphFile are kept in: graphFile's name with
+     * ".alt" appended, in the same directory.
+     */
+    public static File fileFor(File graphFile) {
+        return new File(graphFile.getPath() + ".alt");
+    }
+
+    /**
+     * Load the landmark tables saved next to graphFile if they exist and match g; otherwise build k landmarks and
+     * save them there for next time.
+     */
+    public static Landmarks loadOrBuild(IndexedGraph g, File graphFile, int k) throws IOException {
+        File f = fileFor(graphFile);
+        if (f.exists()) {
+            try {
+                Landmarks saved = read(f, g);
+                if (saved.size() == Math.min(k, g.numNodes())) {
+                    return saved;
+                }
+            } catch (IOException e) {
+                // stale or corrupt tables: rebuild them below
+            }
+        }
+        Landmarks built = build(g, k);
+        built.write(f, g);
+        return built;
+    }
+}
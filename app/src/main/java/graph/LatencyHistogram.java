@@ -0,0 +1,127 @@
+package graph;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A histogram of non-negative long values, such as latencies in nanoseconds, with HDR-style log-linear buckets:
+ * values below 64 are counted exactly, and above that every power-of-two range is split into 32 equal buckets, so a
+ * recorded value is known to within about 3% over the whole long range, in a fixed 1888 counters. Recording is
+ * lock-free (one atomic increment plus a LongAdder and a max update), so any number of threads can record into one
+ * histogram while another reads it; reads taken during recording are approximate but never inconsistent enough to
+ * matter for monitoring.
+ * Example usage:
+ *     LatencyHistogram h = new LatencyHistogram();
+ *     h.record(System.nanoTime() - start);
+ *     long p99 = h.percentile(0.99); */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one value. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(value));
+        total.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Return the number of values recorded.
+     */
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * Return the largest value recorded, or 0 if there is none.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Return the mean of the values recorded, or 0 if there is none.
+     */
+    public double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Return the value below which a fraction q of the recorded values fall, 0 <= q <= 1, to within the bucket
+     * precision, or 0 if nothing has been recorded. The result never exceeds max().
+     */
+    public long percentile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1: " + q);
+        }
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget every recorded value.
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Return count, mean and the usual percentiles on one line, with values divided by unit (e.g. 1000 to show
+     * nanoseconds as microseconds).
+     */
+    public String summary(double unit) {
+        return String.format("count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p999=%.1f max=%.1f", count(),
+                mean() / unit, percentile(0.5) / unit, percentile(0.9) / unit, percentile(0.99) / unit,
+                percentile(0.999) / unit, max() / unit);
+    }
+
+    /* Return the bucket of value: the value itself below 2 * SUB_BUCKETS, and otherwise SUB_BUCKETS buckets per
+     * power of two. */
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /* Return the largest value that falls in bucket i. */
+    static long upperBound(int i) {
+        if (i < 2 * SUB_BUCKETS) {
+            return i;
+        }
+        int shift = i / SUB_BUCKETS - 1;
+        long sub = i - (long) shift * SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,125 @@
+package graph;
+
+import java.util.Arrays;
+
+/** An open-addressing hash map from long keys to int values, stored in primitive arrays so that lookups and updates
+ * never box or allocate. Used where the parsers and engines key data by packed pairs of ints, such as an
+ * (orig, dest) edge. */
+final class LongIntHashMap {
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+
+    /**
+     * Constructor: create an empty map with room for about expectedSize entries before it grows.
+     */
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    /**
+     * Return the number of entries in the map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the value for key, or missing if key is not in the map.
+     */
+    int get(long key, int missing) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Associate value with key, replacing any previous value.
+     */
+    void put(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (2 * size > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Add delta to the value for key, treating a missing key as 0, and return the new value.
+     */
+    int add(long key, int delta) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        put(key, delta);
+        return delta;
+    }
+
+    /**
+     * Remove every entry from the map.
+     */
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Pack the two ints a and b into one long key.
+     */
+    static long pair(int a, int b) {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /* Double the capacity and reinsert every entry. */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[2 * oldKeys.length];
+        values = new int[keys.length];
+        used = new boolean[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slot(oldKeys[i], mask);
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package graph;
+
+/** A lower bound on shortest path lengths, used by AStar to steer its search toward the destination. For the search
+ * to return shortest paths, the bound must be admissible: estimate(v, target) may never exceed the true length of the
+ * shortest path from v to target. */
+public interface LowerBound {
+
+    /**
+     * Return a lower bound on the length of the shortest path from node v to node target.
+     */
+    double estimate(int v, int target);
+
+    /** The trivial bound, which turns AStar into Dijkstra's algorithm. */
+    LowerBound ZERO = (v, target) -> 0;
+}
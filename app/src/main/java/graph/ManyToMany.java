@@ -0,0 +1,257 @@
+package graph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Many-to-many shortest path lengths: the DistanceMatrix from every node of a source list to every node of a target
+ * list, computed with one single-source search per source. The searches run in parallel on a fork-join pool; each
+ * worker owns one Dijkstra engine (and so one SearchWorkspace) and takes the next unclaimed source until none are
+ * left, so threads that draw short searches pick up more of them. Each finished row is reported to an optional
+ * Progress listener, and a run can be cancelled from another thread, either through the Cancellation passed to
+ * compute or by calling cancel(), which stops every run in progress.
+ * Sample usage:
+ *   ManyToMany m = new ManyToMany(graph.compile());
+ *   DistanceMatrix all = m.compute(m.allNodes(), m.allNodes(), null);
+ *   double d = all.get(i, j);
+ *   */
+public class ManyToMany {
+
+    /** Receives progress reports from a running computation. */
+    public interface Progress {
+        /**
+         * Called each time a row is finished, with the number of rows finished so far and the total number of rows.
+         * Rows finish on several threads, so this may be called concurrently and the counts may arrive out of order.
+         */
+        void rowsDone(int done, int total);
+    }
+
+    /** The cancellation flag of one computation. Create it before the computation starts and pass it to compute; a
+     * cancel() that comes before the computation starts makes it throw CancellationException without searching. */
+    public static final class Cancellation {
+        private volatile boolean cancelled;
+
+        /**
+         * Stop the computation this flag was passed to.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Return true if cancel() has been called.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final IndexedGraph graph;
+    private final int threads;
+
+    // the flags of the computations in progress, for cancel()
+    private final Set<Cancellation> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor: create an engine for g that uses one thread per available processor.
+     * Precondition: g is not modified while the engine is in use.
+     */
+    public ManyToMany(IndexedGraph g) {
+        this(g, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor: create an engine for g that uses the given number of threads.
+     * Precondition: g is not modified while the engine is in use.
+     */
+    public ManyToMany(IndexedGraph g, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        graph = g;
+        this.threads = threads;
+    }
+
+    /**
+     * Return the graph this engine searches.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return the ids of all nodes of the graph, 0 .. numNodes()-1.
+     */
+    public int[] allNodes() {
+        int[] all = new int[graph.numNodes()];
+        for (int v = 0; v < all.length; v++) {
+            all[v] = v;
+        }
+        return all;
+    }
+
+    /**
+     * Compute the distance matrix from sources to targets. The matrix is kept on the heap if it fits there with room
+     * to spare, and otherwise in a temporary file that is deleted when the JVM exits. progress may be null.
+     * Throws CancellationException if cancel() is called before the computation finishes.
+     * Precondition: all nodes of sources and targets are in the graph.
+     */
+    public DistanceMatrix compute(int[] sources, int[] targets, Progress progress) {
+        return compute(sources, targets, progress, new Cancellation());
+    }
+
+    /**
+     * Same as compute(sources, targets, progress), but stopped by cancellation as well as by cancel().
+     */
+    public DistanceMatrix compute(int[] sources, int[] targets, Progress progress, Cancellation cancellation) {
+        if (DistanceMatrix.fitsOnHeap(sources.length, targets.length)) {
+            return fill(DistanceMatrix.onHeap(sources, targets), progress, cancellation);
+        }
+        try {
+            File f = File.createTempFile("distances", ".matrix");
+            f.deleteOnExit();
+            return compute(sources, targets, f, progress, cancellation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compute the distance matrix from sources to targets into the memory-mapped file f, which is created or
+     * truncated, and write it through to the file. progress may be null.
+     * Throws CancellationException if cancel() is called before the computation finishes.
+     * Precondition: all nodes of sources and targets are in the graph.
+     */
+    public DistanceMatrix compute(int[] sources, int[] targets, File f, Progress progress) throws IOException {
+        return compute(sources, targets, f, progress, new Cancellation());
+    }
+
+    /**
+     * Same as compute(sources, targets, f, progress), but stopped by cancellation as well as by cancel().
+     */
+    public DistanceMatrix compute(int[] sources, int[] targets, File f, Progress progress, Cancellation cancellation)
+            throws IOException {
+        DistanceMatrix matrix = fill(DistanceMatrix.inFile(sources, targets, f), progress, cancellation);
+        matrix.force();
+        return matrix;
+    }
+
+    /**
+     * Stop every computation in progress: workers finish the row they are on and compute throws
+     * CancellationException. Has no effect on computations started afterwards; to cancel a computation that may not
+     * have started yet, pass it a Cancellation and cancel that.
+     */
+    public void cancel() {
+        for (Cancellation c : running) {
+            c.cancel();
+        }
+    }
+
+    /* Fill every row of matrix, one worker per thread, until cancellation is cancelled. */
+    private DistanceMatrix fill(DistanceMatrix matrix, Progress progress, Cancellation cancellation) {
+        int rows = matrix.numSources();
+        AtomicInteger next = new AtomicInteger(); // the next row no worker has claimed
+        AtomicInteger done = new AtomicInteger(); // the number of finished rows
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < Math.min(threads, Math.max(1, rows)); t++) {
+            workers.add(() -> {
+                Dijkstra d = new Dijkstra(graph);
+                for (int i = next.getAndIncrement(); i < rows; i = next.getAndIncrement()) {
+                    if (cancellation.isCancelled()) {
+                        break;
+                    }
+                    d.compute(matrix.source(i));
+                    for (int j = 0; j < matrix.numTargets(); j++) {
+                        matrix.set(i, j, d.shortestPathLength(matrix.target(j)));
+                    }
+                    int finished = done.incrementAndGet();
+                    if (progress != null) {
+                        progress.rowsDone(finished, rows);
+                    }
+                }
+                return null;
+            });
+        }
+
+        running.add(cancellation);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Future<Void> worker : pool.invokeAll(workers)) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            cancellation.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while computing distances", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            running.remove(cancellation);
+            pool.shutdown();
+        }
+        if (done.get() < rows) {
+            throw new CancellationException("distance matrix cancelled after " + done.get() + " of " + rows + " rows");
+        }
+        return matrix;
+    }
+
+    /** Main method: compute the distances between every pair of nodes of a graph and write them as CSV, one row per
+     *  origin and one column per destination, with an empty cell where there is no path. Progress is printed as
+     *  each tenth of the rows is finished.
+     *  Usage: ManyToMany fileType inputFile outputFile
+     *  where fileType is any type accepted by ShortestPaths.parseGraph. */
+    public static void main(String[] args) {
+        IndexedGraph graph;
+        try {
+            graph = ShortestPaths.loadIndexedGraph(args[0], args[1]);
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open file " + args[1]);
+            return;
+        }
+        graph.report();
+        ManyToMany m = new ManyToMany(graph);
+        int[] all = m.allNodes();
+        DistanceMatrix matrix = m.compute(all, all, (done, total) -> {
+            if (done == total || done % Math.max(1, total / 10) == 0) {
+                System.out.println(done + " of " + total + " origins done");
+            }
+        });
+
+        try (PrintWriter out = new PrintWriter(args[2])) {
+            StringBuilder line = new StringBuilder("origin");
+            for (int j = 0; j < matrix.numTargets(); j++) {
+                line.append(',').append(graph.idOf(matrix.target(j)));
+            }
+            out.println(line);
+            for (int i = 0; i < matrix.numSources(); i++) {
+                line.setLength(0);
+                line.append(graph.idOf(matrix.source(i)));
+                for (int j = 0; j < matrix.numTargets(); j++) {
+                    line.append(',');
+                    double d = matrix.get(i, j);
+                    if (d != Double.POSITIVE_INFINITY) {
+                        line.append(d);
+                    }
+                }
+                out.println(line);
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not write file " + args[2]);
+        }
+    }
+}
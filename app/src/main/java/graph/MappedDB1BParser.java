@@ -0,0 +1,166 @@
+package graph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Parser for the same DB1B CSV files as DB1BParser that reads the file through memory-mapped FileChannel windows
+ * instead of a Scanner. The origin, dest and distance column indices are resolved once from the header; after that
+ * each row is scanned byte by byte, only those three fields are looked at, the distance is parsed without building a
+ * String, and airport codes are looked up in the Graph's node dictionary straight from the mapped bytes, so a row
+ * allocates nothing unless it introduces a new airport. The resulting Graph is the same as DB1BParser's, with nodes
+ * created in the same order.
+ * Created with aggregation on, the parser also reads the Passengers, Coupons, TkCarrier and OpCarrier columns and
+ * totals every coupon of each edge into an EdgeAggregates, instead of keeping only the last coupon's distance.
+ * parseOffHeap() reads the same file into an OffHeapGraph instead, for inputs whose edges would not fit on the heap.
+ * Example usage:
+ *     MappedDB1BParser p = new MappedDB1BParser();
+ *     p.open(file);
+ *     Graph g = p.parse() */
+public class MappedDB1BParser extends GraphParser {
+
+    // largest window mapped at once; windows always end on a line boundary
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    // extra columns read when aggregating, in the order of the ranges in extraRanges
+    private static final String[] AGGREGATE_COLUMNS = {"passengers", "coupons", "tkcarrier", "opcarrier"};
+
+    private final boolean aggregate;
+
+    private FileChannel channel;
+    private long dataStart; // file position of the first line after the header
+    private EdgeRowScanner scanner;
+    private final int[] extraRanges = new int[2 * AGGREGATE_COLUMNS.length];
+    private EdgeAggregates aggregates;
+
+    private Graph graph;
+
+    /**
+     * Constructor: create a parser that keeps only the graph.
+     */
+    public MappedDB1BParser() {
+        this(false);
+    }
+
+    /**
+     * Constructor: create a parser that, if aggregate is true, also totals the coupons of each edge (see
+     * getAggregates).
+     */
+    public MappedDB1BParser(boolean aggregate) {
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * Open the given file, read its header line and prepare to parse it.
+     */
+    @Override
+    public void open(File f) throws FileNotFoundException {
+        channel = new RandomAccessFile(f, "r").getChannel();
+        try {
+            String header = FileChunks.firstLine(channel);
+            scanner = aggregate ? EdgeRowScanner.db1b(header, AGGREGATE_COLUMNS) : EdgeRowScanner.db1b(header);
+            dataStart = FileChunks.nextLineStart(channel, 0);
+        } catch (IOException e) {
+            FileChunks.closeAfter(channel, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            FileChunks.closeAfter(channel, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Parse an opened file and return a Graph representing the data in the file. Precondition: open() has been
+     * successfully called.
+     */
+    @Override
+    public Graph parse() {
+        graph = new Graph();
+        aggregates = aggregate ? new EdgeAggregates() : null;
+        try (FileChannel in = channel) {
+            long[] windows = FileChunks.split(in, dataStart, WINDOW_SIZE);
+            for (int w = 0; w + 1 < windows.length; w++) {
+                ByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, windows[w], windows[w + 1] - windows[w]);
+                if (aggregate) {
+                    scanner.scan(buf, this::addCoupon, extraRanges);
+                } else {
+                    scanner.scan(buf, this::addEdge);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return graph;
+    }
+
+    /**
+     * Parse an opened file straight into off-heap storage, without building a Graph on the heap, and return the
+     * result. Node v of the result is node v of the Graph parse() would return. The storage is direct memory if dir
+     * is null and memory-mapped temporary files in dir otherwise. Precondition: open() has been successfully called.
+     */
+    public OffHeapGraph parseOffHeap(File dir) {
+        OffHeapGraph.Builder builder = new OffHeapGraph.Builder(dir);
+        try (FileChannel in = channel) {
+            long[] windows = FileChunks.split(in, dataStart, WINDOW_SIZE);
+            for (int w = 0; w + 1 < windows.length; w++) {
+                ByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, windows[w], windows[w + 1] - windows[w]);
+                scanner.scan(buf, builder::edge);
+            }
+        } catch (IOException e) {
+            builder.free();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            builder.free();
+            throw e;
+        }
+        return builder.build();
+    }
+
+    /* Add the edge of one scanned row to the graph. */
+    private void addEdge(ByteBuffer buf, int origFrom, int origTo, int destFrom, int destTo, double distance) {
+        graph.addEdge(graph.indexOf(buf, origFrom, origTo), graph.indexOf(buf, destFrom, destTo), distance);
+    }
+
+    /* Add the edge of one scanned row to the graph and its coupon to the aggregates. */
+    private void addCoupon(ByteBuffer buf, int origFrom, int origTo, int destFrom, int destTo, double distance) {
+        int orig = graph.indexOf(buf, origFrom, origTo);
+        int dest = graph.indexOf(buf, destFrom, destTo);
+        graph.addEdge(orig, dest, distance);
+        double passengers = 0;
+        if (extraRanges[0] >= 0 && extraRanges[1] > extraRanges[0]) {
+            passengers = AsciiNumbers.parseDouble(buf, extraRanges[0], extraRanges[1]);
+        }
+        int coupons = 0;
+        if (extraRanges[2] >= 0 && extraRanges[3] > extraRanges[2]) {
+            coupons = (int) AsciiNumbers.parseDouble(buf, extraRanges[2], extraRanges[3]);
+        }
+        int e = aggregates.add(orig, dest, distance, passengers, coupons);
+        addCarrier(buf, e, extraRanges[4], extraRanges[5], false);
+        addCarrier(buf, e, extraRanges[6], extraRanges[7], true);
+    }
+
+    /* Record the carrier in bytes from to to of buf, with quotes removed, for edge e; nothing if the column is absent
+     * or empty. */
+    private void addCarrier(ByteBuffer buf, int e, int from, int to, boolean operating) {
+        while (from >= 0 && from < to && buf.get(from) == '"') {
+            from++;
+        }
+        while (from >= 0 && to > from && buf.get(to - 1) == '"') {
+            to--;
+        }
+        if (from >= 0 && from < to) {
+            aggregates.addCarrier(e, buf, from, to, operating);
+        }
+    }
+
+    /**
+     * Return the per-edge coupon totals of the last parse, or null if this parser was created without aggregation.
+     */
+    public EdgeAggregates getAggregates() {
+        return aggregates;
+    }
+}
@@ -0,0 +1,181 @@
+package graph;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Process-wide counters and latency histograms for parsing and shortest path searches. Parsers and engines keep
+ * their counts in local variables while they run and publish them here once per parse or search, into LongAdders and
+ * LatencyHistograms, so recording is lock-free and costs nothing per edge.
+ * Instrumentation is off unless the JVM is started with -Dgraph.metrics=true. ENABLED is a static final constant, so
+ * when it is false the JIT compiler removes every "if (Metrics.ENABLED)" block from the hot loops entirely.
+ * Counters (all cumulative since start or the last reset()):
+ *     parse.lines, parse.rejected, parse.bytes, parse.nanos   from BasicParser and DB1BParser
+ *     query.searches, query.settled, query.relaxed,
+ *     query.pushes, query.pops                                 from the search engines (see their compute or query)
+ * Histograms: parse.time (nanoseconds per parse) and query.time (nanoseconds per compute or query).
+ * Example usage:
+ *     java -Dgraph.metrics=true ...
+ *     long settled = Metrics.count(Metrics.QUERY_SETTLED);
+ *     long p99 = Metrics.histogram(Metrics.QUERY_TIME).percentile(0.99);
+ *     Metrics.startDump(System.err, 10000); */
+public final class Metrics {
+
+    /** Whether the parsers and engines record anything. Read once, from the graph.metrics system property. */
+    public static final boolean ENABLED = Boolean.getBoolean("graph.metrics");
+
+    public static final String PARSE_LINES = "parse.lines";
+    public static final String PARSE_REJECTED = "parse.rejected";
+    public static final String PARSE_BYTES = "parse.bytes";
+    public static final String PARSE_NANOS = "parse.nanos";
+    public static final String PARSE_TIME = "parse.time";
+
+    public static final String QUERY_SEARCHES = "query.searches";
+    public static final String QUERY_SETTLED = "query.settled";
+    public static final String QUERY_RELAXED = "query.relaxed";
+    public static final String QUERY_PUSHES = "query.pushes";
+    public static final String QUERY_POPS = "query.pops";
+    public static final String QUERY_TIME = "query.time";
+
+    private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> histograms =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+
+    // the counters the parsers and engines publish to, looked up once rather than by name on every publish
+    private static final LongAdder parseLines = counter(PARSE_LINES);
+    private static final LongAdder parseRejected = counter(PARSE_REJECTED);
+    private static final LongAdder parseBytes = counter(PARSE_BYTES);
+    private static final LongAdder parseNanos = counter(PARSE_NANOS);
+    private static final LatencyHistogram parseTime = histogram(PARSE_TIME);
+    private static final LongAdder querySearches = counter(QUERY_SEARCHES);
+    private static final LongAdder querySettled = counter(QUERY_SETTLED);
+    private static final LongAdder queryRelaxed = counter(QUERY_RELAXED);
+    private static final LongAdder queryPushes = counter(QUERY_PUSHES);
+    private static final LongAdder queryPops = counter(QUERY_POPS);
+    private static final LatencyHistogram queryTime = histogram(QUERY_TIME);
+
+    private static ScheduledExecutorService dumper; // null unless a periodic dump is running
+
+    private Metrics() {
+    }
+
+    /**
+     * Return the counter with the given name, creating it at 0 if it does not exist.
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Return the current value of the named counter, or 0 if it does not exist.
+     */
+    public static long count(String name) {
+        LongAdder c = counters.get(name);
+        return c == null ? 0 : c.sum();
+    }
+
+    /**
+     * Return the histogram with the given name, creating it empty if it does not exist.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Return a copy of every counter's current value, sorted by name.
+     */
+    public static Map<String, Long> counters() {
+        TreeMap<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> c : counters.entrySet()) {
+            values.put(c.getKey(), c.getValue().sum());
+        }
+        return values;
+    }
+
+    /**
+     * Return the number of lines parsed per second of parsing, over every parse so far, or 0 if nothing was parsed.
+     */
+    public static double parseLinesPerSecond() {
+        long nanos = parseNanos.sum();
+        return nanos == 0 ? 0 : parseLines.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * Set every counter to 0 and empty every histogram.
+     */
+    public static void reset() {
+        for (LongAdder c : counters.values()) {
+            c.reset();
+        }
+        for (LatencyHistogram h : histograms.values()) {
+            h.reset();
+        }
+    }
+
+    /**
+     * Print every counter and histogram to out, histograms in microseconds.
+     */
+    public static void report(PrintStream out) {
+        out.println("Metrics" + (ENABLED ? ":" : " (disabled; run with -Dgraph.metrics=true):"));
+        for (Map.Entry<String, Long> c : counters().entrySet()) {
+            out.println("  " + c.getKey() + " = " + c.getValue());
+        }
+        out.println(String.format("  parse.linesPerSecond = %.0f", parseLinesPerSecond()));
+        for (Map.Entry<String, LatencyHistogram> h : new TreeMap<String, LatencyHistogram>(histograms).entrySet()) {
+            out.println("  " + h.getKey() + " (us): " + h.getValue().summary(1000));
+        }
+    }
+
+    /**
+     * Start printing a report to out every periodMillis milliseconds on a daemon thread, replacing any dump started
+     * earlier.
+     */
+    public static synchronized void startDump(PrintStream out, long periodMillis) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> report(out), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic dump, if one is running.
+     */
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Publish the totals of one parse: lines read, lines rejected as malformed, bytes read, and the time it took.
+     */
+    static void recordParse(long lines, long rejected, long bytes, long nanos) {
+        parseLines.add(lines);
+        parseRejected.add(rejected);
+        parseBytes.add(bytes);
+        parseNanos.add(nanos);
+        parseTime.record(nanos);
+    }
+
+    /**
+     * Publish the totals of one search: nodes settled, edges relaxed, heap insertions and removals, and the time it
+     * took.
+     */
+    static void recordSearch(long nanos, long settled, long relaxed, long pushes, long pops) {
+        querySearches.increment();
+        querySettled.add(settled);
+        queryRelaxed.add(relaxed);
+        queryPushes.add(pushes);
+        queryPops.add(pops);
+        queryTime.record(nanos);
+    }
+}
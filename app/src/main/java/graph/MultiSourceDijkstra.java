@@ -0,0 +1,174 @@
+package graph;
+
+import java.util.Arrays;
+
+/** Shortest paths from a batch of k sources at once over an IndexedGraph, for the 16-64 hub origins of connectivity
+ * and reachability reports. Distances are stored node-major in one double[n * k], so the k distances of a node are
+ * contiguous: scanning an edge u -> v once relaxes all k sources with a straight loop over two adjacent runs of
+ * doubles, which the JIT compiler can turn into SIMD instructions, and each adjacency list is read once per scan
+ * instead of once per source. The search is label-correcting: a node is queued in an IndexedHeap keyed by the
+ * smallest of its distances lowered since it was last scanned, and scanning it relaxes every source, so a node may be
+ * scanned more than once, but far less often than k times on graphs where the sources' trees overlap, which is what
+ * makes a batch cheaper than k separate runs.
+ * The inner loop can instead use the incubating Vector API (see VectorRelax): pass vectorize = true, or run with
+ * -Dgraph.vector=true, together with --add-modules jdk.incubator.vector; without the module the scalar loop is used.
+ * Sample usage:
+ *   MultiSourceDijkstra m = new MultiSourceDijkstra(graph.compile());
+ *   m.compute(hubs);
+ *   double d = m.shortestPathLength(i, v); // from hubs[i] to v
+ *   ShortestPathTree t = m.tree(i);
+ *   */
+public class MultiSourceDijkstra {
+
+    private final IndexedGraph graph;
+    private final boolean vectorized;
+    private final IndexedHeap heap;
+
+    private int[] sources = new int[0];
+    private double[] dist = new double[0]; // dist[v * k + i] is the distance from sources[i] to v
+
+    /**
+     * Constructor: create an engine for g that uses the Vector API if the graph.vector system property is true.
+     */
+    public MultiSourceDijkstra(IndexedGraph g) {
+        this(g, Boolean.getBoolean("graph.vector"));
+    }
+
+    /**
+     * Constructor: create an engine for g that uses the Vector API if vectorize is true and the
+     * jdk.incubator.vector module is present.
+     */
+    public MultiSourceDijkstra(IndexedGraph g, boolean vectorize) {
+        graph = g;
+        heap = new IndexedHeap(g.numNodes());
+        vectorized = vectorize && vectorApiAvailable();
+    }
+
+    /* Return true if VectorRelax can be loaded. */
+    private static boolean vectorApiAvailable() {
+        try {
+            return VectorRelax.available();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Return the graph this engine searches.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return true if this engine relaxes with the Vector API.
+     */
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    /**
+     * Return the number of sources of the most recent call to compute.
+     */
+    public int numSources() {
+        return sources.length;
+    }
+
+    /**
+     * Return source i of the most recent call to compute.
+     */
+    public int source(int i) {
+        return sources[i];
+    }
+
+    /**
+     * Compute the shortest paths to all nodes from each of the given sources. Throws IllegalArgumentException if
+     * numNodes() * sources.length distances do not fit in one array. Precondition: every source is in the graph.
+     */
+    public void compute(int[] sources) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        long scanned = 0;
+        long relaxed = 0;
+        long pushes = 0;
+        int n = graph.numNodes();
+        int k = sources.length;
+        if ((long) n * k > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(k + " sources need too many distances for a graph with " + n
+                    + " nodes");
+        }
+        this.sources = sources.clone();
+        if (dist.length != n * k) {
+            dist = new double[n * k];
+        }
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        heap.clear();
+        for (int i = 0; i < k; i++) {
+            dist[sources[i] * k + i] = 0;
+            if (!heap.contains(sources[i])) {
+                heap.add(sources[i], 0);
+                pushes++;
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            scanned++;
+            int uo = u * k;
+            int end = graph.edgeEnd(u);
+            if (Metrics.ENABLED) {
+                relaxed += end - graph.edgeBegin(u);
+            }
+            for (int e = graph.edgeBegin(u); e < end; e++) {
+                int v = graph.target(e);
+                double w = graph.weight(e);
+                double lowered = vectorized ? VectorRelax.relax(dist, uo, v * k, k, w)
+                        : relaxScalar(dist, uo, v * k, k, w);
+                if (lowered != Double.POSITIVE_INFINITY) {
+                    if (Metrics.ENABLED && !heap.contains(v)) {
+                        pushes++;
+                    }
+                    heap.addOrDecrease(v, lowered);
+                }
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.recordSearch(System.nanoTime() - start, scanned, relaxed, pushes, scanned);
+        }
+    }
+
+    /* Lower dist[vo + s] to dist[uo + s] + w for every s < k, and return the smallest value that was lowered, or
+     * Double.POSITIVE_INFINITY if none was. The loop has no branches the JIT compiler cannot turn into selects. */
+    static double relaxScalar(double[] dist, int uo, int vo, int k, double w) {
+        double lowered = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < k; s++) {
+            double nd = dist[uo + s] + w;
+            double dv = dist[vo + s];
+            boolean lower = nd < dv;
+            dist[vo + s] = lower ? nd : dv;
+            lowered = Math.min(lowered, lower ? nd : Double.POSITIVE_INFINITY);
+        }
+        return lowered;
+    }
+
+    /**
+     * Returns the length of the shortest path from source(i) to destination, or Double.POSITIVE_INFINITY if no path
+     * exists. Precondition: compute has been called.
+     */
+    public double shortestPathLength(int i, int destination) {
+        return dist[destination * sources.length + i];
+    }
+
+    /**
+     * Return the shortest path tree from source(i), which stays valid after this engine runs other searches.
+     * Predecessors are rebuilt from the distances with ShortestPathTree.fromDistances. Precondition: compute has been
+     * called.
+     */
+    public ShortestPathTree tree(int i) {
+        int n = graph.numNodes();
+        double[] d = new double[n];
+        for (int v = 0; v < n; v++) {
+            d[v] = shortestPathLength(i, v);
+        }
+        return ShortestPathTree.fromDistances(graph, sources[i], d);
+    }
+}
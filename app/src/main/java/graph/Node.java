@@ -14,16 +14,31 @@ public class Node {
 
     private final String id; // unique identifier for this node
 
+    private final int index; // dense index assigned by the owning Graph, or -1 if not created by a Graph
+
     // for each node v that has an edge from this to v, neighbors maps
     //  v -> the weight of the edge
     private HashMap<Node, Double> neighbors;
 
+    // for each node u that has an edge from u to this, inNeighbors maps
+    //  u -> the weight of the edge. Maintained by Graph.addEdge.
+    private HashMap<Node, Double> inNeighbors;
+
     /**
      * Constructor: create node with the given id
      */
     public Node(String id) {
+        this(id, -1);
+    }
+
+    /**
+     * Constructor: create node with the given id and dense index. Used by Graph.getNode.
+     */
+    Node(String id, int index) {
         this.id = id;
+        this.index = index;
         neighbors = new HashMap<Node, Double>();
+        inNeighbors = new HashMap<Node, Double>();
     }
 
     /**
@@ -33,6 +48,14 @@ public class Node {
         return id;
     }
 
+    /**
+     * Return the dense index of this node in its Graph: nodes are numbered 0, 1, 2, ... in order of creation. Returns -1
+     * if this node was not created through Graph.getNode.
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Return the map that associates each neighbor with the weight of the edge to that neighbor.
      */
@@ -40,6 +63,14 @@ public class Node {
         return neighbors;
     }
 
+    /**
+     * Return the map that associates each node with an edge to this node with the weight of that edge. This reverse
+     * index is kept up to date by Graph.addEdge; edges added directly with addNeighbor do not appear in it.
+     */
+    public HashMap<Node, Double> getInNeighbors() {
+        return inNeighbors;
+    }
+
     /**
      * Add an edge to neighbor with the given weight. If such an edge already existed, upate its weight.
      */
@@ -47,6 +78,28 @@ public class Node {
         neighbors.put(neighbor, weight);
     }
 
+    /**
+     * Remove the edge to neighbor, if there is one.
+     */
+    public void removeNeighbor(Node neighbor) {
+        neighbors.remove(neighbor);
+    }
+
+    /**
+     * Record that there is an edge from source to this node with the given weight. Used by Graph.addEdge to maintain
+     * the reverse index.
+     */
+    void addInNeighbor(Node source, double weight) {
+        inNeighbors.put(source, weight);
+    }
+
+    /**
+     * Record that the edge from source to this node is gone. Used by Graph.removeEdge to maintain the reverse index.
+     */
+    void removeInNeighbor(Node source) {
+        inNeighbors.remove(source);
+    }
+
     /**
      * returns the Node's unique identifier
      */
@@ -56,10 +109,14 @@ public class Node {
     }
 
     /**
-     * equals: two nodes are equal if their unique ids are equal
+     * equals: two nodes are equal if their unique ids are equal. A Graph holds one Node per id, so within a graph this
+     * is decided by the identity check without comparing Strings.
      */
     @Override
     public boolean equals(Object ob) {
+        if (ob == this) {
+            return true;
+        }
         if (ob == null || !(ob instanceof Node)) {
             return false;
         }
@@ -0,0 +1,163 @@
+package graph;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Maps node identifiers to dense int ids 0, 1, 2, ... in order of first appearance, and back. An identifier of at
+ * most seven ASCII characters, which covers every IATA airport and carrier code, is packed with its length into a
+ * single long key, so looking it up hashes one long in a primitive table and allocates nothing, whether it comes from
+ * a String or straight from the bytes of a mapped file. Longer or non-ASCII identifiers fall back to a HashMap.
+ * Graph numbers its nodes with one of these, and CSRGraph maps identifiers back to node ids with another. */
+final class NodeDictionary {
+
+    // the longest identifier that is packed: seven bytes, with the length in the eighth
+    private static final int MAX_PACKED = 7;
+    // returned by pack for an identifier that does not fit; its length byte, 0xFF, is never a real length
+    private static final long NOT_PACKED = -1;
+
+    private final LongIntHashMap packed; // packed identifier -> id
+    private final HashMap<String, Integer> others = new HashMap<String, Integer>(); // the rest
+    private String[] names; // names[id] is the identifier of id
+    private int size;
+
+    /**
+     * Constructor: create an empty dictionary with room for about expectedSize identifiers before it grows.
+     */
+    NodeDictionary(int expectedSize) {
+        packed = new LongIntHashMap(expectedSize);
+        names = new String[Math.max(16, expectedSize)];
+    }
+
+    /**
+     * Constructor: create a dictionary holding ids[0], ids[1], ... with ids 0, 1, .... Precondition: the identifiers
+     * are distinct.
+     */
+    NodeDictionary(String[] ids) {
+        this(ids.length);
+        for (String id : ids) {
+            add(id);
+        }
+    }
+
+    /**
+     * Return the number of identifiers in the dictionary.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the identifier of id. Precondition: 0 <= id < size().
+     */
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Return the id of identifier s, or -1 if it is not in the dictionary.
+     */
+    int indexOf(String s) {
+        long key = pack(s);
+        if (key != NOT_PACKED) {
+            return packed.get(key, -1);
+        }
+        Integer id = others.get(s);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the id of the identifier in bytes from (inclusive) to to (exclusive) of buf, or -1 if it is not in the
+     * dictionary.
+     */
+    int indexOf(ByteBuffer buf, int from, int to) {
+        long key = pack(buf, from, to);
+        if (key != NOT_PACKED) {
+            return packed.get(key, -1);
+        }
+        Integer id = others.get(AsciiNumbers.decode(buf, from, to));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the id of identifier s, giving it the next id, size(), if it is not in the dictionary yet.
+     */
+    int add(String s) {
+        long key = pack(s);
+        if (key != NOT_PACKED) {
+            int id = packed.get(key, -1);
+            if (id == -1) {
+                id = append(s);
+                packed.put(key, id);
+            }
+            return id;
+        }
+        Integer id = others.get(s);
+        if (id == null) {
+            id = append(s);
+            others.put(s, id);
+        }
+        return id;
+    }
+
+    /**
+     * Return the id of the identifier in bytes from (inclusive) to to (exclusive) of buf, giving it the next id,
+     * size(), if it is not in the dictionary yet. A String is created only for a new identifier.
+     */
+    int add(ByteBuffer buf, int from, int to) {
+        long key = pack(buf, from, to);
+        if (key == NOT_PACKED) {
+            return add(AsciiNumbers.decode(buf, from, to));
+        }
+        int id = packed.get(key, -1);
+        if (id == -1) {
+            id = append(AsciiNumbers.decode(buf, from, to));
+            packed.put(key, id);
+        }
+        return id;
+    }
+
+    /* Give s the next id. */
+    private int append(String s) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, 2 * size);
+        }
+        names[size] = s;
+        return size++;
+    }
+
+    /* Pack s into a long: its characters in the low bytes and its length in the top byte. Returns NOT_PACKED if s is
+     * too long or not ASCII. */
+    static long pack(String s) {
+        int len = s.length();
+        if (len > MAX_PACKED) {
+            return NOT_PACKED;
+        }
+        long key = (long) len << 56;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c > 0x7F) {
+                return NOT_PACKED;
+            }
+            key |= (long) c << (8 * i);
+        }
+        return key;
+    }
+
+    /* Pack buf[from, to) the same way, so that the bytes of an ASCII identifier pack like the identifier itself. */
+    static long pack(ByteBuffer buf, int from, int to) {
+        int len = to - from;
+        if (len > MAX_PACKED) {
+            return NOT_PACKED;
+        }
+        long key = (long) len << 56;
+        for (int i = 0; i < len; i++) {
+            byte b = buf.get(from + i);
+            if (b < 0) {
+                return NOT_PACKED;
+            }
+            key |= (long) b << (8 * i);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,144 @@
+package graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/** A growable, zero-filled region of little-endian primitives stored outside the Java heap, addressed by long byte
+ * positions. The region lives either in direct memory (ByteBuffer.allocateDirect) or in a temporary file that is
+ * memory-mapped, so that it can grow beyond both the heap and the direct memory limit. Since no single buffer can
+ * exceed 2 GB, the region is split into segments of SEGMENT_SIZE bytes; the first segment starts small and doubles
+ * until it reaches that size, and then whole segments are added. Values must be aligned to their own size, so none
+ * straddles two segments. */
+final class OffHeapBuffer {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long OFFSET_MASK = SEGMENT_SIZE - 1;
+
+    private final File file; // the backing file, or null for direct memory
+    private final FileChannel channel;
+    private ByteBuffer[] segments = new ByteBuffer[1];
+    private long capacity;
+
+    /**
+     * Constructor: create an empty region in direct memory if dir is null, and otherwise in a new temporary file in
+     * dir, which is deleted by free() or when the JVM exits.
+     */
+    OffHeapBuffer(File dir) {
+        try {
+            if (dir == null) {
+                file = null;
+                channel = null;
+            } else {
+                file = File.createTempFile("graph", ".bin", dir);
+                file.deleteOnExit();
+                channel = new RandomAccessFile(file, "rw").getChannel();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Make sure bytes 0 up to (but not including) bytes can be read and written.
+     */
+    void ensureCapacity(long bytes) {
+        try {
+            while (capacity < bytes) {
+                if (capacity < SEGMENT_SIZE) {
+                    long size = Math.min(SEGMENT_SIZE, Math.max(bytes, Math.max(4096, 2 * capacity)));
+                    segments[0] = resize(segments[0], (int) size);
+                    capacity = size;
+                } else {
+                    int s = (int) (capacity >>> SEGMENT_BITS);
+                    if (s == segments.length) {
+                        segments = Arrays.copyOf(segments, 2 * s);
+                    }
+                    segments[s] = allocate(capacity, (int) SEGMENT_SIZE);
+                    capacity += SEGMENT_SIZE;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int getInt(long pos) {
+        return segments[(int) (pos >>> SEGMENT_BITS)].getInt((int) (pos & OFFSET_MASK));
+    }
+
+    void putInt(long pos, int x) {
+        segments[(int) (pos >>> SEGMENT_BITS)].putInt((int) (pos & OFFSET_MASK), x);
+    }
+
+    long getLong(long pos) {
+        return segments[(int) (pos >>> SEGMENT_BITS)].getLong((int) (pos & OFFSET_MASK));
+    }
+
+    void putLong(long pos, long x) {
+        segments[(int) (pos >>> SEGMENT_BITS)].putLong((int) (pos & OFFSET_MASK), x);
+    }
+
+    double getDouble(long pos) {
+        return segments[(int) (pos >>> SEGMENT_BITS)].getDouble((int) (pos & OFFSET_MASK));
+    }
+
+    void putDouble(long pos, double x) {
+        segments[(int) (pos >>> SEGMENT_BITS)].putDouble((int) (pos & OFFSET_MASK), x);
+    }
+
+    byte get(long pos) {
+        return segments[(int) (pos >>> SEGMENT_BITS)].get((int) (pos & OFFSET_MASK));
+    }
+
+    void put(long pos, byte b) {
+        segments[(int) (pos >>> SEGMENT_BITS)].put((int) (pos & OFFSET_MASK), b);
+    }
+
+    /**
+     * Release the region. Direct memory is reclaimed once the buffers are garbage collected; a backing file is closed
+     * and deleted. The region must not be used afterwards.
+     */
+    void free() {
+        segments = new ByteBuffer[1];
+        capacity = 0;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            file.delete();
+        }
+    }
+
+    /* Return a first segment of size bytes holding the contents of old, which may be null. */
+    private ByteBuffer resize(ByteBuffer old, int size) throws IOException {
+        if (channel != null) {
+            // mapping a longer prefix of the same file keeps what was written through the old mapping
+            return allocate(0, size);
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        if (old != null) {
+            ByteBuffer src = old.duplicate();
+            src.clear();
+            grown.put(src);
+            grown.clear();
+        }
+        return grown;
+    }
+
+    /* Return a new zero-filled segment of size bytes at position pos of the region. */
+    private ByteBuffer allocate(long pos, int size) throws IOException {
+        if (channel == null) {
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, pos, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,436 @@
+package graph;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** An immutable graph in compressed-sparse-row form, like CSRGraph, whose adjacency, weights and node identifier
+ * dictionary all live outside the Java heap, in OffHeapBuffers backed by direct memory or by memory-mapped temporary
+ * files. It is built with an OffHeapGraph.Builder, which logs every edge off-heap as it is added and sorts the log
+ * into CSR form in build(), so a graph with far more edges than the heap could hold as Graph's per-Node HashMaps is
+ * loaded and queried while the heap holds only a few arrays the size of the node count. The shortest path engines
+ * run on it unchanged through IndexedGraph. As with Graph, adding an edge that already exists replaces its weight,
+ * nodes are numbered in order of first appearance, and each node's out-edges are sorted by target, so the result
+ * has the same nodes, edges and edge order as the CSRGraph compiled from the equivalent Graph.
+ * The storage is held until close(), which frees it and deletes any temporary files at once rather than when the JVM
+ * exits.
+ * Example usage:
+ *     OffHeapGraph.Builder b = new OffHeapGraph.Builder(tmpDir);
+ *     b.addEdge("ATL", "LAX", 1946);
+ *     try (OffHeapGraph g = b.build()) {
+ *         PathResult r = new Dijkstra(g).query(g.indexOf("ATL"), g.indexOf("LAX"));
+ *     } */
+public class OffHeapGraph implements IndexedGraph, AutoCloseable {
+
+    private final File dir; // where the buffers' files live, or null for direct memory
+    private final Ids ids; // shared with the transpose
+    private final int numNodes;
+    private final int numEdges;
+    private final OffHeapBuffer offsets; // int[numNodes + 1]
+    private final OffHeapBuffer targets; // int[numEdges]
+    private final OffHeapBuffer weights; // double[numEdges]
+
+    private OffHeapGraph transpose; // built off-heap on first use
+    private boolean closed;
+
+    /* Constructor: wrap the given CSR sections. */
+    private OffHeapGraph(File dir, Ids ids, int numEdges, OffHeapBuffer offsets, OffHeapBuffer targets,
+                         OffHeapBuffer weights) {
+        this.dir = dir;
+        this.ids = ids;
+        this.numNodes = ids.size();
+        this.numEdges = numEdges;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    @Override
+    public int numNodes() {
+        return numNodes;
+    }
+
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public String idOf(int v) {
+        return ids.name(v);
+    }
+
+    @Override
+    public int indexOf(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        return ids.indexOf(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Override
+    public int edgeBegin(int v) {
+        return offsets.getInt(4L * v);
+    }
+
+    @Override
+    public int edgeEnd(int v) {
+        return offsets.getInt(4L * (v + 1));
+    }
+
+    @Override
+    public int target(int e) {
+        return targets.getInt(4L * e);
+    }
+
+    @Override
+    public double weight(int e) {
+        return weights.getDouble(8L * e);
+    }
+
+    /**
+     * Return this graph with every edge reversed. The transpose is built off-heap, in the same kind of storage, the
+     * first time it is asked for, and then kept; closing either graph frees both. Throws IllegalStateException if this
+     * graph has been closed.
+     */
+    @Override
+    public synchronized IndexedGraph transpose() {
+        if (closed) {
+            throw new IllegalStateException("graph is closed");
+        }
+        if (transpose == null) {
+            transpose = reverse();
+            transpose.transpose = this;
+        }
+        return transpose;
+    }
+
+    /**
+     * Free the storage of this graph, of its node identifiers and of its transpose, if it was built, and delete any
+     * temporary files behind them. Neither graph may be used afterwards. Closing a closed graph does nothing.
+     */
+    @Override
+    public void close() {
+        OffHeapGraph t;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            t = transpose;
+        }
+        offsets.free();
+        targets.free();
+        weights.free();
+        ids.free();
+        if (t != null) {
+            t.close();
+        }
+    }
+
+    /* Build the transpose by counting in-degrees and scattering every edge into its target's row. Visiting sources
+     * in increasing order leaves each reversed row sorted by target. */
+    private OffHeapGraph reverse() {
+        int[] next = new int[numNodes + 1];
+        for (int e = 0; e < numEdges; e++) {
+            next[target(e) + 1]++;
+        }
+        OffHeapBuffer revOffsets = new OffHeapBuffer(dir);
+        revOffsets.ensureCapacity(4L * (numNodes + 1));
+        for (int v = 0; v < numNodes; v++) {
+            next[v + 1] += next[v];
+            revOffsets.putInt(4L * (v + 1), next[v + 1]);
+        }
+        OffHeapBuffer revTargets = new OffHeapBuffer(dir);
+        OffHeapBuffer revWeights = new OffHeapBuffer(dir);
+        revTargets.ensureCapacity(4L * numEdges);
+        revWeights.ensureCapacity(8L * numEdges);
+        for (int u = 0; u < numNodes; u++) {
+            for (int e = edgeBegin(u); e < edgeEnd(u); e++) {
+                int slot = next[target(e)]++;
+                revTargets.putInt(4L * slot, u);
+                revWeights.putDouble(8L * slot, weight(e));
+            }
+        }
+        return new OffHeapGraph(dir, ids, numEdges, revOffsets, revTargets, revWeights);
+    }
+
+    /** Collects the nodes and edges of an OffHeapGraph. Every added edge is appended to an off-heap log, 16 bytes per
+     * edge; build() then sorts the log into CSR form, keeping the last weight added for each pair, and frees it. */
+    public static class Builder {
+
+        private static final int LOG_ENTRY = 16; // int orig, int dest, double weight
+
+        private final File dir;
+        private final Ids ids;
+        private final OffHeapBuffer log;
+        private long logged; // number of edges in the log
+
+        /**
+         * Constructor: create a builder that keeps everything in direct memory.
+         */
+        public Builder() {
+            this(null);
+        }
+
+        /**
+         * Constructor: create a builder that keeps everything in memory-mapped temporary files in dir, or in direct
+         * memory if dir is null. File-backed storage is limited only by disk space, not by the direct memory limit.
+         */
+        public Builder(File dir) {
+            this.dir = dir;
+            ids = new Ids(dir);
+            log = new OffHeapBuffer(dir);
+        }
+
+        /**
+         * Return the index of the node with identifier id, creating the node if it does not exist yet.
+         */
+        public int node(String id) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            return ids.add(ByteBuffer.wrap(bytes), 0, bytes.length);
+        }
+
+        /**
+         * Return the number of nodes so far.
+         */
+        public int numNodes() {
+            return ids.size();
+        }
+
+        /**
+         * Return the number of edges added so far, counting every addition of the same pair.
+         */
+        public long numAdded() {
+            return logged;
+        }
+
+        /**
+         * Add an edge from the node with index orig to the node with index dest, replacing the weight of any earlier
+         * edge between them. Precondition: both nodes exist.
+         */
+        public void addEdge(int orig, int dest, double weight) {
+            long pos = logged * LOG_ENTRY;
+            log.ensureCapacity(pos + LOG_ENTRY);
+            log.putInt(pos, orig);
+            log.putInt(pos + 4, dest);
+            log.putDouble(pos + 8, weight);
+            logged++;
+        }
+
+        /**
+         * Add an edge between the nodes with the given identifiers, creating them if needed.
+         */
+        public void addEdge(String orig, String dest, double weight) {
+            int u = node(orig);
+            addEdge(u, node(dest), weight);
+        }
+
+        /* Free the builder's storage without building, for a parse that failed. */
+        void free() {
+            log.free();
+            ids.free();
+        }
+
+        /* Add the edge of one scanned row, looking the codes up straight from the row's bytes. Matches
+         * EdgeRowScanner.Sink, so parsers can feed a builder directly. */
+        void edge(ByteBuffer buf, int origFrom, int origTo, int destFrom, int destTo, double distance) {
+            int u = ids.add(buf, origFrom, origTo);
+            addEdge(u, ids.add(buf, destFrom, destTo), distance);
+        }
+
+        /**
+         * Sort the logged edges into an OffHeapGraph. The builder must not be used afterwards. Throws
+         * IllegalStateException if the graph has more distinct edges than an int can number.
+         */
+        public OffHeapGraph build() {
+            int n = ids.size();
+            long[] next = new long[n + 1];
+            for (long i = 0; i < logged; i++) {
+                next[log.getInt(i * LOG_ENTRY) + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                next[v + 1] += next[v];
+            }
+            long[] rowStart = Arrays.copyOf(next, n + 1);
+
+            // scatter the log into rows, keeping each row's edges in the order they were added
+            OffHeapBuffer targets = new OffHeapBuffer(dir);
+            OffHeapBuffer weights = new OffHeapBuffer(dir);
+            targets.ensureCapacity(4 * logged);
+            weights.ensureCapacity(8 * logged);
+            for (long i = 0; i < logged; i++) {
+                long pos = i * LOG_ENTRY;
+                long slot = next[log.getInt(pos)]++;
+                targets.putInt(4 * slot, log.getInt(pos + 4));
+                weights.putDouble(8 * slot, log.getDouble(pos + 8));
+            }
+            log.free();
+
+            // then compact each row in place: one edge per target, the last one added, sorted by target
+            OffHeapBuffer offsets = new OffHeapBuffer(dir);
+            offsets.ensureCapacity(4L * (n + 1));
+            long[] last = new long[n]; // last[t] is the position of the latest edge to t in the current row, or -1
+            Arrays.fill(last, -1);
+            int[] distinct = new int[n];
+            double[] rowWeights = new double[n];
+            long m = 0;
+            for (int v = 0; v < n; v++) {
+                int k = 0;
+                for (long e = rowStart[v]; e < rowStart[v + 1]; e++) {
+                    int t = targets.getInt(4 * e);
+                    if (last[t] < 0) {
+                        distinct[k++] = t;
+                    }
+                    last[t] = e;
+                }
+                Arrays.sort(distinct, 0, k);
+                for (int j = 0; j < k; j++) {
+                    rowWeights[j] = weights.getDouble(8 * last[distinct[j]]);
+                    last[distinct[j]] = -1;
+                }
+                // the row only moves toward the start, and its weights were read first, so nothing unread is lost
+                for (int j = 0; j < k; j++) {
+                    targets.putInt(4 * (m + j), distinct[j]);
+                    weights.putDouble(8 * (m + j), rowWeights[j]);
+                }
+                m += k;
+                if (m > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("too many edges for an int edge index: " + m);
+                }
+                offsets.putInt(4L * (v + 1), (int) m);
+            }
+            return new OffHeapGraph(dir, ids, (int) m, offsets, targets, weights);
+        }
+    }
+
+    /** The node identifier dictionary, off-heap: the UTF-8 bytes of every identifier back to back, where each one
+     * starts, and an open-addressing hash table of node index + 1 (0 for an empty slot). Looking up an identifier
+     * that is already known compares bytes in place and allocates nothing. */
+    private static final class Ids {
+        private final File dir;
+        private final OffHeapBuffer bytes;
+        private final OffHeapBuffer starts; // long[size + 1]: identifier v is bytes starts[v] .. starts[v+1]
+        private OffHeapBuffer table; // int[tableSize]
+        private int tableSize = 64;
+        private int size;
+        private boolean freed; // the dictionary is shared by a graph and its transpose, so either may free it
+
+        Ids(File dir) {
+            this.dir = dir;
+            bytes = new OffHeapBuffer(dir);
+            starts = new OffHeapBuffer(dir);
+            starts.ensureCapacity(8);
+            table = new OffHeapBuffer(dir);
+            table.ensureCapacity(4L * tableSize);
+        }
+
+        int size() {
+            return size;
+        }
+
+        String name(int v) {
+            long start = starts.getLong(8L * v);
+            byte[] b = new byte[(int) (starts.getLong(8L * (v + 1)) - start)];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = bytes.get(start + i);
+            }
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        /* Return the index of the identifier in buf[from, to), or -1 if it is unknown. */
+        int indexOf(ByteBuffer buf, int from, int to) {
+            int mask = tableSize - 1;
+            for (int slot = mix(hash(buf, from, to)) & mask; ; slot = (slot + 1) & mask) {
+                int entry = table.getInt(4L * slot);
+                if (entry == 0) {
+                    return -1;
+                }
+                if (sameBytes(entry - 1, buf, from, to)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        /* Return the index of the identifier in buf[from, to), giving it the next index if it is unknown. */
+        int add(ByteBuffer buf, int from, int to) {
+            int mask = tableSize - 1;
+            int slot = mix(hash(buf, from, to)) & mask;
+            for (int entry; (entry = table.getInt(4L * slot)) != 0; slot = (slot + 1) & mask) {
+                if (sameBytes(entry - 1, buf, from, to)) {
+                    return entry - 1;
+                }
+            }
+            long start = starts.getLong(8L * size);
+            long end = start + (to - from);
+            bytes.ensureCapacity(end);
+            for (int i = from; i < to; i++) {
+                bytes.put(start + i - from, buf.get(i));
+            }
+            starts.ensureCapacity(8L * (size + 2));
+            starts.putLong(8L * (size + 1), end);
+            table.putInt(4L * slot, size + 1);
+            size++;
+            if (2 * size > tableSize) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        synchronized void free() {
+            if (!freed) {
+                freed = true;
+                bytes.free();
+                starts.free();
+                table.free();
+            }
+        }
+
+        /* Double the table and reinsert every identifier. */
+        private void rehash() {
+            table.free();
+            tableSize *= 2;
+            table = new OffHeapBuffer(dir);
+            table.ensureCapacity(4L * tableSize);
+            int mask = tableSize - 1;
+            for (int v = 0; v < size; v++) {
+                long start = starts.getLong(8L * v);
+                long end = starts.getLong(8L * (v + 1));
+                int h = 0;
+                for (long i = start; i < end; i++) {
+                    h = 31 * h + bytes.get(i);
+                }
+                int slot = mix(h) & mask;
+                while (table.getInt(4L * slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table.putInt(4L * slot, v + 1);
+            }
+        }
+
+        private boolean sameBytes(int v, ByteBuffer buf, int from, int to) {
+            long start = starts.getLong(8L * v);
+            if (starts.getLong(8L * (v + 1)) - start != to - from) {
+                return false;
+            }
+            for (int i = from; i < to; i++) {
+                if (bytes.get(start + i - from) != buf.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(ByteBuffer buf, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + buf.get(i);
+            }
+            return h;
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
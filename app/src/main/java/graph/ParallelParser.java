@@ -0,0 +1,195 @@
+package graph;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Parses a basic or DB1B file on several threads. The file is split into chunks on line boundaries, each chunk is
+ * memory-mapped and scanned on a fork-join pool into its own edge buffer (primitive arrays of locally interned code
+ * ids and distances). Each task then drops every edge that is repeated later in its own chunk, since only the last
+ * occurrence of an orig -> dest pair survives Node.addNeighbor's overwrite. The buffers are finally merged into one
+ * Graph in file order: each chunk first creates its new nodes in order of first appearance and then adds its edges,
+ * so nodes are created in the same order as by a sequential parse and every pair keeps the distance from its last
+ * occurrence in the file. The result is identical to BasicParser's or DB1BParser's.
+ * Example usage:
+ *     ParallelParser p = new ParallelParser(ParallelParser.Format.DB1B, 8);
+ *     p.open(file);
+ *     Graph g = p.parse() */
+public class ParallelParser extends GraphParser {
+
+    /** The file formats ParallelParser understands. */
+    public enum Format {
+        /** The format read by BasicParser. */
+        BASIC,
+        /** The DB1B CSV format read by DB1BParser. */
+        DB1B
+    }
+
+    // chunks are at least this large, so that small files are not split into tiny tasks
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    // chunks are at most this large, so that each one can be mapped as a single buffer
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+    // number of chunks per thread, so that threads that finish early can pick up more work
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Format format;
+    private final int threads;
+
+    private FileChannel channel;
+    private long dataStart; // file position of the first data line
+    private EdgeRowScanner scanner;
+
+    /**
+     * Constructor: create a parser for files in the given format that uses the given number of threads.
+     */
+    public ParallelParser(Format format, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.format = format;
+        this.threads = threads;
+    }
+
+    /**
+     * Constructor: create a parser for files in the given format that uses one thread per available processor.
+     */
+    public ParallelParser(Format format) {
+        this(format, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Open the given file and prepare to parse it.
+     */
+    @Override
+    public void open(File f) throws FileNotFoundException {
+        channel = new RandomAccessFile(f, "r").getChannel();
+        try {
+            if (format == Format.DB1B) {
+                scanner = EdgeRowScanner.db1b(FileChunks.firstLine(channel));
+                dataStart = FileChunks.nextLineStart(channel, 0);
+            } else {
+                scanner = EdgeRowScanner.basic();
+                dataStart = 0;
+            }
+        } catch (IOException e) {
+            FileChunks.closeAfter(channel, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            FileChunks.closeAfter(channel, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Parse an opened file and return a Graph representing the data in the file. Precondition: open() has been
+     * successfully called.
+     */
+    @Override
+    public Graph parse() {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel in = channel) {
+            long size = in.size() - dataStart;
+            long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                    Math.max(MIN_CHUNK_SIZE, size / ((long) threads * CHUNKS_PER_THREAD) + 1));
+            long[] bounds = FileChunks.split(in, dataStart, chunkSize);
+
+            List<Callable<EdgeBuffer>> tasks = new ArrayList<Callable<EdgeBuffer>>();
+            for (int c = 0; c + 1 < bounds.length; c++) {
+                long from = bounds[c];
+                long length = bounds[c + 1] - bounds[c];
+                tasks.add(() -> parseChunk(from, length));
+            }
+
+            Graph graph = new Graph();
+            for (Future<EdgeBuffer> chunk : pool.invokeAll(tasks)) {
+                chunk.get().mergeInto(graph);
+            }
+            return graph;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /* Map and scan one chunk of the file into a new edge buffer. */
+    private EdgeBuffer parseChunk(long from, long length) throws IOException {
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+        EdgeBuffer edges = new EdgeBuffer();
+        scanner.scan(buf, edges);
+        edges.keepLastOccurrences();
+        return edges;
+    }
+
+    /** The edges of one chunk, in file order, with codes interned into ids local to the chunk. */
+    private static class EdgeBuffer implements EdgeRowScanner.Sink {
+        private final CodeInterner codes = new CodeInterner();
+        private int[] origs = new int[1024];
+        private int[] dests = new int[1024];
+        private double[] distances = new double[1024];
+        private int size;
+
+        @Override
+        public void edge(ByteBuffer buf, int origFrom, int origTo, int destFrom, int destTo, double distance) {
+            if (size == origs.length) {
+                origs = Arrays.copyOf(origs, 2 * size);
+                dests = Arrays.copyOf(dests, 2 * size);
+                distances = Arrays.copyOf(distances, 2 * size);
+            }
+            origs[size] = codes.intern(buf, origFrom, origTo);
+            dests[size] = codes.intern(buf, destFrom, destTo);
+            distances[size] = distance;
+            size++;
+        }
+
+        /* Remove every edge whose orig -> dest pair occurs again later in this chunk, keeping the order of the
+         * remaining edges. */
+        void keepLastOccurrences() {
+            LongIntHashMap last = new LongIntHashMap(size);
+            for (int i = 0; i < size; i++) {
+                last.put(LongIntHashMap.pair(origs[i], dests[i]), i);
+            }
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (last.get(LongIntHashMap.pair(origs[i], dests[i]), -1) == i) {
+                    origs[kept] = origs[i];
+                    dests[kept] = dests[i];
+                    distances[kept] = distances[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        /* Add this chunk's nodes and edges to graph. Local ids were assigned in order of first appearance in the
+         * chunk, so resolving them in id order creates new nodes in the order a sequential parse would. */
+        void mergeInto(Graph graph) {
+            int[] nodes = new int[codes.size()]; // nodes[id] is the graph index of local id
+            for (int id = 0; id < nodes.length; id++) {
+                nodes[id] = graph.getNode(codes.name(id)).getIndex();
+            }
+            for (int i = 0; i < size; i++) {
+                graph.addEdge(nodes[origs[i]], nodes[dests[i]], distances[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/** The answer to a point-to-point shortest path query: the node ids along the path, its length, and how many nodes
+ * the search settled to find it (a measure of how much work the query took). If the destination is unreachable,
+ * exists() is false, getPath() is null and getLength() is Double.POSITIVE_INFINITY. */
+public class PathResult {
+
+    private final IndexedGraph graph; // the graph the node ids refer to
+    private final int[] path; // node ids from origin to destination, or null if there is no path
+    private final double length;
+    private final int settled;
+
+    /**
+     * Constructor: record a query result. path may be null if no path exists.
+     */
+    public PathResult(IndexedGraph graph, int[] path, double length, int settled) {
+        this.graph = graph;
+        this.path = path;
+        this.length = length;
+        this.settled = settled;
+    }
+
+    /**
+     * Return true if a path from the origin to the destination exists.
+     */
+    public boolean exists() {
+        return path != null;
+    }
+
+    /**
+     * Return the node ids along the path, including the origin and destination, or null if no path exists. The
+     * array is shared, so callers must not modify it.
+     */
+    public int[] getPath() {
+        return path;
+    }
+
+    /**
+     * Return the length of the path, or Double.POSITIVE_INFINITY if no path exists.
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * Return the number of nodes the search settled before it finished.
+     */
+    public int getSettled() {
+        return settled;
+    }
+
+    /**
+     * Return the identifiers of the nodes along the path, or null if no path exists.
+     */
+    public List<String> getIds() {
+        if (path == null) {
+            return null;
+        }
+        List<String> ids = new ArrayList<String>(path.length);
+        for (int v : path) {
+            ids.add(graph.idOf(v));
+        }
+        return ids;
+    }
+
+    /**
+     * Return the path as a list of nodes of g, in the shape returned by ShortestPaths.shortestPath, or null if no
+     * path exists. Precondition: the graph this result refers to was compiled from g (or has the same node ids).
+     */
+    public LinkedList<Node> toNodes(Graph g) {
+        if (path == null) {
+            return null;
+        }
+        LinkedList<Node> nodes = new LinkedList<Node>();
+        for (int v : path) {
+            nodes.add(g.getNode(graph.idOf(v)));
+        }
+        return nodes;
+    }
+
+    /**
+     * Return the path as its node identifiers followed by its length, or "No Path Exists".
+     */
+    @Override
+    public String toString() {
+        if (path == null) {
+            return "No Path Exists";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int v : path) {
+            sb.append(graph.idOf(v)).append(' ');
+        }
+        return sb.append(length).toString();
+    }
+}
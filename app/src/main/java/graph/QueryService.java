@@ -0,0 +1,149 @@
+package graph;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/** A thread-safe shortest path service over an immutable IndexedGraph. ShortestPaths and Dijkstra keep the results
+ * of the last search in their fields, so one instance cannot serve concurrent callers, and creating one per request
+ * reallocates all of its state. This service instead keeps a pool of Dijkstra engines, each with its own
+ * SearchWorkspace, and lends one to each query for its duration; a workspace resets in O(1), so back-to-back queries
+ * on the same engine cost only the nodes they visit. At most maxConcurrent queries search at once, which also bounds
+ * the number of workspaces ever allocated.
+ * Requests submitted asynchronously run on virtual threads when the running JVM has them (Java 21 and later) and on
+ * a fixed pool of maxConcurrent daemon threads otherwise.
+ * Sample usage:
+ *   try (QueryService service = new QueryService(graph.compile())) {
+ *       PathResult r = service.submit("YUL", "YVR").join();
+ *       PathResult[] all = service.submitBatch(origins, destinations).join();
+ *   }
+ *   */
+public class QueryService implements AutoCloseable {
+
+    private final IndexedGraph graph;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final Semaphore permits; // one per query allowed to search at the same time
+    private final ConcurrentLinkedQueue<Dijkstra> idle = new ConcurrentLinkedQueue<>(); // engines not lent out
+
+    /**
+     * Constructor: create a service for g that runs as many searches at once as there are processors.
+     * Precondition: g is not modified while the service is in use.
+     */
+    public QueryService(IndexedGraph g) {
+        this(g, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor: create a service for g that runs at most maxConcurrent searches at once.
+     * Precondition: g is not modified while the service is in use, and maxConcurrent > 0.
+     */
+    public QueryService(IndexedGraph g, int maxConcurrent) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+        }
+        graph = g;
+        permits = new Semaphore(maxConcurrent);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        executor = virtualThreads ? virtual : Executors.newFixedThreadPool(maxConcurrent, r -> {
+            Thread t = new Thread(r, "query-service");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /* Return Executors.newVirtualThreadPerTaskExecutor() if this JVM has it, or null. Called reflectively so that
+     * the code still compiles with the Java 17 toolchain. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the graph this service answers queries on.
+     */
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Return true if asynchronous requests run on virtual threads rather than a fixed thread pool.
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Find the shortest path from origin to destination on the calling thread, waiting for a free workspace if
+     * maxConcurrent searches are already running. Precondition: both nodes are in the graph.
+     */
+    public PathResult query(int origin, int destination) {
+        permits.acquireUninterruptibly();
+        Dijkstra d = idle.poll();
+        if (d == null) {
+            d = new Dijkstra(graph);
+        }
+        try {
+            return d.query(origin, destination);
+        } finally {
+            idle.offer(d);
+            permits.release();
+        }
+    }
+
+    /**
+     * Find the shortest path from origin to destination asynchronously. Precondition: both nodes are in the graph.
+     */
+    public CompletableFuture<PathResult> submit(int origin, int destination) {
+        return CompletableFuture.supplyAsync(() -> query(origin, destination), executor);
+    }
+
+    /**
+     * Find the shortest path between the nodes with the given ids asynchronously. The future fails with an
+     * IllegalArgumentException if either id is not in the graph.
+     */
+    public CompletableFuture<PathResult> submit(String originId, String destinationId) {
+        int origin = graph.indexOf(originId);
+        int destination = graph.indexOf(destinationId);
+        if (origin == -1 || destination == -1) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "unknown node: " + (origin == -1 ? originId : destinationId)));
+        }
+        return submit(origin, destination);
+    }
+
+    /**
+     * Find the shortest paths from origins[i] to destinations[i] for every i asynchronously. The future completes
+     * with the results in the same order once all of them are done. Precondition: the arrays have the same length
+     * and all their nodes are in the graph.
+     */
+    public CompletableFuture<PathResult[]> submitBatch(int[] origins, int[] destinations) {
+        if (origins.length != destinations.length) {
+            throw new IllegalArgumentException(origins.length + " origins but " + destinations.length
+                    + " destinations");
+        }
+        PathResult[] results = new PathResult[origins.length];
+        CompletableFuture<?>[] parts = new CompletableFuture<?>[origins.length];
+        for (int i = 0; i < origins.length; i++) {
+            int k = i;
+            parts[i] = submit(origins[i], destinations[i]).thenAccept(r -> results[k] = r);
+        }
+        return CompletableFuture.allOf(parts).thenApply(v -> results);
+    }
+
+    /**
+     * Stop accepting requests. Requests already submitted still complete.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
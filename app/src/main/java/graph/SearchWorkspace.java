@@ -0,0 +1,79 @@
+package graph;
+
+import java.util.Arrays;
+
+/** The per-search state of a shortest path search over a graph with n nodes: a tentative distance and predecessor
+ * for every node, and a frontier heap. Starting a new search does not clear the arrays; instead each node carries the
+ * generation in which its entries were last written, and entries from an older generation read as unvisited
+ * (distance Double.POSITIVE_INFINITY, predecessor -1). Starting a search is therefore O(1) rather than O(n), which is
+ * what makes short point-to-point queries on a large graph cheap. A workspace is not thread-safe; QueryService keeps
+ * a pool of them so that each concurrent query has its own. */
+public class SearchWorkspace {
+
+    private final double[] dist; // dist[v] is the tentative distance of v, if stamp[v] == generation
+    private final int[] prev; // prev[v] is the predecessor of v, if stamp[v] == generation
+    private final int[] stamp; // stamp[v] is the generation in which v was last written
+    private final IndexedHeap heap;
+    private int generation;
+
+    /**
+     * Constructor: create a workspace for searches over graphs with n nodes.
+     */
+    public SearchWorkspace(int n) {
+        dist = new double[n];
+        prev = new int[n];
+        stamp = new int[n];
+        heap = new IndexedHeap(n);
+    }
+
+    /**
+     * Return the number of nodes this workspace has room for.
+     */
+    public int capacity() {
+        return stamp.length;
+    }
+
+    /**
+     * Forget the previous search: every node becomes unvisited and the heap becomes empty.
+     */
+    public void reset() {
+        if (generation == Integer.MAX_VALUE) {
+            // after about two billion searches, the stamps wrap around; clear them once
+            Arrays.fill(stamp, 0);
+            generation = 0;
+        }
+        generation++;
+        heap.clear();
+    }
+
+    /**
+     * Return the tentative distance of v in the current search, or Double.POSITIVE_INFINITY if v has not been
+     * reached.
+     */
+    public double dist(int v) {
+        return stamp[v] == generation ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Return the predecessor of v in the current search, or -1 if v has none or has not been reached.
+     */
+    public int prev(int v) {
+        return stamp[v] == generation ? prev[v] : -1;
+    }
+
+    /**
+     * Record that v is reached with distance d through predecessor p (-1 for the origin).
+     */
+    public void set(int v, double d, int p) {
+        stamp[v] = generation;
+        dist[v] = d;
+        prev[v] = p;
+    }
+
+    /**
+     * Return the frontier heap of the current search.
+     */
+    public IndexedHeap heap() {
+        return heap;
+    }
+}
@@ -0,0 +1,132 @@
+package graph;
+
+import java.util.Arrays;
+
+/** A completed shortest path tree: the distance from one origin to every node of a graph and each node's
+ * predecessor on its shortest path, in two primitive arrays indexed by node id. Unlike a Dijkstra engine, whose
+ * results are overwritten by its next search, a tree is immutable, so it can be kept and shared between threads, as
+ * ShortestPathTreeCache does; when the graph changes, TreeRepair derives the updated tree from a copy. */
+public class ShortestPathTree {
+
+    private final int origin;
+    private final double[] dist; // dist[v] is the length of the shortest path from the origin to v
+    private final int[] prev; // prev[v] is the node before v on that path, or -1
+
+    /**
+     * Constructor: wrap the given arrays. The arrays are not copied, so the caller must not modify them afterwards.
+     */
+    ShortestPathTree(int origin, double[] dist, int[] prev) {
+        this.origin = origin;
+        this.dist = dist;
+        this.prev = prev;
+    }
+
+    /**
+     * Return the origin of this tree.
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Return the number of nodes this tree covers.
+     */
+    public int numNodes() {
+        return dist.length;
+    }
+
+    /**
+     * Returns the length of the shortest path from the origin to destination, or Double.POSITIVE_INFINITY if no path
+     * exists.
+     */
+    public double shortestPathLength(int destination) {
+        return dist[destination];
+    }
+
+    /**
+     * Return the node before destination on the shortest path from the origin, or -1 if destination is the origin or
+     * is unreachable.
+     */
+    public int previous(int destination) {
+        return prev[destination];
+    }
+
+    /**
+     * Returns the node ids along the shortest path from the origin to destination, including both. If no path to it
+     * exists, return null.
+     */
+    public int[] shortestPath(int destination) {
+        if (dist[destination] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int length = 1;
+        for (int v = destination; prev[v] != -1; v = prev[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = destination, i = length - 1; i >= 0; v = prev[v], i--) {
+            path[i] = v;
+        }
+        return path;
+    }
+
+    /**
+     * Return the tree from origin in g with the given final shortest path lengths, for engines that compute
+     * distances without predecessors. A breadth-first search from the origin over tight edges (u -> v with
+     * dist[u] + weight == dist[v], which holds exactly for the edge that last lowered dist[v]) reaches every
+     * reachable node and gives each a single predecessor, so the result is a tree even where zero-weight edges make
+     * several nodes equally far. The dist array is not copied.
+     */
+    static ShortestPathTree fromDistances(IndexedGraph g, int origin, double[] dist) {
+        int n = g.numNodes();
+        int[] prev = new int[n];
+        Arrays.fill(prev, -1);
+        boolean[] reached = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = origin;
+        reached[origin] = true;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = g.edgeBegin(u), end = g.edgeEnd(u); e < end; e++) {
+                int v = g.target(e);
+                if (!reached[v] && dist[u] + g.weight(e) == dist[v]) {
+                    reached[v] = true;
+                    prev[v] = u;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return new ShortestPathTree(origin, dist, prev);
+    }
+
+    /* The distance and predecessor arrays themselves. Only TreeRepair writes to them, and only on a fresh copy made
+     * with copy() that no one else has seen yet. */
+    double[] distances() {
+        return dist;
+    }
+
+    int[] predecessors() {
+        return prev;
+    }
+
+    /**
+     * Return a copy of this tree covering n >= numNodes() nodes; nodes beyond numNodes() are unreachable.
+     */
+    ShortestPathTree copy(int n) {
+        double[] d = Arrays.copyOf(dist, n);
+        int[] p = Arrays.copyOf(prev, n);
+        Arrays.fill(d, dist.length, n, Double.POSITIVE_INFINITY);
+        Arrays.fill(p, prev.length, n, -1);
+        return new ShortestPathTree(origin, d, p);
+    }
+
+    /**
+     * Return the approximate number of bytes of heap this tree occupies.
+     */
+    public long sizeInBytes() {
+        // two array headers and the object itself, plus 8 bytes of distance and 4 of predecessor per node
+        return 64 + 12L * dist.length;
+    }
+}
@@ -0,0 +1,210 @@
+package graph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/** A bounded cache of shortest path trees over a mutable Graph, keyed by origin. Query traffic is usually skewed
+ * toward a few hub origins, so keeping their completed trees turns most single-source computations into an array
+ * lookup. Trees are stored compactly as ShortestPathTrees (one double and one int per node) and evicted in least
+ * recently used order once the cache holds more than maxTrees trees or more than maxBytes bytes of them.
+ * The cache listens to the Graph's edge changes. When an edge is added, reweighted or removed, every cached tree is
+ * repaired in place of the old one by TreeRepair, which touches only the nodes whose distances change, so results
+ * never reflect a stale graph and hub trees survive route changes. Misses are computed on a compiled copy of the
+ * graph, which is recompiled on the first miss after Graph.getVersion() changes. Edges changed directly with
+ * Node.addNeighbor or Node.removeNeighbor are not noticed. Call close() to stop listening once the cache is no longer
+ * needed.
+ * All methods are thread-safe. A miss computes its tree, and an edge change repairs the cached trees, while holding
+ * the cache's lock, so they run one at a time.
+ * Sample usage:
+ *   ShortestPathTreeCache cache = new ShortestPathTreeCache(g, 64);
+ *   double d = cache.shortestPathLength(g.getNode("ATL"), g.getNode("LAX"));
+ *   */
+public class ShortestPathTreeCache implements AutoCloseable {
+
+    private final Graph graph;
+    private final int maxTrees;
+    private final long maxBytes;
+
+    // cached trees by origin, least recently used first
+    private final LinkedHashMap<Integer, ShortestPathTree> trees =
+            new LinkedHashMap<Integer, ShortestPathTree>(16, 0.75f, true);
+    private long bytes; // total sizeInBytes of the cached trees
+
+    private long version = -1; // the graph version that engine reflects
+    private Dijkstra engine; // searches the graph as compiled at that version
+    private final TreeRepair repair = new TreeRepair();
+    private final Graph.EdgeListener listener = this::edgeChanged;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long repairs;
+
+    /**
+     * Constructor: create a cache of at most maxTrees trees over g. Precondition: maxTrees > 0.
+     */
+    public ShortestPathTreeCache(Graph g, int maxTrees) {
+        this(g, maxTrees, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor: create a cache over g that holds at most maxTrees trees and at most maxBytes bytes of trees. A tree
+     * larger than maxBytes on its own is returned but not kept. Precondition: maxTrees > 0 and maxBytes > 0.
+     */
+    public ShortestPathTreeCache(Graph g, int maxTrees, long maxBytes) {
+        if (maxTrees <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("cache bounds must be positive: " + maxTrees + " trees, "
+                    + maxBytes + " bytes");
+        }
+        graph = g;
+        this.maxTrees = maxTrees;
+        this.maxBytes = maxBytes;
+        g.addEdgeListener(listener);
+    }
+
+    /**
+     * Return the shortest path tree from the node with index origin, computing it if it is not cached.
+     * Precondition: 0 <= origin < numNodes() of the graph.
+     */
+    public synchronized ShortestPathTree get(int origin) {
+        ShortestPathTree tree = trees.get(origin);
+        if (tree != null) {
+            hits++;
+            if (tree.numNodes() < graph.numNodes()) {
+                // nodes added since the tree was computed have no edges yet, so they are unreachable
+                ShortestPathTree extended = tree.copy(graph.numNodes());
+                bytes += extended.sizeInBytes() - tree.sizeInBytes();
+                trees.put(origin, extended);
+                tree = extended;
+            }
+            return tree;
+        }
+        misses++;
+        if (graph.getVersion() != version) {
+            engine = new Dijkstra(graph.compile());
+            version = graph.getVersion();
+        }
+        engine.compute(origin);
+        tree = engine.tree();
+        trees.put(origin, tree);
+        bytes += tree.sizeInBytes();
+        evict();
+        return tree;
+    }
+
+    /**
+     * Return the shortest path tree from origin. Precondition: origin is a node of the graph.
+     */
+    public ShortestPathTree get(Node origin) {
+        return get(origin.getIndex());
+    }
+
+    /**
+     * Return the length of the shortest path from origin to destination, or Double.POSITIVE_INFINITY if there is
+     * none. Precondition: both are nodes of the graph.
+     */
+    public double shortestPathLength(Node origin, Node destination) {
+        return get(origin).shortestPathLength(destination.getIndex());
+    }
+
+    /**
+     * Return the nodes along the shortest path from origin to destination in the shape returned by
+     * ShortestPaths.shortestPath, or null if there is none. Precondition: both are nodes of the graph.
+     */
+    public LinkedList<Node> shortestPath(Node origin, Node destination) {
+        int[] path = get(origin).shortestPath(destination.getIndex());
+        if (path == null) {
+            return null;
+        }
+        LinkedList<Node> nodes = new LinkedList<Node>();
+        for (int v : path) {
+            nodes.add(graph.getNode(v));
+        }
+        return nodes;
+    }
+
+    /* Repair every cached tree after the edge from orig to dest changed weight. */
+    private synchronized void edgeChanged(Node orig, Node dest, double oldWeight, double newWeight) {
+        for (Map.Entry<Integer, ShortestPathTree> entry : trees.entrySet()) {
+            ShortestPathTree tree = entry.getValue();
+            ShortestPathTree repaired = repair.repair(tree, graph, orig, dest, oldWeight, newWeight);
+            if (repaired != tree) {
+                bytes += repaired.sizeInBytes() - tree.sizeInBytes();
+                entry.setValue(repaired);
+                repairs++;
+            }
+        }
+        evict();
+    }
+
+    /* Evict least recently used trees until the cache is within its bounds. */
+    private void evict() {
+        Iterator<Map.Entry<Integer, ShortestPathTree>> eldest = trees.entrySet().iterator();
+        while ((trees.size() > maxTrees || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().sizeInBytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drop every cached tree. The hit, miss, eviction and repair counts are kept.
+     */
+    public synchronized void clear() {
+        trees.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Stop listening to the graph's edge changes and drop every cached tree. The cache must not be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        graph.removeEdgeListener(listener);
+        clear();
+    }
+
+    /**
+     * Return the number of trees in the cache.
+     */
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    /**
+     * Return the approximate number of bytes of heap the cached trees occupy.
+     */
+    public synchronized long sizeInBytes() {
+        return bytes;
+    }
+
+    /**
+     * Return the number of lookups answered from the cache.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Return the number of lookups that had to compute their tree.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Return the number of trees evicted to keep the cache within its bounds.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Return the number of times a cached tree was repaired because an edge change altered its distances.
+     */
+    public synchronized long repairs() {
+        return repairs;
+    }
+}
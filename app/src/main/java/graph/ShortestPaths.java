@@ -12,6 +12,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Set;
 import java.util.Iterator;
 import java.util.HashSet;
@@ -131,16 +133,29 @@ public class ShortestPaths {
 
     /**
      * Static helper method to open and parse a file containing graph information. Can parse either a basic file or a
-     * DB1B CSV file with flight data. See GraphParser, BasicParser, and DB1BParser for more.
+     * DB1B CSV file with flight data, either with DB1BParser ("db1b") or with the memory-mapped MappedDB1BParser
+     * ("db1b-mapped"), which is much faster on large files. The "basic-parallel" and "db1b-parallel" types parse the
+     * same formats on one thread per processor with ParallelParser, and "snapshot" rebuilds the graph saved in a
+     * GraphSnapshot file. See GraphParser, BasicParser, and DB1BParser for more.
      */
     protected static Graph parseGraph(String fileType, String fileName) throws
             FileNotFoundException {
+        if (fileType.equals("snapshot")) {
+            return loadSnapshot(fileName).toGraph();
+        }
+
         // create an appropriate parser for the given file type
         GraphParser parser;
         if (fileType.equals("basic")) {
             parser = new BasicParser();
         } else if (fileType.equals("db1b")) {
             parser = new DB1BParser();
+        } else if (fileType.equals("db1b-mapped")) {
+            parser = new MappedDB1BParser();
+        } else if (fileType.equals("basic-parallel")) {
+            parser = new ParallelParser(ParallelParser.Format.BASIC);
+        } else if (fileType.equals("db1b-parallel")) {
+            parser = new ParallelParser(ParallelParser.Format.DB1B);
         } else {
             throw new IllegalArgumentException(
                     "Unsupported file type: " + fileType);
@@ -153,6 +168,30 @@ public class ShortestPaths {
         return parser.parse();
     }
 
+    /**
+     * Static helper method to load a graph for the shortest path engines. A "snapshot" file is memory-mapped and
+     * served directly, without building a Graph; any other file type is parsed with parseGraph and compiled to CSR
+     * form.
+     */
+    protected static IndexedGraph loadIndexedGraph(String fileType, String fileName) throws
+            FileNotFoundException {
+        if (fileType.equals("snapshot")) {
+            return loadSnapshot(fileName);
+        }
+        return parseGraph(fileType, fileName).compile();
+    }
+
+    /* Map the snapshot file with the given name. */
+    private static GraphSnapshot loadSnapshot(String fileName) throws FileNotFoundException {
+        try {
+            return GraphSnapshot.load(new File(fileName));
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public static void main(String[] args) {
         // read command line args
         String fileType = args[0];
@@ -164,40 +203,40 @@ public class ShortestPaths {
             destCode = args[3];
         }
 
-        // parse a graph with the given type and filename
-        Graph graph;
+        // load a graph with the given type and filename, in the array form the engine runs on
+        IndexedGraph graph;
         try {
-            graph = parseGraph(fileType, fileName);
+            graph = loadIndexedGraph(fileType, fileName);
         } catch (FileNotFoundException e) {
             System.out.println("Could not open file " + fileName);
             return;
         }
         graph.report();
-        // sets up the shortestpaths object and does Dijkastra's algo on them.
-        ShortestPaths sp = new ShortestPaths();
-        Node origNode = graph.getNode(origCode);
-        sp.compute(origNode);
-        HashMap<Node, PathData> mapping = sp.getPaths(); // importing path data from sp.
-        // if no destination, run through each node available.
+        int origin = graph.indexOf(origCode);
+        if (origin == -1) {
+            System.out.println("No such node " + origCode);
+            return;
+        }
+        Dijkstra sp = new Dijkstra(graph);
+        // if no destination, run through each node reachable from the origin.
         if (destCode == null){
-            System.out.println("Shortest Paths from A:");
-                for (Node current : mapping.keySet()){
-                    System.out.println(current.getId() + ": " + mapping.get(current).distance);
+            sp.compute(origin);
+            System.out.println("Shortest Paths from " + origCode + ":");
+            for (int v = 0; v < graph.numNodes(); v++){
+                if (sp.shortestPathLength(v) != Double.POSITIVE_INFINITY){
+                    System.out.println(graph.idOf(v) + ": " + sp.shortestPathLength(v));
                 }
+            }
         }
-        // otherwise, run through to the destination or tells you there is no paths if there is none.
+        // otherwise, search only until the destination is reached, or tell you there is no path if there is none.
         else{
-            Node destNode = graph.getNode(destCode);
-                if (sp.shortestPathLength(destNode) != Double.POSITIVE_INFINITY){ // checks if there is a connection.
-                    LinkedList<Node> bob = sp.shortestPath(destNode);
-                        for(Node runner : bob){
-                            System.out.print(runner.getId() + " ");
-                        }
-                    System.out.println(sp.shortestPathLength(destNode));
-                }
-                else{
-                    System.out.println("No Path Exists");
-                }
+            int dest = graph.indexOf(destCode);
+            if (dest == -1){
+                System.out.println("No Path Exists");
+            }
+            else{
+                System.out.println(sp.query(origin, dest));
+            }
         }
 
     }
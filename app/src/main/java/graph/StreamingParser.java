@@ -0,0 +1,371 @@
+package graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Parses a basic or DB1B file that is still being written, or any InputStream of rows in those formats, and keeps
+ * growing its Graph as new rows arrive. Rows are applied to the Graph in micro-batches; after each batch the Graph is
+ * compiled into a new CSRGraph and published, so queries run on snapshot() while ingest continues and never see a
+ * half-applied batch. A batch is published once it holds batchRows rows, once its first row has waited maxDelayMillis,
+ * or as soon as no more input is immediately available, whichever comes first. Publishing compiles the whole graph,
+ * so larger batches trade freshness for less copying.
+ * parse() reads the input to its current end on the calling thread, as every GraphParser does. start() instead reads
+ * on a background thread that, for a file, keeps following it as rows are appended, until close() is called.
+ * Example usage:
+ *     StreamingParser p = new StreamingParser(ParallelParser.Format.DB1B);
+ *     p.open(couponFile);
+ *     p.start();
+ *     PathResult r = new Dijkstra(p.snapshot()).query(a, b);
+ *     long lag = p.lagNanos(); */
+public class StreamingParser extends GraphParser implements AutoCloseable {
+
+    // how long a background reader that has reached the end of a file waits before looking for new rows
+    private static final long POLL_MILLIS = 50;
+    // how long close() waits for the background reader to stop
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final ParallelParser.Format format;
+    private final int batchRows;
+    private final long maxDelayNanos;
+
+    private InputStream in;
+    private File file; // the file being read, or null for a stream
+    private EdgeRowScanner scanner; // null until the header has been read
+
+    private byte[] buf = new byte[1 << 16]; // input read but not yet parsed; always starts at a row boundary
+    private int filled;
+
+    private final Graph graph = new Graph(); // written only by the reading thread
+
+    private volatile CSRGraph snapshot = new Graph().compile();
+    private volatile Thread reader;
+    private volatile boolean stopped;
+    private volatile Throwable failure;
+
+    // metrics, written only by the reading thread
+    private int pending; // rows applied to the graph since the last publish
+    private volatile long batchStart; // System.nanoTime() when the first pending row was read
+    private volatile long bytesRead;
+    private volatile long rowsRead;
+    private volatile long rowsPublished;
+    private volatile long batches;
+    private volatile long lastBatchNanos;
+    private volatile long maxBatchNanos;
+
+    /**
+     * Constructor: create a parser for the given format that publishes batches of up to 10000 rows, at most one
+     * second after their first row is read.
+     */
+    public StreamingParser(ParallelParser.Format format) {
+        this(format, 10000, 1000);
+    }
+
+    /**
+     * Constructor: create a parser for the given format that publishes batches of up to batchRows rows, at most
+     * maxDelayMillis after their first row is read.
+     */
+    public StreamingParser(ParallelParser.Format format, int batchRows, long maxDelayMillis) {
+        if (batchRows < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("batchRows must be positive and maxDelayMillis not negative: "
+                    + batchRows + ", " + maxDelayMillis);
+        }
+        this.format = format;
+        this.batchRows = batchRows;
+        maxDelayNanos = maxDelayMillis * 1000000;
+    }
+
+    /**
+     * Open the given file and prepare to parse it. A reader started with start() keeps following the file as it
+     * grows.
+     */
+    @Override
+    public void open(File f) throws FileNotFoundException {
+        in = new FileInputStream(f);
+        file = f;
+    }
+
+    /**
+     * Prepare to parse rows from the given stream. A reader started with start() stops at the end of the stream.
+     */
+    public void open(InputStream stream) {
+        in = stream;
+        file = null;
+    }
+
+    /**
+     * Read the input up to its current end on the calling thread, publish what was read, and return the Graph.
+     * Precondition: open() has been successfully called and start() has not.
+     */
+    @Override
+    public Graph parse() {
+        try {
+            ingest(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return graph;
+    }
+
+    /**
+     * Start reading on a background thread. Precondition: open() has been successfully called.
+     */
+    public void start() {
+        Thread t = new Thread(() -> {
+            try {
+                ingest(file != null);
+            } catch (Throwable e) {
+                if (!stopped) {
+                    failure = e; // once stopped, the read failed because close() closed the input
+                }
+            } finally {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }, "streaming-parser");
+        t.setDaemon(true);
+        reader = t;
+        t.start();
+    }
+
+    /**
+     * Stop the background reader, if any, and close the input. The input is closed first, so that a reader blocked
+     * in read() on a pipe, socket or terminal, which an interrupt does not wake, fails out of it; close() then waits
+     * up to CLOSE_TIMEOUT_MILLIS for the reader to stop. A reader still blocked after that is a daemon thread and is
+     * left behind.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        Thread t = reader;
+        if (t != null) {
+            t.interrupt();
+        }
+        IOException closeFailure = null;
+        try {
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+            closeFailure = e;
+        }
+        if (t != null) {
+            try {
+                t.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (closeFailure != null) {
+            throw new UncheckedIOException(closeFailure);
+        }
+    }
+
+    /**
+     * Return the most recently published graph: every row of every published batch, and nothing of the batch being
+     * read. The result is immutable and stays valid while later batches are published.
+     */
+    public CSRGraph snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Wait until at least rows rows have been published, the reader has stopped, or timeoutMillis have passed.
+     * Returns true if rows rows have been published.
+     */
+    public synchronized boolean awaitRows(long rows, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (rowsPublished < rows && reader != null && reader.isAlive()) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                break;
+            }
+            wait(wait);
+        }
+        return rowsPublished >= rows;
+    }
+
+    /**
+     * Return the exception that stopped the background reader, or null if it has not failed.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Return the number of bytes read from the input so far, header included.
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Return the number of rows read and applied to the graph so far, published or not.
+     */
+    public long rowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Return the number of rows visible in snapshot().
+     */
+    public long rowsPublished() {
+        return rowsPublished;
+    }
+
+    /**
+     * Return the number of batches published so far.
+     */
+    public long batchesPublished() {
+        return batches;
+    }
+
+    /**
+     * Return the time from reading the first row of the last published batch to publishing it, in nanoseconds.
+     */
+    public long lastBatchLatencyNanos() {
+        return lastBatchNanos;
+    }
+
+    /**
+     * Return the longest time from reading the first row of a batch to publishing it, in nanoseconds.
+     */
+    public long maxBatchLatencyNanos() {
+        return maxBatchNanos;
+    }
+
+    /**
+     * Return how long the oldest row that has been read but not yet published has been waiting, in nanoseconds, or 0
+     * if every row read has been published.
+     */
+    public long lagNanos() {
+        return rowsRead > rowsPublished ? System.nanoTime() - batchStart : 0;
+    }
+
+    /**
+     * Return the number of bytes the file has grown beyond what has been read, or 0 when reading a stream.
+     */
+    public long lagBytes() {
+        return file == null ? 0 : Math.max(0, file.length() - bytesRead);
+    }
+
+    /* Read and apply rows until the end of the input, or, if follow is true, until close() is called. */
+    private void ingest(boolean follow) throws IOException {
+        while (!stopped) {
+            if (pending > 0 && (System.nanoTime() - batchStart >= maxDelayNanos || in.available() == 0)) {
+                publish();
+            }
+            if (filled == buf.length) {
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            }
+            int n = in.read(buf, filled, buf.length - filled);
+            if (n < 0) {
+                if (!follow && filled > 0) {
+                    // the input ended without a final line terminator; the last row is complete after all
+                    if (filled == buf.length) {
+                        buf = Arrays.copyOf(buf, buf.length + 1);
+                    }
+                    buf[filled++] = '\n';
+                    consumeRows();
+                }
+                if (pending > 0) {
+                    publish();
+                }
+                if (!follow) {
+                    return;
+                }
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            filled += n;
+            bytesRead += n;
+            consumeRows();
+        }
+    }
+
+    /* Apply every complete row in the buffer to the graph and move the incomplete rest to its start. */
+    private void consumeRows() {
+        int start = 0;
+        if (scanner == null) {
+            if (format == ParallelParser.Format.BASIC) {
+                scanner = EdgeRowScanner.basic();
+            } else {
+                int eol = indexOf((byte) '\n', 0, filled);
+                if (eol < 0) {
+                    return;
+                }
+                // drop the '\r' of a CRLF header, as FileChunks.firstLine does
+                int headerEnd = eol > 0 && buf[eol - 1] == '\r' ? eol - 1 : eol;
+                scanner = EdgeRowScanner.db1b(new String(buf, 0, headerEnd, StandardCharsets.UTF_8));
+                start = eol + 1;
+            }
+        }
+        int end = lastIndexOf((byte) '\n', start, filled) + 1;
+        if (end > start) {
+            ByteBuffer rows = ByteBuffer.wrap(buf, 0, end);
+            for (int pos = start; pos < end; ) {
+                pos = scanner.scanRow(rows, pos, this::addEdge);
+            }
+        } else {
+            end = start;
+        }
+        System.arraycopy(buf, end, buf, 0, filled - end);
+        filled -= end;
+    }
+
+    /* Add the edge of one scanned row to the graph. */
+    private void addEdge(ByteBuffer rows, int origFrom, int origTo, int destFrom, int destTo, double distance) {
+        if (pending == 0) {
+            batchStart = System.nanoTime();
+        }
+        graph.addEdge(graph.indexOf(rows, origFrom, origTo), graph.indexOf(rows, destFrom, destTo), distance);
+        pending++;
+        rowsRead++;
+        if (pending >= batchRows) {
+            publish();
+        }
+    }
+
+    /* Compile the graph and make it the new snapshot. */
+    private void publish() {
+        snapshot = graph.compile();
+        long latency = System.nanoTime() - batchStart;
+        lastBatchNanos = latency;
+        maxBatchNanos = Math.max(maxBatchNanos, latency);
+        batches++;
+        synchronized (this) {
+            rowsPublished += pending;
+            pending = 0;
+            notifyAll();
+        }
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(byte b, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,151 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/** Repairs a ShortestPathTree after one edge of its Graph changes weight, following Ramalingam and Reps' dynamic
+ * single-source shortest paths algorithm, instead of recomputing the tree from scratch. Only nodes whose distance
+ * actually changes are touched:
+ *  - if the edge u -> v got shorter (or was added) and now gives v a shorter path, v and the nodes it improves are
+ *    relaxed outward from v with a Dijkstra-style search that stops where distances no longer improve;
+ *  - if the edge got longer (or was removed) and was v's tree edge, the subtree hanging below v is the only part
+ *    whose distances can grow; each of its nodes is given its best path from outside the subtree through its
+ *    in-edges, and a Dijkstra-style search within the subtree settles the rest. Any other increase changes nothing.
+ * The repaired tree is a new copy; the old one is left untouched, so readers holding it never see a half-repaired
+ * tree. The repair reads the Graph's live neighbor maps, so it must run after the change has been applied. */
+final class TreeRepair {
+
+    private IndexedHeap heap = new IndexedHeap(0);
+    private int[] mark = new int[0]; // mark[v] == stamp if v is in the subtree being repaired
+    private int stamp;
+    private int[] stack = new int[0];
+    private int[] subtree = new int[0]; // the nodes of the subtree being repaired
+
+    /**
+     * Return the tree from tree's origin in g after the edge from orig to dest changed weight from oldWeight to
+     * newWeight (Double.POSITIVE_INFINITY for a missing edge). Returns tree itself if no distance changes, and
+     * otherwise a repaired copy covering every node of g.
+     */
+    ShortestPathTree repair(ShortestPathTree tree, Graph g, Node orig, Node dest, double oldWeight, double newWeight) {
+        int n = g.numNodes();
+        ensureCapacity(n);
+        int u = orig.getIndex();
+        int v = dest.getIndex();
+        double du = u < tree.numNodes() ? tree.shortestPathLength(u) : Double.POSITIVE_INFINITY;
+        if (newWeight < oldWeight) {
+            double dv = v < tree.numNodes() ? tree.shortestPathLength(v) : Double.POSITIVE_INFINITY;
+            if (du + newWeight >= dv) {
+                return tree;
+            }
+            ShortestPathTree repaired = tree.copy(n);
+            decrease(repaired, g, u, v, du + newWeight);
+            return repaired;
+        }
+        if (newWeight > oldWeight && v < tree.numNodes() && tree.previous(v) == u) {
+            ShortestPathTree repaired = tree.copy(n);
+            increase(repaired, g, v);
+            return repaired;
+        }
+        return tree;
+    }
+
+    /* Give v the shorter distance dv through u and propagate the improvement to every node it shortens. */
+    private void decrease(ShortestPathTree tree, Graph g, int u, int v, double dv) {
+        double[] dist = tree.distances();
+        int[] prev = tree.predecessors();
+        dist[v] = dv;
+        prev[v] = u;
+        heap.clear();
+        heap.add(v, dv);
+        while (!heap.isEmpty()) {
+            int x = heap.poll();
+            for (Map.Entry<Node, Double> edge : g.getNode(x).getNeighbors().entrySet()) {
+                int y = edge.getKey().getIndex();
+                double dy = dist[x] + edge.getValue();
+                if (dy < dist[y]) {
+                    dist[y] = dy;
+                    prev[y] = x;
+                    heap.addOrDecrease(y, dy);
+                }
+            }
+        }
+    }
+
+    /* Recompute the distances of v and every node below it in the tree, after v's tree edge got longer. */
+    private void increase(ShortestPathTree tree, Graph g, int v) {
+        double[] dist = tree.distances();
+        int[] prev = tree.predecessors();
+        nextStamp();
+
+        // collect the subtree rooted at v: the nodes whose tree path runs through v
+        int size = 0;
+        int top = 0;
+        stack[top++] = v;
+        mark[v] = stamp;
+        while (top > 0) {
+            int x = stack[--top];
+            subtree[size++] = x;
+            for (Node next : g.getNode(x).getNeighbors().keySet()) {
+                int y = next.getIndex();
+                if (prev[y] == x && mark[y] != stamp) {
+                    mark[y] = stamp;
+                    stack[top++] = y;
+                }
+            }
+        }
+
+        // every node outside the subtree keeps its distance; seed each subtree node with its best way in from outside
+        heap.clear();
+        for (int i = 0; i < size; i++) {
+            int x = subtree[i];
+            double best = Double.POSITIVE_INFINITY;
+            int bestPrev = -1;
+            for (Map.Entry<Node, Double> edge : g.getNode(x).getInNeighbors().entrySet()) {
+                int y = edge.getKey().getIndex();
+                if (mark[y] != stamp && dist[y] + edge.getValue() < best) {
+                    best = dist[y] + edge.getValue();
+                    bestPrev = y;
+                }
+            }
+            dist[x] = best;
+            prev[x] = bestPrev;
+            if (best != Double.POSITIVE_INFINITY) {
+                heap.add(x, best);
+            }
+        }
+
+        // then settle the subtree in distance order, relaxing only edges that stay inside it
+        while (!heap.isEmpty()) {
+            int x = heap.poll();
+            for (Map.Entry<Node, Double> edge : g.getNode(x).getNeighbors().entrySet()) {
+                int y = edge.getKey().getIndex();
+                double dy = dist[x] + edge.getValue();
+                if (mark[y] == stamp && dy < dist[y]) {
+                    dist[y] = dy;
+                    prev[y] = x;
+                    heap.addOrDecrease(y, dy);
+                }
+            }
+        }
+    }
+
+    /* Make room for a graph with n nodes. */
+    private void ensureCapacity(int n) {
+        if (mark.length < n) {
+            int capacity = Math.max(n, 2 * mark.length);
+            heap = new IndexedHeap(capacity);
+            mark = Arrays.copyOf(mark, capacity);
+            stack = new int[capacity];
+            subtree = new int[capacity];
+        }
+    }
+
+    /* Start a new repair, so that marks from earlier ones no longer count. */
+    private void nextStamp() {
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 0;
+        }
+        stamp++;
+    }
+}
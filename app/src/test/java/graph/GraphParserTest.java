@@ -0,0 +1,418 @@
+package graph;
+
+/* Description: Test cases checking that the alternative parsers build the same graphs as BasicParser and
+ * DB1BParser. */
+
+import static org.junit.Assert.*;
+import org.junit.FixMethodOrder;
+
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.net.URL;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.InputStream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class GraphParserTest {
+
+    /* Returns the file in the src/test/resources directory at test time. */
+    private File getResource(String fileName) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        URL resource = classLoader.getResource(fileName);
+        return new File(resource.getPath());
+    }
+
+    /* Opens the resource fn with parser p and returns the parsed graph. */
+    private Graph parse(GraphParser p, String fn) {
+        try {
+            p.open(getResource(fn));
+        } catch (FileNotFoundException e) {
+            fail("Could not find graph " + fn);
+        }
+        return p.parse();
+    }
+
+    /* Asserts that the two graphs have the same nodes, created in the same order, and the same edges. */
+    private void assertSameGraph(Graph expected, Graph actual) {
+        assertEquals(expected.numNodes(), actual.numNodes());
+        for (int v = 0; v < expected.numNodes(); v++) {
+            Node e = expected.getNode(v);
+            Node a = actual.getNode(v);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getNeighbors().size(), a.getNeighbors().size());
+            for (Map.Entry<Node, Double> edge : e.getNeighbors().entrySet()) {
+                assertEquals(edge.getValue(), a.getNeighbors().get(edge.getKey()));
+            }
+        }
+    }
+
+    /** Test case to check that the memory-mapped DB1B parser matches DB1BParser on db1-cropped.csv. */
+    @Test
+    public void test01MappedDB1B() {
+        Graph expected = parse(new DB1BParser(), "db1-cropped.csv");
+        Graph actual = parse(new MappedDB1BParser(), "db1-cropped.csv");
+        assertTrue(expected.numNodes() > 0);
+        assertSameGraph(expected, actual);
+    }
+
+    /** Test case to check that byte-level number parsing agrees with Double.parseDouble. */
+    @Test
+    public void test02AsciiNumbers() {
+        String[] inputs = {"985.00", "0.1", "-12.5", "\"7\"", "1e3", "123456789.123456789", "0.3000000000000000444"};
+        for (String in : inputs) {
+            ByteBuffer buf = ByteBuffer.wrap(in.getBytes());
+            assertEquals(in, Double.parseDouble(in.replace("\"", "")),
+                    AsciiNumbers.parseDouble(buf, 0, buf.limit()), 0.0);
+        }
+    }
+
+    /** Test case to check that parallel parsing matches the sequential parsers on the test resources. */
+    @Test
+    public void test03ParallelMatchesSequential() {
+        String[] basicFiles = {"Simple0.txt", "Simple1.txt", "Simple2.txt", "Simple3.txt", "FakeCanada.txt"};
+        for (String fn : basicFiles) {
+            assertSameGraph(parse(new BasicParser(), fn),
+                    parse(new ParallelParser(ParallelParser.Format.BASIC, 2), fn));
+        }
+        assertSameGraph(parse(new DB1BParser(), "db1-cropped.csv"),
+                parse(new ParallelParser(ParallelParser.Format.DB1B, 2), "db1-cropped.csv"));
+    }
+
+    /** Test case to check that a file split into several chunks keeps the last distance of a repeated edge and
+     * creates nodes in the same order as BasicParser. */
+    @Test
+    public void test04ParallelManyChunks() throws IOException {
+        File f = File.createTempFile("parallel", ".txt");
+        f.deleteOnExit();
+        Random rand = new Random(42);
+        try (PrintWriter out = new PrintWriter(f)) {
+            for (int i = 0; i < 300000; i++) {
+                out.println("N" + rand.nextInt(300) + " N" + rand.nextInt(300) + " " + rand.nextInt(5000));
+            }
+        }
+        BasicParser basic = new BasicParser();
+        basic.open(f);
+        ParallelParser parallel = new ParallelParser(ParallelParser.Format.BASIC, 4);
+        parallel.open(f);
+        assertSameGraph(basic.parse(), parallel.parse());
+    }
+
+    /** Test case to check that a snapshot written from db1-cropped.csv loads back with the same nodes and edges. */
+    @Test
+    public void test05Snapshot() throws IOException {
+        Graph g = parse(new DB1BParser(), "db1-cropped.csv");
+        CSRGraph csr = g.compile();
+        File f = File.createTempFile("graph", ".gsnp");
+        f.deleteOnExit();
+        GraphSnapshot.write(csr, f);
+
+        GraphSnapshot snap = GraphSnapshot.load(f);
+        assertEquals(csr.numNodes(), snap.numNodes());
+        assertEquals(csr.numEdges(), snap.numEdges());
+        for (int v = 0; v < csr.numNodes(); v++) {
+            assertEquals(csr.idOf(v), snap.idOf(v));
+            assertEquals(v, snap.indexOf(csr.idOf(v)));
+            assertEquals(csr.edgeBegin(v), snap.edgeBegin(v));
+            assertEquals(csr.edgeEnd(v), snap.edgeEnd(v));
+        }
+        for (int e = 0; e < csr.numEdges(); e++) {
+            assertEquals(csr.target(e), snap.target(e));
+            assertEquals(csr.weight(e), snap.weight(e), 0.0);
+        }
+        assertEquals(-1, snap.indexOf("NOT AN AIRPORT"));
+        assertSameGraph(g, ShortestPaths.parseGraph("snapshot", f.getPath()));
+    }
+
+    /** Test case to check that the streaming parser matches DB1BParser on db1-cropped.csv read from a stream, that
+     * a background reader following a file publishes rows appended to it, and that close() stops a reader blocked in
+     * a read that ignores interrupts */
+    @Test
+    public void test06Streaming() throws IOException, InterruptedException {
+        StreamingParser stream = new StreamingParser(ParallelParser.Format.DB1B, 7, 1000);
+        stream.open(new FileInputStream(getResource("db1-cropped.csv")));
+        Graph g = stream.parse();
+        assertSameGraph(parse(new DB1BParser(), "db1-cropped.csv"), g);
+        assertEquals(g.numNodes(), stream.snapshot().numNodes());
+        assertTrue(stream.batchesPublished() > 1);
+        assertEquals(stream.rowsRead(), stream.rowsPublished());
+
+        // a CRLF file whose last header column is one the parser needs
+        String crlf = "\"ItinID\",\"Origin\",\"Dest\",\"Distance\"\r\n1,\"YUL\",\"YOW\",94.00\r\n";
+        StreamingParser windows = new StreamingParser(ParallelParser.Format.DB1B);
+        windows.open(new ByteArrayInputStream(crlf.getBytes(StandardCharsets.UTF_8)));
+        Graph yul = windows.parse();
+        assertEquals(2, yul.numNodes());
+        assertEquals(94.0, yul.getNode("YUL").getNeighbors().get(yul.getNode("YOW")), 0.0);
+
+        File f = File.createTempFile("coupons", ".csv");
+        f.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(new FileWriter(f))) {
+            out.println("\"ItinID\",\"Origin\",\"Dest\",\"Distance\",");
+            out.println("1,\"YUL\",\"YOW\",94.00,");
+            out.println("2,\"YOW\",\"YYZ\",226.00,");
+        }
+        try (StreamingParser tail = new StreamingParser(ParallelParser.Format.DB1B, 100, 10)) {
+            tail.open(f);
+            tail.start();
+            assertTrue(tail.awaitRows(2, 10000));
+            CSRGraph before = tail.snapshot();
+            assertEquals(3, before.numNodes());
+            try (PrintWriter out = new PrintWriter(new FileWriter(f, true))) {
+                out.println("3,\"YYZ\",\"YVR\",2080.00,");
+            }
+            assertTrue(tail.awaitRows(3, 10000));
+            CSRGraph after = tail.snapshot();
+            assertEquals(3, before.numNodes());
+            assertEquals(2, before.numEdges());
+            assertEquals(4, after.numNodes());
+            PathResult r = new Dijkstra(after).query(after.indexOf("YUL"), after.indexOf("YVR"));
+            assertEquals(2400.0, r.getLength(), 1e-6);
+            assertEquals(0, tail.lagBytes());
+            assertEquals(0, tail.lagNanos());
+            assertTrue(tail.maxBatchLatencyNanos() >= tail.lastBatchLatencyNanos());
+            assertNull(tail.getFailure());
+        }
+
+        // like a read on a FIFO or socket: interrupts are ignored, and only closing the stream ends the read
+        CountDownLatch closed = new CountDownLatch(1);
+        InputStream blocking = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                while (true) {
+                    try {
+                        closed.await();
+                        throw new IOException("stream closed");
+                    } catch (InterruptedException e) {
+                        // ignored
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        StreamingParser blocked = new StreamingParser(ParallelParser.Format.DB1B);
+        blocked.open(blocking);
+        blocked.start();
+        Thread.sleep(50);
+        long start = System.nanoTime();
+        blocked.close();
+        assertTrue(System.nanoTime() - start < 2000000000L);
+        assertNull(blocked.getFailure());
+    }
+
+    /** Test case to check the per-edge coupon totals gathered while parsing db1-cropped.csv against totals computed
+     * from the split lines */
+    @Test
+    public void test07Aggregates() throws IOException {
+        MappedDB1BParser p = new MappedDB1BParser(true);
+        Graph g = parse(p, "db1-cropped.csv");
+        assertSameGraph(parse(new DB1BParser(), "db1-cropped.csv"), g);
+        EdgeAggregates agg = p.getAggregates();
+
+        // coupons, passengers, min, max, itinerary coupons
+        Map<String, double[]> expected = new HashMap<String, double[]>();
+        Map<String, Integer> carrierCounts = new HashMap<String, Integer>();
+        Map<String, Integer> operatingCounts = new HashMap<String, Integer>();
+        List<String> lines = Files.readAllLines(getResource("db1-cropped.csv").toPath());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.replace("\"", "").split(",");
+            String edge = f[9] + "-" + f[18];
+            double distance = Double.parseDouble(f[31]);
+            double[] totals = expected.computeIfAbsent(edge, k -> new double[] {0, 0, distance, distance, 0});
+            totals[0]++;
+            totals[1] += Double.parseDouble(f[29]);
+            totals[2] = Math.min(totals[2], distance);
+            totals[3] = Math.max(totals[3], distance);
+            totals[4] += Integer.parseInt(f[3]);
+            carrierCounts.merge(edge + "-" + f[26], 1, Integer::sum);
+            operatingCounts.merge(edge + "-" + f[27], 1, Integer::sum);
+        }
+
+        assertEquals(expected.size(), agg.size());
+        int numEdges = 0;
+        for (int v = 0; v < g.numNodes(); v++) {
+            numEdges += g.getNode(v).getNeighbors().size();
+        }
+        assertEquals(numEdges, agg.size());
+        for (int e = 0; e < agg.size(); e++) {
+            String edge = g.getNode(agg.orig(e)).getId() + "-" + g.getNode(agg.dest(e)).getId();
+            double[] totals = expected.get(edge);
+            assertEquals(edge, (int) totals[0], agg.coupons(e));
+            assertEquals(edge, totals[1], agg.passengers(e), 1e-9);
+            assertEquals(edge, totals[2], agg.minDistance(e), 0.0);
+            assertEquals(edge, totals[3], agg.maxDistance(e), 0.0);
+            assertEquals(edge, (int) totals[4], agg.itineraryCoupons(e));
+            assertEquals(e, agg.find(agg.orig(e), agg.dest(e)));
+            int sold = 0;
+            int flown = 0;
+            for (int c = 0; c < agg.numCarriers(); c++) {
+                sold += agg.carrierCoupons(e, c);
+                flown += agg.operatingCoupons(e, c);
+                assertEquals(edge, (int) carrierCounts.getOrDefault(edge + "-" + agg.carrier(c), 0),
+                        agg.carrierCoupons(e, c));
+                assertEquals(edge, (int) operatingCounts.getOrDefault(edge + "-" + agg.carrier(c), 0),
+                        agg.operatingCoupons(e, c));
+            }
+            assertEquals(edge, agg.coupons(e), sold);
+            assertEquals(edge, agg.coupons(e), flown);
+        }
+        assertEquals(-1, agg.carrierIndex("NOT A CARRIER"));
+        assertNull(new MappedDB1BParser().getAggregates());
+
+        // the Scanner-based parser gathers the same totals
+        DB1BParser scanning = new DB1BParser(true);
+        assertSameGraph(g, parse(scanning, "db1-cropped.csv"));
+        EdgeAggregates same = scanning.getAggregates();
+        assertEquals(agg.size(), same.size());
+        assertEquals(agg.numCarriers(), same.numCarriers());
+        for (int e = 0; e < agg.size(); e++) {
+            int s = same.find(agg.orig(e), agg.dest(e));
+            assertEquals(agg.coupons(e), same.coupons(s));
+            assertEquals(agg.passengers(e), same.passengers(s), 1e-9);
+            assertEquals(agg.itineraryCoupons(e), same.itineraryCoupons(s));
+            for (int c = 0; c < agg.numCarriers(); c++) {
+                int sc = same.carrierIndex(agg.carrier(c));
+                assertEquals(agg.carrierCoupons(e, c), same.carrierCoupons(s, sc));
+                assertEquals(agg.operatingCoupons(e, c), same.operatingCoupons(s, sc));
+            }
+        }
+        assertNull(new DB1BParser().getAggregates());
+    }
+
+    /** Test case to check that the filtering reader returns the same rows and projected values as filtering the
+     * split lines of db1-cropped.csv, and builds the same graph as DB1BParser when nothing is filtered */
+    @Test
+    public void test08FilteredReader() throws IOException {
+        DB1BReader r = new DB1BReader(getResource("db1-cropped.csv"));
+        assertSameGraph(parse(new DB1BParser(), "db1-cropped.csv"), r.readGraph());
+
+        r.select("Dest", "Origin", "Passengers");
+        r.whereIn("TkCarrier", "AA", "DL");
+        r.whereEquals("ItinGeoType", "2");
+        r.whereBetween("Distance", 500, 1500);
+        List<String> actual = new ArrayList<String>();
+        long matched = r.read(row -> actual.add(row.getString(1) + "-" + row.getString(0) + " "
+                + row.getDouble(2)));
+
+        List<String> expected = new ArrayList<String>();
+        List<String> lines = Files.readAllLines(getResource("db1-cropped.csv").toPath());
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.replace("\"", "").split(",");
+            double distance = Double.parseDouble(f[31]);
+            if ((f[26].equals("AA") || f[26].equals("DL")) && f[34].equals("2")
+                    && distance >= 500 && distance <= 1500) {
+                expected.add(f[9] + "-" + f[18] + " " + Double.parseDouble(f[29]));
+            }
+        }
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), matched);
+
+        try {
+            r.select("Origin", "origin");
+            fail("a column may be selected only once");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        r.whereEquals("TkCarrier", "NOT A CARRIER");
+        assertEquals(0, r.read(row -> fail("no row should match")));
+        r.clearPredicates();
+        assertEquals(lines.size() - 1, r.read(row -> { }));
+        r.close();
+    }
+
+    /** Test case to check that a DB1B file parsed into off-heap storage, in direct memory and in mapped files, has
+     * the same nodes, edges and edge order as the compiled heap Graph, and answers the same queries */
+    @Test
+    public void test09OffHeap() throws IOException {
+        CSRGraph expected = parse(new DB1BParser(), "db1-cropped.csv").compile();
+        File dir = Files.createTempDirectory("offheap").toFile();
+        for (File storage : new File[] {null, dir}) {
+            MappedDB1BParser p = new MappedDB1BParser();
+            p.open(getResource("db1-cropped.csv"));
+            OffHeapGraph g = p.parseOffHeap(storage);
+            for (IndexedGraph[] pair : new IndexedGraph[][] {{expected, g}, {expected.transpose(), g.transpose()}}) {
+                IndexedGraph e = pair[0];
+                IndexedGraph a = pair[1];
+                assertEquals(e.numNodes(), a.numNodes());
+                assertEquals(e.numEdges(), a.numEdges());
+                for (int v = 0; v < e.numNodes(); v++) {
+                    assertEquals(e.idOf(v), a.idOf(v));
+                    assertEquals(v, a.indexOf(e.idOf(v)));
+                    assertEquals(e.edgeBegin(v), a.edgeBegin(v));
+                    assertEquals(e.edgeEnd(v), a.edgeEnd(v));
+                }
+                for (int i = 0; i < e.numEdges(); i++) {
+                    assertEquals(e.target(i), a.target(i));
+                    assertEquals(e.weight(i), a.weight(i), 0.0);
+                }
+            }
+            assertSame(g, g.transpose().transpose());
+            assertEquals(-1, g.indexOf("NOT AN AIRPORT"));
+            Dijkstra d = new Dijkstra(g);
+            Dijkstra heap = new Dijkstra(expected);
+            for (int s = 0; s < g.numNodes(); s += 7) {
+                d.compute(s);
+                heap.compute(s);
+                for (int t = 0; t < g.numNodes(); t++) {
+                    assertEquals(heap.shortestPathLength(t), d.shortestPathLength(t), 0.0);
+                }
+            }
+            ((OffHeapGraph) g.transpose()).close(); // frees g as well
+            g.close();
+            try {
+                g.transpose();
+                fail("transpose of a closed graph");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals(0, dir.listFiles().length); // every temporary file is deleted on close
+        dir.delete();
+
+        // repeated pairs keep their last weight, as with Graph.addEdge; ids of any length round-trip
+        OffHeapGraph.Builder b = new OffHeapGraph.Builder();
+        for (int i = 0; i < 1000; i++) {
+            b.addEdge("N" + (i % 37), "A LONGER NODE NAME " + (i % 11), i);
+        }
+        assertEquals(1000, b.numAdded());
+        OffHeapGraph g = b.build();
+        assertEquals(48, g.numNodes());
+        assertEquals(37 * 11, g.numEdges());
+        int u = g.indexOf("N3");
+        int v = g.indexOf("A LONGER NODE NAME 5");
+        int last = -1;
+        for (int i = 0; i < 1000; i++) {
+            if (i % 37 == 3 && i % 11 == 5) {
+                last = i;
+            }
+        }
+        for (int e = g.edgeBegin(u); e < g.edgeEnd(u); e++) {
+            if (g.target(e) == v) {
+                assertEquals(last, g.weight(e), 0.0);
+            }
+        }
+        g.close();
+    }
+}
@@ -11,9 +11,28 @@ import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
 import java.net.URL;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
 
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class ShortestPathsTest {
@@ -40,6 +59,10 @@ public class ShortestPathsTest {
         return result;
     }
 
+    /* The basic graph files in src/test/resources that the engines are cross-checked on. */
+    private static final String[] BASIC_FILES =
+        {"Simple0.txt", "Simple1.txt", "Simple2.txt", "Simple3.txt", "FakeCanada.txt"};
+
     /** Dummy test case demonstrating syntax to create a graph from scratch.
      * Write your own tests below. */
     @Test
@@ -178,7 +201,937 @@ public class ShortestPathsTest {
         assertEquals(sp.shortestPathLength(vancouver), 2423.0, 1e-6);
     }
 
+    /** Test case to check that compiling Simple1.txt to CSR form keeps every node and edge. */
+    @Test
+    public void test09CompileCSR() {
+        Graph g = loadBasicGraph("Simple1.txt");
+        CSRGraph csr = g.compile();
+        assertEquals(csr.numNodes(), g.numNodes());
+        int numEdges = 0;
+        for (int v = 0; v < csr.numNodes(); v++) {
+            Node n = g.getNode(v);
+            assertEquals(csr.idOf(v), n.getId());
+            assertEquals(csr.indexOf(n.getId()), v);
+            assertEquals(csr.edgeEnd(v) - csr.edgeBegin(v), n.getNeighbors().size());
+            for (int e = csr.edgeBegin(v); e < csr.edgeEnd(v); e++) {
+                Node target = g.getNode(csr.target(e));
+                assertEquals(csr.weight(e), n.getNeighbors().get(target), 1e-6);
+            }
+            numEdges += n.getNeighbors().size();
+        }
+        assertEquals(csr.numEdges(), numEdges);
+        assertEquals(csr.indexOf("NOT A NODE"), -1);
+    }
+
+
+    /** Test case to check that Dijkstra finds the same path lengths as ShortestPaths from every origin of every
+     * test graph. */
+    @Test
+    public void test10DijkstraMatchesShortestPaths() {
+        for (String fn : BASIC_FILES) {
+            Graph g = loadBasicGraph(fn);
+            CSRGraph csr = g.compile();
+            Dijkstra d = new Dijkstra(csr);
+            ShortestPaths sp = new ShortestPaths();
+            for (int s = 0; s < csr.numNodes(); s++) {
+                sp.compute(g.getNode(s));
+                d.compute(s);
+                for (int t = 0; t < csr.numNodes(); t++) {
+                    Node dest = g.getNode(t);
+                    assertEquals(fn, sp.shortestPathLength(dest), d.shortestPathLength(t), 1e-6);
+                    if (sp.shortestPath(dest) == null) {
+                        assertNull(d.shortestPath(t));
+                    } else {
+                        assertEquals(fn, sp.shortestPath(dest).size(), d.shortestPath(t).length);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Test case to check that Dijkstra keeps fractional distances, which ShortestPaths rounds in its heap. */
+    @Test
+    public void test11DijkstraFractional() {
+        Graph g = new Graph();
+        g.addEdge(g.getNode("A"), g.getNode("B"), 0.5);
+        g.addEdge(g.getNode("A"), g.getNode("C"), 0.4);
+        g.addEdge(g.getNode("B"), g.getNode("D"), 0.5);
+        g.addEdge(g.getNode("C"), g.getNode("D"), 0.7);
+        CSRGraph csr = g.compile();
+        Dijkstra d = new Dijkstra(csr);
+        d.compute(csr.indexOf("A"));
+        int[] path = d.shortestPath(csr.indexOf("D"));
+        assertEquals(path.length, 3);
+        assertEquals(csr.idOf(path[1]), "B");
+        assertEquals(d.shortestPathLength(csr.indexOf("D")), 1.0, 1e-9);
+    }
+
+    /** Test case to check that the early-terminating query agrees with a full compute on every pair of nodes. */
+    @Test
+    public void test12QueryMatchesCompute() {
+        for (String fn : BASIC_FILES) {
+            Graph g = loadBasicGraph(fn);
+            CSRGraph csr = g.compile();
+            Dijkstra full = new Dijkstra(csr);
+            Dijkstra p2p = new Dijkstra(csr);
+            for (int s = 0; s < csr.numNodes(); s++) {
+                full.compute(s);
+                for (int t = 0; t < csr.numNodes(); t++) {
+                    PathResult r = p2p.query(s, t);
+                    assertEquals(fn, full.shortestPathLength(t), r.getLength(), 1e-6);
+                    assertEquals(full.shortestPath(t) != null, r.exists());
+                    assertTrue(r.getSettled() <= csr.numNodes());
+                }
+            }
+        }
+    }
+
+    /** Test case to check the path of a point-to-point query on FakeCanada.txt in the ShortestPaths shape. */
+    @Test
+    public void test13QueryFakeCanada() {
+        Graph g = loadBasicGraph("FakeCanada.txt");
+        CSRGraph csr = g.compile();
+        PathResult r = new Dijkstra(csr).query(csr.indexOf("YUL"), csr.indexOf("YOW"));
+        LinkedList<Node> path = r.toNodes(g);
+        assertEquals(path.size(), 2);
+        assertEquals(path.getFirst(), g.getNode("YUL"));
+        assertEquals(path.getLast(), g.getNode("YOW"));
+        assertEquals(r.getLength(), 94.0, 1e-6);
+        assertEquals(r.getSettled(), 2);
+    }
+
+    /** Test case to check that bidirectional search finds the same path lengths as ShortestPaths on every pair of
+     * nodes, and that its paths are real paths of that length. */
+    @Test
+    public void test14BidirectionalMatchesShortestPaths() {
+        for (String fn : BASIC_FILES) {
+            Graph g = loadBasicGraph(fn);
+            CSRGraph csr = g.compile();
+            BidirectionalDijkstra bd = new BidirectionalDijkstra(csr);
+            ShortestPaths sp = new ShortestPaths();
+            for (int s = 0; s < csr.numNodes(); s++) {
+                sp.compute(g.getNode(s));
+                for (int t = 0; t < csr.numNodes(); t++) {
+                    PathResult r = bd.query(s, t);
+                    assertEquals(fn, sp.shortestPathLength(g.getNode(t)), r.getLength(), 1e-6);
+                    if (r.exists()) {
+                        LinkedList<Node> path = r.toNodes(g);
+                        assertEquals(path.getFirst(), g.getNode(s));
+                        assertEquals(path.getLast(), g.getNode(t));
+                        double length = 0;
+                        Node previous = null;
+                        for (Node n : path) {
+                            if (previous != null) {
+                                length += previous.getNeighbors().get(n);
+                            }
+                            previous = n;
+                        }
+                        assertEquals(fn, r.getLength(), length, 1e-6);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Test case to check that Graph.addEdge keeps the reverse index used by backward searches. */
+    @Test
+    public void test15ReverseIndex() {
+        Graph g = loadBasicGraph("Simple1.txt");
+        CSRGraph back = g.compile().transpose();
+        CSRGraph rebuilt = CSRGraph.transposeOf(g.compile());
+        for (int v = 0; v < g.numNodes(); v++) {
+            Node n = g.getNode(v);
+            for (Node from : n.getInNeighbors().keySet()) {
+                assertEquals(from.getNeighbors().get(n), n.getInNeighbors().get(from));
+            }
+            assertEquals(back.edgeEnd(v) - back.edgeBegin(v), n.getInNeighbors().size());
+            for (int e = back.edgeBegin(v); e < back.edgeEnd(v); e++) {
+                assertEquals(back.target(e), rebuilt.target(e));
+                assertEquals(back.weight(e), rebuilt.weight(e), 0.0);
+            }
+        }
+    }
+
+    /** Test case to check that A* with the trivial bound agrees with Dijkstra on every pair of nodes. */
+    @Test
+    public void test16AStarZeroBound() {
+        for (String fn : BASIC_FILES) {
+            CSRGraph csr = loadBasicGraph(fn).compile();
+            Dijkstra d = new Dijkstra(csr);
+            AStar astar = new AStar(csr);
+            for (int s = 0; s < csr.numNodes(); s++) {
+                d.compute(s);
+                for (int t = 0; t < csr.numNodes(); t++) {
+                    assertEquals(fn, d.shortestPathLength(t), astar.query(s, t, LowerBound.ZERO).getLength(), 1e-6);
+                }
+            }
+        }
+    }
+
+    /** Test case to check A* with great-circle bounds from a coordinates file: it must find the shortest path and
+     * settle no more nodes than Dijkstra. */
+    @Test
+    public void test17AStarGreatCircle() throws IOException {
+        File f = File.createTempFile("airports", ".csv");
+        f.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(f)) {
+            out.println("\"IATA\",\"Name\",\"Latitude\",\"Longitude\"");
+            out.println("\"YUL\",\"Montreal\",45.47,-73.74");
+            out.println("\"YOW\",\"Ottawa\",45.32,-75.67");
+            out.println("\"YYZ\",\"Toronto\",43.68,-79.63");
+            out.println("\"YWG\",\"Winnipeg\",49.91,-97.24");
+            out.println("\"YYC\",\"Calgary\",51.13,-114.01");
+            out.println("\"YVR\",\"Vancouver\",49.19,-123.18");
+        }
+        AirportCoordinates coords = AirportCoordinates.load(f);
+        String[] codes = {"YUL", "YOW", "YYZ", "YWG", "YYC", "YVR"};
+        Graph g = new Graph();
+        // every pair is connected in both directions, by its great-circle distance rounded to whole miles
+        for (String a : codes) {
+            for (String b : codes) {
+                if (!a.equals(b)) {
+                    double miles = Math.rint(AirportCoordinates.greatCircleMiles(coords.latitude(a),
+                            coords.longitude(a), coords.latitude(b), coords.longitude(b)));
+                    g.addEdge(g.getNode(a), g.getNode(b), a.equals("YUL") || b.equals("YUL") ? miles : miles * 1.5);
+                }
+            }
+        }
+        CSRGraph csr = g.compile();
+        int yul = csr.indexOf("YUL");
+        int yvr = csr.indexOf("YVR");
+        PathResult withBound = new AStar(csr).query(yul, yvr, coords.greatCircleBound(csr));
+        PathResult plain = new Dijkstra(csr).query(yul, yvr);
+        assertEquals(plain.getLength(), withBound.getLength(), 1e-6);
+        assertEquals(withBound.getPath().length, 2);
+        assertTrue(withBound.getSettled() <= plain.getSettled());
+    }
+
+    /** Test case to check that A* with landmark bounds agrees with Dijkstra on every pair of nodes, and that saved
+     * landmark tables load back with the same bounds. */
+    @Test
+    public void test18Landmarks() throws IOException {
+        for (String fn : BASIC_FILES) {
+            CSRGraph csr = loadBasicGraph(fn).compile();
+            Landmarks alt = Landmarks.build(csr, 3);
+            File f = File.createTempFile("landmarks", ".alt");
+            f.deleteOnExit();
+            alt.write(f, csr);
+            Landmarks loaded = Landmarks.read(f, csr);
+            assertEquals(alt.size(), loaded.size());
+
+            Dijkstra d = new Dijkstra(csr);
+            AStar astar = new AStar(csr);
+            for (int s = 0; s < csr.numNodes(); s++) {
+                d.compute(s);
+                for (int t = 0; t < csr.numNodes(); t++) {
+                    assertTrue(fn, alt.estimate(s, t) <= d.shortestPathLength(t));
+                    assertEquals(fn, alt.estimate(s, t), loaded.estimate(s, t), 0.0);
+                    assertEquals(fn, d.shortestPathLength(t), astar.query(s, t, alt).getLength(), 1e-6);
+                }
+            }
+        }
+    }
+
+    /** Test case to check that contraction hierarchy queries match Dijkstra, give valid paths, and survive a
+     * round trip through a file */
+    @Test
+    public void test19ContractionHierarchy() throws IOException {
+        for (String fn : BASIC_FILES) {
+            Graph g = loadBasicGraph(fn);
+            CSRGraph csr = g.compile();
+            ContractionHierarchy built = ContractionHierarchy.build(csr);
+            File f = File.createTempFile("hierarchy", ".ch");
+            f.deleteOnExit();
+            built.write(f);
+            ContractionHierarchy ch = ContractionHierarchy.read(f, csr);
+
+            Dijkstra d = new Dijkstra(csr);
+            CHQuery q = new CHQuery(ch);
+            for (int s = 0; s < csr.numNodes(); s++) {
+                d.compute(s);
+                for (int t = 0; t < csr.numNodes(); t++) {
+                    PathResult r = q.query(s, t);
+                    assertEquals(fn, d.shortestPathLength(t), r.getLength(), 1e-6);
+                    if (!r.exists()) {
+                        assertNull(fn, q.shortestPath(g, g.getNode(s), g.getNode(t)));
+                        continue;
+                    }
+                    int[] path = r.getPath();
+                    assertEquals(s, path[0]);
+                    assertEquals(t, path[path.length - 1]);
+                    assertEquals(fn, r.getLength(), pathLength(csr, path), 1e-6);
+                    assertEquals(fn, path.length, q.shortestPath(g, g.getNode(s), g.getNode(t)).size());
+                }
+            }
+        }
+    }
+
+    /** Test case to check that concurrent and batched queries through a QueryService match a single Dijkstra */
+    @Test
+    public void test20QueryService() {
+        for (String fn : BASIC_FILES) {
+            CSRGraph csr = loadBasicGraph(fn).compile();
+            int n = csr.numNodes();
+            int[] origins = new int[n * n];
+            int[] destinations = new int[n * n];
+            for (int i = 0; i < n * n; i++) {
+                origins[i] = i / n;
+                destinations[i] = i % n;
+            }
+            Dijkstra d = new Dijkstra(csr);
+            try (QueryService service = new QueryService(csr, 3)) {
+                PathResult[] batch = service.submitBatch(origins, destinations).join();
+                for (int i = 0; i < n * n; i++) {
+                    PathResult expected = d.query(origins[i], destinations[i]);
+                    assertEquals(fn, expected.getLength(), batch[i].getLength(), 0.0);
+                    assertEquals(fn, expected.getIds(), batch[i].getIds());
+                    assertEquals(fn, expected.getLength(), service.query(origins[i], destinations[i]).getLength(), 0.0);
+                }
+                String a = csr.idOf(0);
+                assertEquals(fn, d.query(0, 0).getLength(), service.submit(a, a).join().getLength(), 0.0);
+                assertTrue(service.submit(a, "no such node").isCompletedExceptionally());
+            }
+        }
+    }
+
+
+    /** Test case to check that a parallel distance matrix, on the heap or in a mapped file, matches Dijkstra on
+     * every pair of nodes, and that a run can be cancelled */
+    @Test
+    public void test21ManyToMany() throws IOException {
+        for (String fn : BASIC_FILES) {
+            CSRGraph csr = loadBasicGraph(fn).compile();
+            ManyToMany m = new ManyToMany(csr, 3);
+            int[] sources = m.allNodes();
+            int[] targets = new int[csr.numNodes()];
+            for (int j = 0; j < targets.length; j++) {
+                targets[j] = targets.length - 1 - j;
+            }
+            int[] reported = new int[1];
+            DistanceMatrix onHeap = m.compute(sources, targets, (done, total) -> {
+                synchronized (reported) {
+                    reported[0]++;
+                }
+            });
+            assertEquals(fn, csr.numNodes(), reported[0]);
+            assertFalse(onHeap.isMapped());
+            File f = File.createTempFile("distances", ".matrix");
+            f.deleteOnExit();
+            DistanceMatrix mapped = m.compute(sources, targets, f, null);
+            assertTrue(mapped.isMapped());
+            assertEquals(8L * sources.length * targets.length, f.length());
+
+            Dijkstra d = new Dijkstra(csr);
+            for (int i = 0; i < sources.length; i++) {
+                d.compute(sources[i]);
+                for (int j = 0; j < targets.length; j++) {
+                    assertEquals(fn, d.shortestPathLength(targets[j]), onHeap.get(i, j), 0.0);
+                    assertEquals(fn, d.shortestPathLength(targets[j]), mapped.get(i, j), 0.0);
+                }
+            }
+        }
+
+        CSRGraph csr = loadBasicGraph("FakeCanada.txt").compile();
+        ManyToMany m = new ManyToMany(csr, 1);
+        try {
+            m.compute(m.allNodes(), m.allNodes(), (done, total) -> m.cancel());
+            fail("expected the computation to be cancelled");
+        } catch (CancellationException e) {
+            // expected
+        }
+        // a cancel() between runs does not carry over, but a Cancellation cancelled before its run starts stops it
+        assertEquals(csr.numNodes(), m.compute(m.allNodes(), m.allNodes(), null).numSources());
+        ManyToMany.Cancellation early = new ManyToMany.Cancellation();
+        early.cancel();
+        try {
+            m.compute(m.allNodes(), m.allNodes(), null, early);
+            fail("expected the computation to be cancelled before it started");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+
+    /** Test case to check that cached shortest path trees match Dijkstra, are evicted in least recently used order,
+     * and are dropped when an edge is added */
+    @Test
+    public void test22TreeCache() {
+        Graph g = loadBasicGraph("FakeCanada.txt");
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(g, 2);
+        Node yul = g.getNode("YUL");
+        Node yvr = g.getNode("YVR");
+        Node yyz = g.getNode("YYZ");
+        assertEquals(2423.0, cache.shortestPathLength(yul, yvr), 1e-6);
+        assertEquals(5, cache.shortestPath(yul, yvr).size());
+        assertSame(cache.get(yul), cache.get(yul));
+        assertEquals(1, cache.misses());
+        assertEquals(3, cache.hits());
+        cache.get(yvr);
+        cache.get(yyz); // evicts YUL, the least recently used
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        cache.get(yul);
+        assertEquals(4, cache.misses());
+
+        CSRGraph csr = g.compile();
+        Dijkstra d = new Dijkstra(csr);
+        for (int s = 0; s < csr.numNodes(); s++) {
+            d.compute(s);
+            ShortestPathTree tree = cache.get(s);
+            for (int t = 0; t < csr.numNodes(); t++) {
+                assertEquals(d.shortestPathLength(t), tree.shortestPathLength(t), 0.0);
+                assertArrayEquals(d.shortestPath(t), tree.shortestPath(t));
+            }
+        }
+
+        // a direct flight makes the tree from YUL stale, whether it is computed afresh or repaired
+        g.addEdge(yul, yvr, 2300);
+        assertEquals(2300.0, cache.shortestPathLength(yul, yvr), 1e-6);
+        assertEquals(2, cache.size());
 
+        ShortestPathTreeCache small = new ShortestPathTreeCache(g, 10, cache.get(yul).sizeInBytes());
+        small.get(yul);
+        small.get(yvr);
+        assertEquals(1, small.size());
+        assertEquals(1, small.evictions());
+    }
+
+
+    /** Test case to check that cached trees repaired after random edge additions, reweightings and removals match
+     * trees computed from scratch, without any new misses */
+    @Test
+    public void test23TreeRepair() {
+        Random rand = new Random(15);
+        Graph g = new Graph();
+        for (int i = 0; i < 300; i++) {
+            g.addEdge(g.getNode("N" + rand.nextInt(40)), g.getNode("N" + rand.nextInt(40)), 1 + rand.nextInt(20));
+        }
+        int n = g.numNodes();
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(g, n);
+        for (int s = 0; s < n; s++) {
+            cache.get(s);
+        }
+        for (int step = 0; step < 200; step++) {
+            Node a = g.getNode(rand.nextInt(n));
+            Node b = g.getNode(rand.nextInt(n));
+            if (rand.nextInt(3) == 0) {
+                g.removeEdge(a, b);
+            } else {
+                g.addEdge(a, b, 1 + rand.nextInt(20));
+            }
+            if (step % 20 == 19) {
+                CSRGraph csr = g.compile();
+                Dijkstra d = new Dijkstra(csr);
+                for (int s = 0; s < n; s++) {
+                    d.compute(s);
+                    ShortestPathTree tree = cache.get(s);
+                    for (int t = 0; t < n; t++) {
+                        assertEquals(d.shortestPathLength(t), tree.shortestPathLength(t), 1e-9);
+                        int[] path = tree.shortestPath(t);
+                        if (path != null) {
+                            assertEquals(tree.shortestPathLength(t), pathLength(csr, path), 1e-9);
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(n, cache.misses());
+        assertTrue(cache.repairs() > 0);
+        assertFalse(g.removeEdge(g.getNode("N0"), g.getNode("NOT A NODE")));
+
+        cache.close();
+        long repairs = cache.repairs();
+        g.addEdge(g.getNode(0), g.getNode(1), 0);
+        assertEquals(repairs, cache.repairs());
+    }
+
+    /** Test case to check the node dictionary: packed short ids, long and non-ASCII ids, byte lookups and the getNodes
+     * view */
+    @Test
+    public void test24NodeDictionary() {
+        Graph g = new Graph();
+        String[] ids = {"YUL", "A", "A\u0000", "", "SEVENCH", "EIGHTCHR", "Z\u00fcrich", "NOT AN AIRPORT"};
+        for (int i = 0; i < ids.length; i++) {
+            Node n = g.getNode(ids[i]);
+            assertEquals(i, n.getIndex());
+            assertSame(n, g.getNode(ids[i]));
+            assertEquals(i, g.indexOf(ids[i]));
+        }
+        assertEquals(ids.length, g.numNodes());
+        assertEquals(-1, g.indexOf("YOW"));
+        assertEquals(-1, g.indexOf("A\u0000\u0000"));
+
+        ByteBuffer buf = ByteBuffer.wrap("xYULxYOWxEIGHTCHRx".getBytes());
+        assertEquals(0, g.indexOf(buf, 1, 4));
+        assertEquals(5, g.indexOf(buf, 9, 17));
+        long version = g.getVersion();
+        int yow = g.indexOf(buf, 5, 8);
+        assertEquals(ids.length, yow);
+        assertEquals("YOW", g.getNode(yow).getId());
+        assertEquals(yow, g.indexOf("YOW"));
+        assertTrue(g.getVersion() != version);
+
+        g.addEdge(0, yow, 95);
+        assertEquals(95, g.getNode("YUL").getNeighbors().get(g.getNode("YOW")), 1e-9);
+        assertEquals(yow, g.compile().indexOf("YOW"));
+        assertEquals(6, g.compile().indexOf("Z\u00fcrich"));
+
+        Map<String, Node> nodes = g.getNodes();
+        assertEquals(ids.length + 1, nodes.size());
+        assertSame(g.getNode("SEVENCH"), nodes.get("SEVENCH"));
+        assertTrue(nodes.containsKey("NOT AN AIRPORT"));
+        assertNull(nodes.get("BOS"));
+        assertFalse(nodes.containsKey(42));
+        int i = 0;
+        for (Map.Entry<String, Node> e : nodes.entrySet()) {
+            assertEquals(i++, e.getValue().getIndex());
+            assertEquals(e.getKey(), e.getValue().getId());
+        }
+        try {
+            nodes.put("BOS", new Node("BOS"));
+            fail("getNodes should be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    /** Test case to check the histogram's precision, and, when the JVM runs with -Dgraph.metrics=true (as the
+     * Gradle build does), the counts the parser and the engines publish */
+    @Test
+    public void test25Metrics() throws IOException {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(0.5));
+        for (long v = 1; v <= 100000; v++) {
+            h.record(v);
+        }
+        assertEquals(100000, h.count());
+        assertEquals(100000, h.max());
+        assertEquals(50000.5, h.mean(), 1e-9);
+        assertEquals(50000, h.percentile(0.5), 50000 * 0.04);
+        assertEquals(99000, h.percentile(0.99), 99000 * 0.04);
+        assertEquals(1, h.percentile(0));
+        assertEquals(100000, h.percentile(1));
+        for (long v : new long[] {0, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE}) {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue(v <= LatencyHistogram.upperBound(b));
+            assertTrue(b == 0 || v > LatencyHistogram.upperBound(b - 1));
+        }
+        h.reset();
+        assertEquals(0, h.count());
+
+        Metrics.reset();
+        File f = File.createTempFile("flights", ".txt");
+        f.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(f)) {
+            out.println("A B 1");
+            out.println("A C 4");
+            out.println("B C 2");
+            out.println("");
+            out.println("C D 1");
+        }
+        BasicParser p = new BasicParser();
+        p.open(f);
+        Graph g = p.parse();
+        assertEquals(4, g.numNodes());
+        CSRGraph csr = g.compile();
+        new Dijkstra(csr).compute(csr.indexOf("A"));
+        new BidirectionalDijkstra(csr).query(csr.indexOf("A"), csr.indexOf("D"));
+        if (!Metrics.ENABLED) {
+            assertEquals(0, Metrics.count(Metrics.PARSE_LINES));
+            assertEquals(0, Metrics.count(Metrics.QUERY_SEARCHES));
+            return;
+        }
+        assertEquals(5, Metrics.count(Metrics.PARSE_LINES));
+        assertEquals(0, Metrics.count(Metrics.PARSE_REJECTED));
+        assertEquals(f.length(), Metrics.count(Metrics.PARSE_BYTES));
+        assertEquals(1, Metrics.histogram(Metrics.PARSE_TIME).count());
+        assertTrue(Metrics.parseLinesPerSecond() > 0);
+
+        // a malformed row is counted before it stops the parse
+        try (PrintWriter out = new PrintWriter(f)) {
+            out.println("A B 1");
+            out.println("C D not-a-number");
+            out.println("C D 1");
+        }
+        Metrics.reset();
+        p.open(f);
+        try {
+            p.parse();
+            fail("a malformed row must stop the parse");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(2, Metrics.count(Metrics.PARSE_LINES));
+        assertEquals(1, Metrics.count(Metrics.PARSE_REJECTED));
+        assertEquals(1, Metrics.histogram(Metrics.PARSE_TIME).count());
+
+        Metrics.reset();
+        new Dijkstra(csr).compute(csr.indexOf("A"));
+        assertEquals(1, Metrics.count(Metrics.QUERY_SEARCHES));
+        assertEquals(4, Metrics.count(Metrics.QUERY_SETTLED));
+        assertEquals(4, Metrics.count(Metrics.QUERY_RELAXED));
+        assertEquals(4, Metrics.count(Metrics.QUERY_PUSHES));
+        assertEquals(4, Metrics.count(Metrics.QUERY_POPS));
+        assertEquals(1, Metrics.histogram(Metrics.QUERY_TIME).count());
+        assertEquals(Long.valueOf(4), Metrics.counters().get(Metrics.QUERY_SETTLED));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Metrics.report(new PrintStream(bytes, true));
+        assertTrue(bytes.toString().contains("query.settled = 4"));
+    }
+
+    /* Asserts that engine's distances from origin match expected's, and that its paths are real paths of g with
+     * those lengths. */
+    private void assertSameDistances(String msg, IndexedGraph g, Dijkstra expected, DeltaStepping engine, int origin) {
+        for (int t = 0; t < g.numNodes(); t++) {
+            assertEquals(msg, expected.shortestPathLength(t), engine.shortestPathLength(t), 1e-6);
+            int[] path = engine.shortestPath(t);
+            if (expected.shortestPath(t) == null) {
+                assertNull(msg, path);
+                continue;
+            }
+            assertEquals(msg, origin, path[0]);
+            assertEquals(msg, t, path[path.length - 1]);
+            assertEquals(msg, expected.shortestPathLength(t), pathLength(g, path), 1e-6);
+        }
+    }
+
+    /* Returns a graph with nodes N0 .. N(n-1) and n * edgesPerNode random edges drawn with the given seed, weighted
+     * 0 .. 999 with one in twenty of weight 0, so that predecessors must be chosen with care. */
+    private static Graph randomGraph(long seed, int n, int edgesPerNode) {
+        Random rand = new Random(seed);
+        Graph g = new Graph();
+        for (int i = 0; i < n; i++) {
+            g.getNode("N" + i);
+        }
+        for (int i = 0; i < edgesPerNode * n; i++) {
+            double w = rand.nextInt(20) == 0 ? 0 : rand.nextInt(1000);
+            g.addEdge(g.getNode(rand.nextInt(n)), g.getNode(rand.nextInt(n)), w);
+        }
+        return g;
+    }
+
+    /* Returns the length of path in g, taking the lightest edge between each pair of consecutive nodes, or
+     * Double.POSITIVE_INFINITY if some pair has no edge. */
+    private static double pathLength(IndexedGraph g, int[] path) {
+        double length = 0;
+        for (int i = 1; i < path.length; i++) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int e = g.edgeBegin(path[i - 1]); e < g.edgeEnd(path[i - 1]); e++) {
+                if (g.target(e) == path[i]) {
+                    best = Math.min(best, g.weight(e));
+                }
+            }
+            length += best;
+        }
+        return length;
+    }
+
+    /** Test case to check that delta-stepping finds the same path lengths as ShortestPaths on every test graph, for
+     * small, default and huge bucket widths, on one thread and several, and the same as Dijkstra on a random graph
+     * large enough for its phases to run in parallel */
+    @Test
+    public void test26DeltaStepping() {
+        for (String fn : BASIC_FILES) {
+            Graph g = loadBasicGraph(fn);
+            CSRGraph csr = g.compile();
+            ShortestPaths sp = new ShortestPaths();
+            for (int threads : new int[] {1, 3}) {
+                try (DeltaStepping ds = new DeltaStepping(csr, 1, threads)) {
+                    for (double delta : new double[] {0.5, new DeltaStepping(csr, 1, 1).getDelta(), 1e9}) {
+                        ds.setDelta(delta);
+                        for (int s = 0; s < csr.numNodes(); s++) {
+                            sp.compute(g.getNode(s));
+                            ds.compute(s);
+                            assertEquals(s, ds.getOrigin());
+                            for (int t = 0; t < csr.numNodes(); t++) {
+                                assertEquals(fn, sp.shortestPathLength(g.getNode(t)), ds.shortestPathLength(t), 1e-6);
+                                assertEquals(sp.shortestPath(g.getNode(t)) == null, ds.shortestPath(t) == null);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        int n = 3000;
+        CSRGraph csr = randomGraph(22, n, 8).compile();
+        Dijkstra d = new Dijkstra(csr);
+        try (DeltaStepping ds = new DeltaStepping(csr, 100, 4)) {
+            for (double delta : new double[] {10, 100, 1e9}) {
+                ds.setDelta(delta);
+                for (int s = 0; s < n; s += 997) {
+                    d.compute(s);
+                    ds.compute(s);
+                    assertSameDistances("delta " + delta, csr, d, ds, s);
+                    ShortestPathTree tree = ds.tree();
+                    assertEquals(s, tree.getOrigin());
+                    assertEquals(-1, ds.previous(s));
+                }
+            }
+        }
+        try {
+            new DeltaStepping(csr, 0, 1);
+            fail("delta must be positive");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /** Test case to check that a batch of sources, with the scalar loop and with the Vector API, gives every source the
+     * same distances and paths as its own Dijkstra run, on every test graph and on a random graph with zero weights */
+    @Test
+    public void test27MultiSource() {
+        for (String fn : BASIC_FILES) {
+            CSRGraph csr = loadBasicGraph(fn).compile();
+            Dijkstra d = new Dijkstra(csr);
+            int n = csr.numNodes();
+            int[] sources = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                sources[i] = n - 1 - i;
+            }
+            sources[n] = 0; // a duplicate source gets its own, identical, column
+            for (boolean vectorize : new boolean[] {false, true}) {
+                MultiSourceDijkstra m = new MultiSourceDijkstra(csr, vectorize);
+                assertEquals(vectorize, m.isVectorized()); // the tests run with the module added
+                m.compute(sources);
+                assertEquals(n + 1, m.numSources());
+                for (int i = 0; i < m.numSources(); i++) {
+                    assertEquals(sources[i], m.source(i));
+                    d.compute(sources[i]);
+                    for (int t = 0; t < n; t++) {
+                        assertEquals(fn, d.shortestPathLength(t), m.shortestPathLength(i, t), 1e-9);
+                    }
+                }
+            }
+        }
+
+        int n = 2000;
+        CSRGraph csr = randomGraph(23, n, 6).compile();
+        Random rand = new Random(23);
+        Dijkstra d = new Dijkstra(csr);
+        int[] sources = new int[19]; // not a multiple of any vector length, so the scalar tail runs too
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = rand.nextInt(n);
+        }
+        for (boolean vectorize : new boolean[] {false, true}) {
+            MultiSourceDijkstra m = new MultiSourceDijkstra(csr, vectorize);
+            m.compute(sources);
+            for (int i = 0; i < sources.length; i++) {
+                d.compute(sources[i]);
+                ShortestPathTree tree = m.tree(i);
+                assertEquals(sources[i], tree.getOrigin());
+                for (int t = 0; t < n; t++) {
+                    assertEquals(d.shortestPathLength(t), m.shortestPathLength(i, t), 1e-9);
+                    int[] path = tree.shortestPath(t);
+                    assertEquals(d.shortestPath(t) == null, path == null);
+                    if (path != null) {
+                        assertEquals(d.shortestPathLength(t), pathLength(csr, path), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Test case to check that the Pareto front of distance against hops matches a Bellman-Ford count of the shortest
+     * path with at most h edges, that a carrier filter matches Dijkstra on that carrier set's edges, and that a search
+     * over the label limit and a negative hop limit both throw */
+    @Test
+    public void test28ConstrainedPaths() {
+        int n = 300;
+        CSRGraph csr = randomGraph(24, n, 5).compile();
+        Dijkstra d = new Dijkstra(csr);
+        ConstrainedPaths cp = new ConstrainedPaths(csr);
+        for (int s = 0; s < n; s += 37) {
+            // best[h][v] is the length of the shortest path from s to v with at most h edges
+            double[][] best = new double[n][];
+            best[0] = new double[n];
+            Arrays.fill(best[0], Double.POSITIVE_INFINITY);
+            best[0][s] = 0;
+            for (int h = 1; h < n; h++) {
+                best[h] = best[h - 1].clone();
+                for (int u = 0; u < n; u++) {
+                    for (int e = csr.edgeBegin(u); e < csr.edgeEnd(u); e++) {
+                        best[h][csr.target(e)] = Math.min(best[h][csr.target(e)], best[h - 1][u] + csr.weight(e));
+                    }
+                }
+            }
+            d.compute(s);
+            cp.setMaxHops(Integer.MAX_VALUE);
+            cp.compute(s);
+            assertEquals(s, cp.getOrigin());
+            for (int v = 0; v < n; v++) {
+                assertEquals(d.shortestPathLength(v), cp.shortestPathLength(v), 1e-9);
+                List<PathResult> expected = new ArrayList<PathResult>();
+                for (int h = n - 1; h >= 0; h--) {
+                    if (best[h][v] < (h == 0 ? Double.POSITIVE_INFINITY : best[h - 1][v])) {
+                        expected.add(new PathResult(csr, new int[h + 1], best[h][v], 0));
+                    }
+                }
+                List<PathResult> front = cp.front(v);
+                assertEquals(expected.size(), front.size());
+                assertEquals(front.size(), cp.frontSize(v));
+                for (int k = 0; k < front.size(); k++) {
+                    int[] path = front.get(k).getPath();
+                    assertEquals(expected.get(k).getPath().length, path.length);
+                    assertEquals(expected.get(k).getLength(), front.get(k).getLength(), 1e-9);
+                    assertEquals(s, path[0]);
+                    assertEquals(v, path[path.length - 1]);
+                    assertEquals(front.get(k).getLength(), pathLength(csr, path), 1e-9);
+                }
+                assertEquals(front.isEmpty() ? -1 : front.get(front.size() - 1).getPath().length - 1, cp.minHops(v));
+            }
+
+            cp.setMaxHops(2);
+            cp.compute(s);
+            for (int v = 0; v < n; v++) {
+                assertEquals(best[2][v], cp.shortestPathLength(v), 1e-9);
+                assertTrue(cp.minHops(v) <= 2);
+                assertEquals(cp.shortestPath(v) == null, best[2][v] == Double.POSITIVE_INFINITY);
+            }
+        }
+
+        // a carrier filter gives the same distances as Dijkstra on the graph of that carrier set's edges
+        MappedDB1BParser p = new MappedDB1BParser(true);
+        try {
+            p.open(new File(getGraphResource("db1-cropped.csv")));
+        } catch (FileNotFoundException e) {
+            fail("Could not find db1-cropped.csv");
+        }
+        CSRGraph flights = p.parse().compile();
+        BitSet edges = p.getAggregates().carrierEdges(flights, false, "AA", "DL");
+        assertTrue(edges.cardinality() > 0 && edges.cardinality() < flights.numEdges());
+        Graph carrierGraph = new Graph();
+        for (int v = 0; v < flights.numNodes(); v++) {
+            carrierGraph.getNode(flights.idOf(v));
+        }
+        for (int v = 0; v < flights.numNodes(); v++) {
+            for (int e = flights.edgeBegin(v); e < flights.edgeEnd(v); e++) {
+                if (edges.get(e)) {
+                    carrierGraph.addEdge(v, flights.target(e), flights.weight(e));
+                }
+            }
+        }
+        Dijkstra carrierOnly = new Dijkstra(carrierGraph.compile());
+        cp = new ConstrainedPaths(flights);
+        cp.setEdgeFilter(edges);
+        for (int s = 0; s < flights.numNodes(); s += 5) {
+            carrierOnly.compute(s);
+            cp.compute(s);
+            for (int v = 0; v < flights.numNodes(); v++) {
+                assertEquals(carrierOnly.shortestPathLength(v), cp.shortestPathLength(v), 1e-9);
+            }
+        }
+        assertEquals(0, p.getAggregates().carrierEdges(flights, true, "NOT A CARRIER").cardinality());
+
+        cp.setEdgeFilter(null);
+        cp.setMaxLabels(1);
+        try {
+            cp.compute(flights.indexOf("ATL"));
+            fail("the search needs more than one label");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            cp.setMaxHops(-1);
+            fail("maxHops must not be negative");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /* Adds to lengths length plus the length of every loopless path from u to t that avoids the visited nodes. */
+    private void allPathLengths(IndexedGraph g, int u, int t, boolean[] visited, double length, List<Double> lengths) {
+        if (u == t) {
+            lengths.add(length);
+            return;
+        }
+        visited[u] = true;
+        for (int e = g.edgeBegin(u); e < g.edgeEnd(u); e++) {
+            if (!visited[g.target(e)]) {
+                allPathLengths(g, g.target(e), t, visited, length + g.weight(e), lengths);
+            }
+        }
+        visited[u] = false;
+    }
+
+    /** Test case to check that the k shortest paths are the k shortest of all loopless paths found by exhaustive
+     * search, distinct and in order, and that enumeration is lazy and ends with NoSuchElementException */
+    @Test
+    public void test29KShortestPaths() {
+        Random rand = new Random(25);
+        for (int trial = 0; trial < 20; trial++) {
+            Graph g = new Graph();
+            int n = 9;
+            for (int i = 0; i < n; i++) {
+                g.getNode("N" + i);
+            }
+            for (int i = 0; i < 3 * n; i++) {
+                double w = rand.nextInt(10) == 0 ? 0 : 1 + rand.nextInt(20);
+                g.addEdge(g.getNode(rand.nextInt(n)), g.getNode(rand.nextInt(n)), w);
+            }
+            CSRGraph csr = g.compile();
+            KShortestPaths ksp = new KShortestPaths(csr);
+            Dijkstra d = new Dijkstra(csr);
+            for (int s = 0; s < n; s += 4) {
+                d.compute(s);
+                for (int t = 0; t < n; t++) {
+                    List<Double> expected = new ArrayList<Double>();
+                    allPathLengths(csr, s, t, new boolean[n], 0, expected);
+                    Collections.sort(expected);
+                    List<PathResult> paths = ksp.topK(s, t, 25);
+                    assertEquals(Math.min(25, expected.size()), paths.size());
+                    Set<List<Integer>> distinct = new HashSet<List<Integer>>();
+                    for (int k = 0; k < paths.size(); k++) {
+                        int[] path = paths.get(k).getPath();
+                        assertEquals(expected.get(k), paths.get(k).getLength(), 1e-9);
+                        assertEquals(s, path[0]);
+                        assertEquals(t, path[path.length - 1]);
+                        List<Integer> nodes = new ArrayList<Integer>();
+                        for (int v : path) {
+                            nodes.add(v);
+                        }
+                        assertEquals(path.length, new HashSet<Integer>(nodes).size()); // loopless
+                        assertEquals(paths.get(k).getLength(), pathLength(csr, path), 1e-9);
+                        assertTrue(distinct.add(nodes));
+                    }
+                    if (!paths.isEmpty()) {
+                        assertEquals(d.shortestPathLength(t), paths.get(0).getLength(), 1e-9);
+                    }
+                }
+            }
+        }
+
+        // enumeration is lazy: the first path costs one search, and each later one only the spur searches it needs
+        Graph g = loadBasicGraph("FakeCanada.txt");
+        CSRGraph csr = g.compile();
+        KShortestPaths ksp = new KShortestPaths(csr, new SearchWorkspace(csr.numNodes()));
+        Iterator<PathResult> it = ksp.paths(csr.indexOf("YUL"), csr.indexOf("YVR"));
+        Metrics.reset();
+        assertTrue(it.hasNext());
+        assertTrue(it.hasNext());
+        PathResult first = it.next();
+        ShortestPaths sp = new ShortestPaths();
+        sp.compute(g.getNode("YUL"));
+        assertEquals(sp.shortestPathLength(g.getNode("YVR")), first.getLength(), 1e-9);
+        if (Metrics.ENABLED) {
+            assertEquals(1, Metrics.count(Metrics.QUERY_SEARCHES));
+        }
+        double previous = first.getLength();
+        while (it.hasNext()) {
+            PathResult next = it.next();
+            assertTrue(next.getLength() >= previous);
+            previous = next.getLength();
+        }
+        try {
+            it.next();
+            fail("the iterator is exhausted");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        assertEquals(1, ksp.topK(0, 0, 5).size());
+        assertEquals(0, ksp.topK(0, 1, 0).size());
+    }
 
     /* Pro tip: unless you include @Test on the line above your method header,
      * gradle test will not run it! This gets me every time. */
@@ -0,0 +1,53 @@
+package graph;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** The inner loop of MultiSourceDijkstra written with the incubating Vector API, for when the JIT compiler does not
+ * vectorize the scalar loop by itself. This is the only class that refers to jdk.incubator.vector, and it is loaded
+ * only if vectorization is asked for, so the module is needed only then (run with --add-modules
+ * jdk.incubator.vector); available() reports whether it is present. It is compiled in its own source set, the only
+ * one that needs the module. */
+final class VectorRelax {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorRelax() {
+    }
+
+    /**
+     * Return true if the Vector API can be used. Throws LinkageError, which the caller catches, if the module is
+     * missing.
+     */
+    static boolean available() {
+        return SPECIES.length() > 0;
+    }
+
+    /**
+     * Same as MultiSourceDijkstra.relaxScalar: lower dist[vo + s] to dist[uo + s] + w for every s < k, and return the
+     * smallest value that was lowered, or Double.POSITIVE_INFINITY if none was.
+     */
+    static double relax(double[] dist, int uo, int vo, int k, double w) {
+        double lowered = Double.POSITIVE_INFINITY;
+        int s = 0;
+        for (int bound = SPECIES.loopBound(k); s < bound; s += SPECIES.length()) {
+            DoubleVector nd = DoubleVector.fromArray(SPECIES, dist, uo + s).add(w);
+            DoubleVector dv = DoubleVector.fromArray(SPECIES, dist, vo + s);
+            VectorMask<Double> lower = nd.lt(dv);
+            if (lower.anyTrue()) {
+                dv.blend(nd, lower).intoArray(dist, vo + s);
+                lowered = Math.min(lowered, nd.reduceLanes(VectorOperators.MIN, lower));
+            }
+        }
+        for (; s < k; s++) {
+            double nd = dist[uo + s] + w;
+            if (nd < dist[vo + s]) {
+                dist[vo + s] = nd;
+                lowered = Math.min(lowered, nd);
+            }
+        }
+        return lowered;
+    }
+}